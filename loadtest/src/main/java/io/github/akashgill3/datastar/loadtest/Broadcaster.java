@@ -0,0 +1,117 @@
+package io.github.akashgill3.datastar.loadtest;
+
+import io.github.akashgill3.datastar.Datastar;
+import io.github.akashgill3.datastar.DatastarSseEmitter;
+import io.github.akashgill3.datastar.EncodedFrame;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans a signal patch carrying {@link System#nanoTime()} out to every open stream per tick.
+ *
+ * <p>Clients run in the same JVM, so the timestamp gives the delivery latency directly. Writes run
+ * on virtual threads or on a fixed pool of platform threads, matching the server configuration.
+ * With {@code shared} frames the event is encoded once per tick and every emitter writes the same
+ * {@link EncodedFrame}; otherwise each emitter formats its own copy.
+ *
+ * @author Akash Gill
+ */
+final class Broadcaster implements AutoCloseable {
+
+  /** Matches Tomcat's default maximum of request threads. */
+  private static final int PLATFORM_WRITERS = 200;
+
+  private final Set<DatastarSseEmitter> emitters = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService ticker =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("loadtest-ticker").daemon().factory());
+  private final ExecutorService writers;
+  private final Datastar datastar;
+  private final boolean shared;
+
+  Broadcaster(Datastar datastar, Duration interval, boolean virtualThreads, boolean shared) {
+    this.datastar = datastar;
+    this.shared = shared;
+    this.writers =
+        virtualThreads
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(
+                PLATFORM_WRITERS, Thread.ofPlatform().name("loadtest-writer-", 0).factory());
+    long nanos = interval.toNanos();
+    ticker.scheduleAtFixedRate(this::tick, nanos, nanos, TimeUnit.NANOSECONDS);
+  }
+
+  void add(DatastarSseEmitter emitter) {
+    emitters.add(emitter);
+    emitter.onCleanup(() -> emitters.remove(emitter));
+  }
+
+  private void tick() {
+    if (!shared) {
+      for (DatastarSseEmitter emitter : emitters) {
+        if (!submit(() -> send(emitter))) {
+          return;
+        }
+      }
+      return;
+    }
+    EncodedFrame frame = datastar.encodeSignals(payload(), options -> {});
+    try {
+      for (DatastarSseEmitter emitter : emitters) {
+        frame.retain();
+        if (!submit(() -> send(emitter, frame))) {
+          // The task that would have released this reference never runs.
+          frame.release();
+          return;
+        }
+      }
+    } finally {
+      frame.release();
+    }
+  }
+
+  /** Returns {@code false} if the writers have been shut down and rejected the task. */
+  private boolean submit(Runnable task) {
+    try {
+      writers.execute(task);
+      return true;
+    } catch (RejectedExecutionException ex) {
+      return false;
+    }
+  }
+
+  private static void send(DatastarSseEmitter emitter) {
+    try {
+      emitter.patchSignals(payload());
+    } catch (IOException | IllegalStateException ex) {
+      // The client is gone; the emitter has cleaned up and left the set.
+    }
+  }
+
+  private static void send(DatastarSseEmitter emitter, EncodedFrame frame) {
+    try {
+      emitter.send(frame);
+    } catch (IOException | IllegalStateException ex) {
+      // As above.
+    } finally {
+      frame.release();
+    }
+  }
+
+  private static String payload() {
+    return "{\"sent\":" + System.nanoTime() + "}";
+  }
+
+  @Override
+  public void close() {
+    ticker.shutdownNow();
+    writers.shutdownNow();
+  }
+}
@@ -0,0 +1,104 @@
+package io.github.akashgill3.datastar.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Runs the load test once per server thread configuration and prints the results side by side.
+ *
+ * <p>Arguments are {@code key=value} pairs:
+ *
+ * <ul>
+ *   <li>{@code clients} — concurrent SSE streams (default {@code 1000})
+ *   <li>{@code duration} — measurement window once all streams are open (default {@code 30s})
+ *   <li>{@code interval} — how often the server broadcasts an event (default {@code 1s})
+ *   <li>{@code modes} — comma separated {@code platform}, {@code virtual} (default both)
+ *   <li>{@code frames} — comma separated {@code string} (each emitter formats its event), {@code
+ *       pooled} (as {@code string} with {@code datastar.buffers.pooled=true}) and {@code shared}
+ *       (one pooled frame per tick written to every emitter); default {@code string}
+ *   <li>{@code engine} — {@code blocking} or {@code non-blocking} writes, see {@code
+ *       datastar.writes.engine} (default {@code blocking})
+ * </ul>
+ *
+ * @author Akash Gill
+ */
+public final class LoadTest {
+
+  private LoadTest() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parse(args);
+    int clients = Integer.parseInt(options.getOrDefault("clients", "1000"));
+    Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "30s"));
+    String interval = options.getOrDefault("interval", "1s");
+    String[] modes = options.getOrDefault("modes", "platform,virtual").split(",");
+    String[] frames = options.getOrDefault("frames", "string").split(",");
+    String engine = options.getOrDefault("engine", "blocking");
+
+    List<LoadTestReport> reports = new ArrayList<>();
+    for (String mode : modes) {
+      for (String frame : frames) {
+        reports.add(run(mode.trim(), frame.trim(), engine, clients, duration, interval));
+      }
+    }
+    System.out.println();
+    System.out.print(LoadTestReport.table(reports));
+  }
+
+  private static LoadTestReport run(
+      String mode, String frames, String engine, int clients, Duration duration, String interval)
+      throws InterruptedException {
+    boolean virtual =
+        switch (mode) {
+          case "virtual" -> true;
+          case "platform" -> false;
+          default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        };
+    boolean pooled =
+        switch (frames) {
+          case "string" -> false;
+          case "pooled", "shared" -> true;
+          default -> throw new IllegalArgumentException("Unknown frames: " + frames);
+        };
+    SpringApplication application = new SpringApplication(LoadTestApplication.class);
+    application.setDefaultProperties(
+        Map.of(
+            // loadtest.properties, so that the settings stay off the starter's test classpath
+            "spring.config.name", "loadtest",
+            "spring.threads.virtual.enabled", Boolean.toString(virtual),
+            "datastar.buffers.pooled", Boolean.toString(pooled),
+            "loadtest.shared-frames", Boolean.toString(frames.equals("shared")),
+            "datastar.writes.engine", engine,
+            "loadtest.interval", interval));
+    String label = frames.equals("string") ? mode : mode + "/" + frames;
+    System.out.printf("Running %s: %d clients for %s%n", label, clients, duration);
+    try (ConfigurableApplicationContext context = application.run()) {
+      String port = context.getEnvironment().getRequiredProperty("local.server.port");
+      URI uri = URI.create("http://localhost:" + port + "/stream");
+      return new SseClients(uri, clients, Duration.ofSeconds(30)).run(label, duration);
+    }
+  }
+
+  private static Map<String, String> parse(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    // exec:exec passes loadtest.args as a single argument, so split on whitespace as well.
+    for (String arg : String.join(" ", args).trim().split("\\s+")) {
+      if (arg.isEmpty()) {
+        continue;
+      }
+      int eq = arg.indexOf('=');
+      if (eq <= 0) {
+        throw new IllegalArgumentException("Expected key=value but got: " + arg);
+      }
+      options.put(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+    }
+    return options;
+  }
+}
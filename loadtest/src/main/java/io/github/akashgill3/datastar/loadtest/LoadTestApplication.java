@@ -0,0 +1,48 @@
+package io.github.akashgill3.datastar.loadtest;
+
+import io.github.akashgill3.datastar.Datastar;
+import io.github.akashgill3.datastar.DatastarSseEmitter;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Embedded server for the load test, streaming a timestamped signal patch to every client on a
+ * fixed interval.
+ *
+ * @author Akash Gill
+ */
+@SpringBootApplication
+public class LoadTestApplication {
+
+  @Bean(destroyMethod = "close")
+  Broadcaster broadcaster(
+      Datastar datastar,
+      @Value("${loadtest.interval:1s}") Duration interval,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+      @Value("${loadtest.shared-frames:false}") boolean sharedFrames) {
+    return new Broadcaster(datastar, interval, virtualThreads, sharedFrames);
+  }
+
+  @RestController
+  static class StreamController {
+
+    private final Datastar datastar;
+    private final Broadcaster broadcaster;
+
+    StreamController(Datastar datastar, Broadcaster broadcaster) {
+      this.datastar = datastar;
+      this.broadcaster = broadcaster;
+    }
+
+    @GetMapping("/stream")
+    DatastarSseEmitter stream() {
+      DatastarSseEmitter emitter = datastar.createEmitter(-1);
+      broadcaster.add(emitter);
+      return emitter;
+    }
+  }
+}
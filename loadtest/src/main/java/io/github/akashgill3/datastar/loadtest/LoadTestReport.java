@@ -0,0 +1,106 @@
+package io.github.akashgill3.datastar.loadtest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Measurements of one load-test run.
+ *
+ * @param mode the server thread configuration, with the frame mode unless {@code string}
+ * @param clients the number of clients started
+ * @param connected the number of clients that got a {@code 200} stream
+ * @param connectAll time until every client had connected or failed
+ * @param setupNanos sorted per-client time from request to response headers
+ * @param latencyNanos sorted per-event time from server send to client receive
+ * @param window length of the measurement window
+ * @param heapPerConnection retained heap per open stream, server and client side combined
+ * @param liveThreads JVM live thread count with all streams open
+ * @param peakThreads JVM peak thread count during the run
+ * @param gcCount collections during the measurement window
+ * @param gcTime time spent in collections during the measurement window
+ * @param allocatedBytes heap allocated during the measurement window, server and client side
+ *     combined, or negative if unknown
+ * @author Akash Gill
+ */
+record LoadTestReport(
+    String mode,
+    int clients,
+    int connected,
+    Duration connectAll,
+    long[] setupNanos,
+    long[] latencyNanos,
+    Duration window,
+    long heapPerConnection,
+    int liveThreads,
+    int peakThreads,
+    long gcCount,
+    Duration gcTime,
+    long allocatedBytes) {
+
+  /** Events received per second across all clients during the measurement window. */
+  double throughput() {
+    double seconds = window.toNanos() / 1e9;
+    return seconds > 0 ? latencyNanos.length / seconds : 0;
+  }
+
+  /** Heap allocated per received event, or {@code -1} if unknown. */
+  long allocatedPerEvent() {
+    return allocatedBytes >= 0 && latencyNanos.length > 0
+        ? allocatedBytes / latencyNanos.length
+        : -1;
+  }
+
+  static String table(List<LoadTestReport> reports) {
+    StringBuilder out = new StringBuilder();
+    row(out, "", reports, LoadTestReport::mode);
+    row(out, "clients", reports, r -> r.connected() + "/" + r.clients());
+    row(out, "connect all (ms)", reports, r -> Long.toString(r.connectAll().toMillis()));
+    row(out, "setup p50 (ms)", reports, r -> millis(r.setupNanos(), 0.50));
+    row(out, "setup p99 (ms)", reports, r -> millis(r.setupNanos(), 0.99));
+    row(out, "setup max (ms)", reports, r -> millis(r.setupNanos(), 1.0));
+    row(out, "latency p50 (ms)", reports, r -> millis(r.latencyNanos(), 0.50));
+    row(out, "latency p90 (ms)", reports, r -> millis(r.latencyNanos(), 0.90));
+    row(out, "latency p99 (ms)", reports, r -> millis(r.latencyNanos(), 0.99));
+    row(out, "latency p99.9 (ms)", reports, r -> millis(r.latencyNanos(), 0.999));
+    row(out, "latency max (ms)", reports, r -> millis(r.latencyNanos(), 1.0));
+    row(out, "events/s", reports, r -> String.format(Locale.ROOT, "%.0f", r.throughput()));
+    row(out, "heap/connection (KB)", reports, r -> kilobytes(r.heapPerConnection()));
+    row(out, "live threads", reports, r -> Integer.toString(r.liveThreads()));
+    row(out, "peak threads", reports, r -> Integer.toString(r.peakThreads()));
+    row(out, "gc count", reports, r -> Long.toString(r.gcCount()));
+    row(out, "gc time (ms)", reports, r -> Long.toString(r.gcTime().toMillis()));
+    row(out, "alloc/event (B)", reports, r -> bytes(r.allocatedPerEvent()));
+    return out.toString();
+  }
+
+  private static void row(
+      StringBuilder out,
+      String label,
+      List<LoadTestReport> reports,
+      Function<LoadTestReport, String> value) {
+    out.append(String.format(Locale.ROOT, "%-22s", label));
+    for (LoadTestReport report : reports) {
+      out.append(String.format(Locale.ROOT, "%17s", value.apply(report)));
+    }
+    out.append('\n');
+  }
+
+  private static String millis(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return "-";
+    }
+    int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    long nanos = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+  }
+
+  private static String bytes(long bytes) {
+    return bytes >= 0 ? Long.toString(bytes) : "-";
+  }
+
+  private static String kilobytes(long bytes) {
+    return String.format(Locale.ROOT, "%.1f", bytes / 1024.0);
+  }
+}
@@ -0,0 +1,239 @@
+package io.github.akashgill3.datastar.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens {@code N} SSE streams with {@link HttpClient}, one virtual thread per stream, and records
+ * connection setup times and event delivery latencies.
+ *
+ * @author Akash Gill
+ */
+final class SseClients {
+
+  private static final String SIGNALS_PREFIX = "data: signals {\"sent\":";
+
+  private final URI uri;
+  private final int clients;
+  private final Duration connectTimeout;
+
+  private volatile boolean measuring;
+  private volatile boolean stopped;
+
+  SseClients(URI uri, int clients, Duration connectTimeout) {
+    this.uri = uri;
+    this.clients = clients;
+    this.connectTimeout = connectTimeout;
+  }
+
+  /**
+   * Connect all clients, measure for {@code duration} and disconnect again.
+   *
+   * @param mode the server configuration, for the report
+   * @param duration how long to record events once all clients are connected
+   * @return the measurements
+   */
+  LoadTestReport run(String mode, Duration duration) throws InterruptedException {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    long heapBefore = usedHeapAfterGc(memory);
+    threads.resetPeakThreadCount();
+
+    List<Client> all = new ArrayList<>(clients);
+    CountDownLatch connected = new CountDownLatch(clients);
+    AtomicInteger failed = new AtomicInteger();
+    HttpClient http =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(connectTimeout)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    long connectStart = System.nanoTime();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < clients; i++) {
+        Client client = new Client();
+        all.add(client);
+        executor.execute(() -> client.stream(http, connected, failed));
+      }
+      connected.await(connectTimeout.toMillis() + 1000L * clients / 100, TimeUnit.MILLISECONDS);
+      Duration connectAll = Duration.ofNanos(System.nanoTime() - connectStart);
+
+      long heapConnected = usedHeapAfterGc(memory);
+      int liveThreads = threads.getThreadCount();
+      int open = clients - failed.get();
+
+      long[] gcBefore = collections();
+      long allocatedBefore = allocatedBytes(threads);
+      measuring = true;
+      long measureStart = System.nanoTime();
+      Thread.sleep(duration);
+      measuring = false;
+      Duration window = Duration.ofNanos(System.nanoTime() - measureStart);
+      long allocated = allocatedBytes(threads) - allocatedBefore;
+      long[] gcAfter = collections();
+      stopped = true;
+      all.forEach(Client::close);
+      // Join the client threads, so that their samples are complete and visible here.
+      executor.close();
+
+      return new LoadTestReport(
+          mode,
+          clients,
+          open,
+          connectAll,
+          setupTimes(all),
+          latencies(all),
+          window,
+          open > 0 ? (heapConnected - heapBefore) / open : 0,
+          liveThreads,
+          threads.getPeakThreadCount(),
+          gcAfter[0] - gcBefore[0],
+          Duration.ofMillis(gcAfter[1] - gcBefore[1]),
+          allocated);
+    } finally {
+      stopped = true;
+      http.close();
+    }
+  }
+
+  private static long[] setupTimes(List<Client> clients) {
+    return clients.stream().mapToLong(c -> c.setupNanos).filter(n -> n >= 0).sorted().toArray();
+  }
+
+  private static long[] latencies(List<Client> clients) {
+    LongList all = new LongList();
+    for (Client client : clients) {
+      for (int i = 0; i < client.latencies.size; i++) {
+        all.add(client.latencies.values[i]);
+      }
+    }
+    long[] sorted = Arrays.copyOf(all.values, all.size);
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  /** Total collection count and time in milliseconds across all collectors. */
+  private static long[] collections() {
+    long count = 0;
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return new long[] {count, millis};
+  }
+
+  /** Heap allocated by all threads so far, or {@code -1} where the JVM does not track it. */
+  private static long allocatedBytes(ThreadMXBean threads) {
+    if (threads instanceof com.sun.management.ThreadMXBean hotspot
+        && hotspot.isThreadAllocatedMemorySupported()
+        && hotspot.isThreadAllocatedMemoryEnabled()) {
+      return hotspot.getTotalThreadAllocatedBytes();
+    }
+    return -1;
+  }
+
+  private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * One SSE consumer. Its fields are written by its own thread only, and read once that thread has
+   * finished.
+   */
+  private final class Client {
+
+    private volatile InputStream body;
+    private long setupNanos = -1;
+    private final LongList latencies = new LongList();
+
+    void stream(HttpClient http, CountDownLatch connected, AtomicInteger failed) {
+      HttpRequest request =
+          HttpRequest.newBuilder(uri).header("Accept", "text/event-stream").GET().build();
+      boolean counted = false;
+      try {
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response =
+            http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        setupNanos = System.nanoTime() - start;
+        body = response.body();
+        if (response.statusCode() != 200) {
+          failed.incrementAndGet();
+          return;
+        }
+        connected.countDown();
+        counted = true;
+        read(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)));
+      } catch (Exception ex) {
+        if (!counted) {
+          failed.incrementAndGet();
+        }
+      } finally {
+        if (!counted) {
+          connected.countDown();
+        }
+      }
+    }
+
+    private void read(BufferedReader reader) throws IOException {
+      String line;
+      while (!stopped && (line = reader.readLine()) != null) {
+        if (measuring && line.startsWith(SIGNALS_PREFIX)) {
+          long received = System.nanoTime();
+          int end = line.indexOf('}', SIGNALS_PREFIX.length());
+          long sent = Long.parseLong(line.substring(SIGNALS_PREFIX.length(), end));
+          latencies.add(received - sent);
+        }
+      }
+    }
+
+    void close() {
+      InputStream current = body;
+      if (current != null) {
+        try {
+          current.close();
+        } catch (IOException ignored) {
+          // Closing only to disconnect.
+        }
+      }
+    }
+  }
+
+  /** Growable list of primitive longs, to keep boxing out of the measurements. */
+  private static final class LongList {
+    private long[] values = new long[16];
+    private int size;
+
+    void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Reports the heap retained per idle emitter created with {@link Datastar#createEmitter()},
+ * including its admission slot and registry entry, as the {@code bytesPerEmitter} counter.
+ *
+ * <p>Covers only what this starter retains. The servlet container's async context and the response
+ * come on top; the {@code loadtest} profile measures the whole connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+public class IdleEmitterFootprintBenchmark {
+
+  @Param({"10000"})
+  public int emitters;
+
+  @Param({"0", "20"})
+  public double eventsPerSecond;
+
+  private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+  private final ArrayList<DatastarSseEmitter> open = new ArrayList<>();
+  private Datastar datastar;
+
+  /** Counters reported next to the timing, per iteration. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+    public long bytesPerEmitter;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    DatastarProperties properties =
+        DatastarProperties.builder()
+            .rateLimit(new DatastarProperties.RateLimit(eventsPerSecond, 0))
+            .build();
+    datastar = new Datastar(properties);
+    open.ensureCapacity(emitters);
+  }
+
+  /**
+   * The emitters are never bound to a response, so they never time out. Run their cleanup
+   * directly, which gives back the admission slot and the registry entry, so that nothing carries
+   * over into the next iteration.
+   */
+  @TearDown(Level.Iteration)
+  public void closeEmitters() {
+    open.forEach(DatastarSseEmitter::cleanUpIfUnbound);
+    open.clear();
+    if (datastar.getActiveEmitterCount() != 0) {
+      throw new IllegalStateException(
+          datastar.getActiveEmitterCount() + " emitters still registered after cleanup");
+    }
+  }
+
+  @Benchmark
+  public void idleEmitters(Footprint footprint) {
+    long before = usedHeapAfterGc();
+    for (int i = 0; i < emitters; i++) {
+      open.add(createInRequest());
+    }
+    footprint.bytesPerEmitter = (usedHeapAfterGc() - before) / emitters;
+  }
+
+  /**
+   * Create an emitter the way a handler does: within a request that ends once the emitter has been
+   * returned and async processing has started.
+   */
+  private DatastarSseEmitter createInRequest() {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stream");
+    ServletRequestAttributes attrs = new ServletRequestAttributes(request);
+    RequestContextHolder.setRequestAttributes(attrs);
+    try {
+      DatastarSseEmitter emitter = datastar.createEmitter();
+      request.setAsyncStarted(true);
+      return emitter;
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+      attrs.requestCompleted();
+    }
+  }
+
+  private long usedHeapAfterGc() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,62 @@
+package io.github.akashgill3.datastar;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single-pass escaping of {@link JsStrings} against the chained {@code
+ * String.replace} calls it replaced, building a {@code console.log} call for typical log messages.
+ * Run with {@code -prof gc} to compare allocation per call as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsStringBenchmark {
+
+  @Param({"plain", "quoted", "multiline"})
+  public String message;
+
+  private String value;
+
+  @Setup
+  public void setUp() {
+    value =
+        switch (message) {
+          case "plain" -> "Order 4711 shipped to customer 42 at 2024-05-01T10:15:30Z";
+          case "quoted" -> "Failed to parse \"quantity\" for item C:\\orders\\4711: not a number";
+          case "multiline" ->
+              "Request failed\n\tat OrderService.ship(OrderService.java:42)\n\tat Worker.run()";
+          default -> throw new IllegalArgumentException(message);
+        };
+  }
+
+  @Benchmark
+  public String singlePass() {
+    return DatastarSseEmitter.consoleLogScript(value);
+  }
+
+  @Benchmark
+  public String chainedReplace() {
+    String escaped =
+        value
+            .replace("\\", "\\\\")
+            .replace("\"", "\\\"")
+            .replace("\n", "\\n")
+            .replace("\r", "\\r")
+            .replace("\t", "\\t");
+    return "console.log(" + "\"" + escaped + "\"" + ")";
+  }
+}
@@ -0,0 +1,79 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Compares {@link Datastar#readSignals(jakarta.servlet.http.HttpServletRequest, Class)} against
+ * an uncached {@code ObjectMapper.readValue} per request, for small and large signal payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadSignalsBenchmark {
+
+  @Param({"small", "large"})
+  public String payload;
+
+  private byte[] body;
+  private Datastar datastar;
+
+  @Setup
+  public void setUp() {
+    datastar = new Datastar(new DatastarProperties(false), new ObjectMapper());
+    body = (payload.equals("small") ? smallPayload() : largePayload())
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Signals cachedReader() throws IOException {
+    return datastar.readSignals(request(), Signals.class);
+  }
+
+  @Benchmark
+  public Signals newMapperPerRequest() throws IOException {
+    return new ObjectMapper().readValue(request().getInputStream(), Signals.class);
+  }
+
+  private MockHttpServletRequest request() {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/signals");
+    request.setContent(body);
+    return request;
+  }
+
+  private static String smallPayload() {
+    return "{\"name\":\"datastar\",\"count\":42,\"tags\":[\"a\",\"b\"]}";
+  }
+
+  private static String largePayload() {
+    StringBuilder sb = new StringBuilder("{\"name\":\"datastar\",\"count\":42,\"tags\":[");
+    for (int i = 0; i < 10_000; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("\"tag-").append(i).append('"');
+    }
+    return sb.append("]}").toString();
+  }
+
+  public record Signals(String name, int count, List<String> tags) {}
+}
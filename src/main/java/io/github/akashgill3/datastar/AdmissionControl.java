@@ -0,0 +1,155 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import jakarta.servlet.http.HttpServletRequest;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits new emitters against the limits in {@code datastar.connections.*}.
+ *
+ * <p>The global count is a single CAS loop and never blocks. Per-user and per-IP counts live in
+ * concurrent maps that drop a key once its count falls back to zero, so idle clients leave nothing
+ * behind. A rejected request holds no slot and costs no more than the failed CAS.
+ *
+ * @author Akash Gill
+ */
+final class AdmissionControl {
+
+  private final DatastarProperties.Connections limits;
+  private final AtomicInteger active = new AtomicInteger();
+  private final ConcurrentMap<String, AtomicInteger> perUser = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicInteger> perIp = new ConcurrentHashMap<>();
+  private final LongAdder rejected = new LongAdder();
+
+  AdmissionControl(DatastarProperties.Connections limits) {
+    this.limits = limits;
+  }
+
+  /**
+   * Take a slot for a new emitter.
+   *
+   * @param request the request opening the stream, {@code null} outside of a request, in which
+   *     case only the global limit applies
+   * @return a callback releasing the slot; it is safe to run more than once
+   * @throws ConnectionLimitExceededException if any limit is reached
+   */
+  Runnable acquire(HttpServletRequest request) {
+    if (!tryIncrement(active, limits.max())) {
+      throw reject("global");
+    }
+    String user = userKey(request);
+    if (user != null && !tryAcquire(perUser, user, limits.maxPerUser())) {
+      active.decrementAndGet();
+      throw reject("user");
+    }
+    String ip = ipKey(request);
+    if (ip != null && !tryAcquire(perIp, ip, limits.maxPerIp())) {
+      if (user != null) {
+        release(perUser, user);
+      }
+      active.decrementAndGet();
+      throw reject("ip");
+    }
+
+    AtomicBoolean released = new AtomicBoolean();
+    return () -> {
+      if (released.compareAndSet(false, true)) {
+        if (ip != null) {
+          release(perIp, ip);
+        }
+        if (user != null) {
+          release(perUser, user);
+        }
+        active.decrementAndGet();
+      }
+    };
+  }
+
+  /** Returns the number of admitted emitters that have not been released yet. */
+  int active() {
+    return active.get();
+  }
+
+  /** Returns the number of emitters rejected since startup. */
+  long rejected() {
+    return rejected.sum();
+  }
+
+  private String userKey(HttpServletRequest request) {
+    if (request == null || limits.maxPerUser() < 0) {
+      return null;
+    }
+    Principal principal = request.getUserPrincipal();
+    return principal == null ? null : principal.getName();
+  }
+
+  private String ipKey(HttpServletRequest request) {
+    if (request == null || limits.maxPerIp() < 0) {
+      return null;
+    }
+    return request.getRemoteAddr();
+  }
+
+  private ConnectionLimitExceededException reject(String limit) {
+    rejected.increment();
+    return new ConnectionLimitExceededException(limit, retryAfter());
+  }
+
+  /**
+   * Returns {@code retry-after} plus up to the same amount of random jitter, so clients rejected
+   * together do not all come back at the same instant.
+   */
+  private Duration retryAfter() {
+    long millis = limits.retryAfter().toMillis();
+    return millis <= 0
+        ? Duration.ZERO
+        : Duration.ofMillis(millis + ThreadLocalRandom.current().nextLong(millis + 1));
+  }
+
+  private static boolean tryAcquire(
+      ConcurrentMap<String, AtomicInteger> counts, String key, int max) {
+    while (true) {
+      AtomicInteger count = counts.computeIfAbsent(key, k -> new AtomicInteger());
+      int current = count.get();
+      if (current < 0) {
+        // Being removed by a concurrent release, retry with a fresh counter.
+        continue;
+      }
+      if (current >= max) {
+        return false;
+      }
+      if (count.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private static void release(ConcurrentMap<String, AtomicInteger> counts, String key) {
+    AtomicInteger count = counts.get(key);
+    if (count != null && count.decrementAndGet() == 0 && count.compareAndSet(0, -1)) {
+      counts.remove(key, count);
+    }
+  }
+
+  private static boolean tryIncrement(AtomicInteger count, int max) {
+    if (max < 0) {
+      count.incrementAndGet();
+      return true;
+    }
+    int current;
+    do {
+      current = count.get();
+      if (current >= max) {
+        return false;
+      }
+    } while (!count.compareAndSet(current, current + 1));
+    return true;
+  }
+}
@@ -0,0 +1,68 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.events.EventPriority;
+
+/**
+ * A script event encoded once and sent as is by {@link
+ * DatastarSseEmitter#executeCompiledScript(CompiledScript)}, without any formatting per send.
+ *
+ * <p>Meant for fixed scripts such as a redirect to the login page, held in a constant:
+ *
+ * <pre>{@code
+ * private static final CompiledScript TO_LOGIN = Datastar.compileRedirect("/login");
+ *
+ * emitter.executeCompiledScript(TO_LOGIN);
+ * }</pre>
+ *
+ * <p>Instances are immutable and can be shared by any number of emitters.
+ *
+ * @see Datastar#compileScript(String)
+ * @author Akash Gill
+ */
+public final class CompiledScript {
+
+  private final String element;
+  private final String eventId;
+  private final Long retryDuration;
+  private final String frame;
+  private final EventPriority priority;
+
+  CompiledScript(
+      String element, String eventId, Long retryDuration, String frame, EventPriority priority) {
+    this.element = element;
+    this.eventId = eventId;
+    this.retryDuration = retryDuration;
+    this.frame = frame;
+    this.priority = priority;
+  }
+
+  /** Returns the complete SSE frame, as written to the response. */
+  public String frame() {
+    return frame;
+  }
+
+  /** The {@code <script>} element, for coalescing while over the rate limit. */
+  String element() {
+    return element;
+  }
+
+  /** The event id, or {@code null}. */
+  String eventId() {
+    return eventId;
+  }
+
+  /** The retry duration, or {@code null} for the default. */
+  Long retryDuration() {
+    return retryDuration;
+  }
+
+  /** The priority the script is sent with. */
+  EventPriority priority() {
+    return priority;
+  }
+
+  @Override
+  public String toString() {
+    return frame;
+  }
+}
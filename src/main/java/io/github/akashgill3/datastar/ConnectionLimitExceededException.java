@@ -0,0 +1,46 @@
+package io.github.akashgill3.datastar;
+
+import java.time.Duration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown by {@link Datastar#createEmitter()} when a limit in {@code datastar.connections.*} has
+ * been reached.
+ *
+ * <p>When thrown from a controller, Spring MVC answers with {@code 503 Service Unavailable} and a
+ * {@code Retry-After} header, before any stream is opened.
+ *
+ * @author Akash Gill
+ */
+public class ConnectionLimitExceededException extends ResponseStatusException {
+
+  private final String limit;
+  private final Duration retryAfter;
+
+  public ConnectionLimitExceededException(String limit, Duration retryAfter) {
+    super(HttpStatus.SERVICE_UNAVAILABLE, "Datastar " + limit + " connection limit reached");
+    this.limit = limit;
+    this.retryAfter = retryAfter;
+  }
+
+  /** Returns the limit that was reached: {@code global}, {@code user} or {@code ip}. */
+  public String getLimit() {
+    return limit;
+  }
+
+  /** Returns how long the client should wait before reconnecting. */
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+
+  @Override
+  public HttpHeaders getHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    // Retry-After is in whole seconds, round up so clients never come back early.
+    long seconds = (retryAfter.toMillis() + 999) / 1000;
+    headers.set(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+    return headers;
+  }
+}
@@ -1,6 +1,7 @@
 package io.github.akashgill3.datastar;
 
 import io.github.akashgill3.datastar.events.ElementPatchMode;
+import io.github.akashgill3.datastar.events.EventPriority;
 import io.github.akashgill3.datastar.events.Namespace;
 
 /** Constants used by Datastar. */
@@ -9,12 +10,16 @@ public final class Consts {
 
   public static final String DATASTAR_KEY = "datastar";
 
+  public static final long DEFAULT_EMITTER_TIMEOUT_MS = 60_000L;
   public static final long DEFAULT_SSE_RETRY_DURATION_MS = 1000L;
   public static final boolean DEFAULT_ELEMENTS_USE_VIEW_TRANSITIONS = false;
+  public static final int DEFAULT_ELEMENTS_CHUNK_SIZE = 0;
   public static final boolean DEFAULT_PATCH_SIGNAL_ONLY_IF_MISSING = false;
   public static final boolean DEFAULT_EXECUTE_AUTO_REMOVE = true;
   public static final Namespace DEFAULT_NAMESPACE = Namespace.HTML;
   public static final ElementPatchMode DEFAULT_ELEMENT_PATCH_MODE = ElementPatchMode.Outer;
+  public static final EventPriority DEFAULT_PATCH_PRIORITY = EventPriority.NORMAL;
+  public static final EventPriority DEFAULT_SCRIPT_PRIORITY = EventPriority.HIGH;
 
   public static final String SELECTOR_DATALINE_LITERAL = "selector";
   public static final String MODE_DATALINE_LITERAL = "mode";
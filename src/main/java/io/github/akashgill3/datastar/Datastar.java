@@ -1,13 +1,33 @@
 package io.github.akashgill3.datastar;
 
 import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import io.github.akashgill3.datastar.events.ExecuteScriptOptions;
+import io.github.akashgill3.datastar.events.PatchElementOptions;
+import io.github.akashgill3.datastar.events.PatchSignalOptions;
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.exc.JacksonIOException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.json.JsonMapper;
 
 /**
  * Manages server-sent event (SSE) emitters.
@@ -17,7 +37,8 @@ import tools.jackson.databind.ObjectMapper;
  * DatastarProperties} using the {@code datastar} prefix.
  *
  * <p>The primary responsibility is to create {@link DatastarSseEmitter} instances and provide
- * helper methods such as {@link #readSignals(HttpServletRequest, Class)}.
+ * helper methods such as {@link #readSignals(HttpServletRequest, Class)} and {@link
+ * #readSignal(HttpServletRequest, String, Class)}.
  *
  * <p>Typical usage:
  *
@@ -55,31 +76,69 @@ import tools.jackson.databind.ObjectMapper;
 public class Datastar {
   private static final Logger log = LoggerFactory.getLogger(Datastar.class);
 
+  private static final String UNBOUND_EMITTER_CALLBACK = Datastar.class.getName() + ".emitter.";
+
   /** Configuration properties for Datastar functionality. */
   private final DatastarProperties properties;
 
   /** ObjectMapper for JSON (un)marshalling. */
-  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final ObjectMapper objectMapper;
+
+  /** Readers resolved once per signal target type and reused for every request. */
+  private final ConcurrentMap<Type, ObjectReader> signalReaders = new ConcurrentHashMap<>();
+
+  /** State shared by all emitters created by this instance. */
+  private final EmitterContext emitterContext;
+
+  /** Makes the names of request destruction callbacks for created emitters unique. */
+  private final AtomicLong unboundEmitterCallbacks = new AtomicLong();
 
   /**
-   * Constructs a new Datastar instance with the specified configuration.
+   * Constructs a new Datastar instance with the specified configuration and a default {@link
+   * JsonMapper}.
    *
    * @param properties the configuration properties for Datastar
    */
   public Datastar(DatastarProperties properties) {
-    this.properties = properties;
+    this(properties, JsonMapper.builder().build());
+  }
+
+  /**
+   * Constructs a new Datastar instance with the specified configuration and {@link ObjectMapper}.
+   *
+   * <p>The autoconfiguration passes the application's {@code JsonMapper} so that signals are read
+   * with the same modules and features as the rest of the application.
+   *
+   * @param properties the configuration properties for Datastar
+   * @param objectMapper the mapper used to read signals
+   */
+  public Datastar(DatastarProperties properties, ObjectMapper objectMapper) {
+    this.properties = properties != null ? properties : new DatastarProperties(false);
+    this.objectMapper = objectMapper;
+    this.emitterContext = new EmitterContext(this.properties, new SignalWriters(objectMapper));
   }
 
   /**
-   * Creates a new {@link DatastarSseEmitter} instance with default timeout of 60 seconds.
+   * Creates a new {@link DatastarSseEmitter} instance with the timeout configured by {@code
+   * datastar.emitters.*}, 60 seconds by default.
+   *
+   * <p>When {@code datastar.emitters.min-timeout} is set, the timeout adapts to load: it is
+   * shortened as open emitters approach {@code datastar.connections.max} or the heap fills up.
+   *
+   * <p>The emitter holds a connection slot until it completes. If the handler that created it
+   * throws instead of returning it, the slot is released when the request ends; an emitter created
+   * outside of a request and never returned from a handler must be completed to release it.
    *
    * @return a new {@link DatastarSseEmitter} instance ready for use
+   * @throws ConnectionLimitExceededException if a limit in {@code datastar.connections.*} has been
+   *     reached
    */
   public DatastarSseEmitter createEmitter() {
-    DatastarSseEmitter emitter = new DatastarSseEmitter(properties);
+    long timeout = emitterContext.registry().timeoutMillis();
+    DatastarSseEmitter emitter = admit(timeout);
 
     if (properties.enableLogging() && log.isDebugEnabled()) {
-      log.debug("Created new SSE emitter");
+      log.debug("Created new SSE emitter with timeout: {}ms", timeout);
     }
 
     return emitter;
@@ -90,9 +149,11 @@ public class Datastar {
    *
    * @param timeout the timeout in milliseconds, for indefinite timeout use Long.MAX_VALUE or -1
    * @return a new {@link DatastarSseEmitter} instance ready for use
+   * @throws ConnectionLimitExceededException if a limit in {@code datastar.connections.*} has been
+   *     reached
    */
   public DatastarSseEmitter createEmitter(long timeout) {
-    DatastarSseEmitter emitter = new DatastarSseEmitter(properties, timeout);
+    DatastarSseEmitter emitter = admit(timeout);
 
     if (properties.enableLogging() && log.isDebugEnabled()) {
       log.debug("Created new SSE emitter with timeout: {}ms", timeout);
@@ -101,12 +162,189 @@ public class Datastar {
     return emitter;
   }
 
+  /**
+   * Compiles a script event once, for sending any number of times with {@link
+   * DatastarSseEmitter#executeCompiledScript(CompiledScript)} without formatting it again.
+   *
+   * @param script the JavaScript code to execute
+   * @return the compiled script
+   * @throws IllegalArgumentException if the script is null, empty or contains {@code </script>}
+   */
+  public static CompiledScript compileScript(String script) {
+    return compileScript(script, options -> {});
+  }
+
+  /**
+   * Compiles a script event once with custom options.
+   *
+   * @param script the JavaScript code to execute
+   * @param options configuration for script execution
+   * @return the compiled script
+   * @throws IllegalArgumentException if the script is null, empty or contains {@code </script>}
+   */
+  public static CompiledScript compileScript(
+      String script, Consumer<ExecuteScriptOptions> options) {
+    return DatastarSseEmitter.compileScript(script, options);
+  }
+
+  /**
+   * Compiles the event sent by {@link DatastarSseEmitter#consoleLog(String)}.
+   *
+   * @param message the message to log
+   * @return the compiled script
+   */
+  public static CompiledScript compileConsoleLog(String message) {
+    return compileScript(DatastarSseEmitter.consoleLogScript(message));
+  }
+
+  /**
+   * Compiles the event sent by {@link DatastarSseEmitter#consoleError(String)}.
+   *
+   * @param message the error message to log
+   * @return the compiled script
+   */
+  public static CompiledScript compileConsoleError(String message) {
+    return compileScript(DatastarSseEmitter.consoleErrorScript(message));
+  }
+
+  /**
+   * Compiles the event sent by {@link DatastarSseEmitter#redirect(String)}.
+   *
+   * @param url the URL to redirect to
+   * @return the compiled script
+   */
+  public static CompiledScript compileRedirect(String url) {
+    return compileScript(DatastarSseEmitter.redirectScript(url));
+  }
+
+  /**
+   * Compiles the event sent by {@link DatastarSseEmitter#replaceUrl(String)}.
+   *
+   * @param url the new URL
+   * @return the compiled script
+   */
+  public static CompiledScript compileReplaceUrl(String url) {
+    return compileScript(DatastarSseEmitter.replaceUrlScript(url));
+  }
+
+  /**
+   * Encodes a patch elements event once, for sending to many emitters with {@link
+   * DatastarSseEmitter#send(EncodedFrame)}.
+   *
+   * <p>With {@code datastar.buffers.pooled}, the frame is encoded into a pooled direct buffer. The
+   * caller holds one reference and must {@link EncodedFrame#release() release} it when done
+   * sending.
+   *
+   * @param elements the HTML elements to patch
+   * @param options the patch options
+   * @return the encoded frame
+   */
+  public EncodedFrame encodeElements(String elements, Consumer<PatchElementOptions> options) {
+    return DatastarSseEmitter.encodeElements(emitterContext.framePool(), elements, options);
+  }
+
+  /**
+   * Encodes a patch signals event once, for sending to many emitters with {@link
+   * DatastarSseEmitter#send(EncodedFrame)}.
+   *
+   * @param signals the JSON signals to patch
+   * @param options the patch options
+   * @return the encoded frame, to be released by the caller when done sending
+   * @see #encodeElements(String, Consumer)
+   */
+  public EncodedFrame encodeSignals(String signals, Consumer<PatchSignalOptions> options) {
+    return DatastarSseEmitter.encodeSignals(emitterContext.framePool(), signals, options);
+  }
+
+  /**
+   * Returns the number of emitters created by this instance that have not completed yet.
+   *
+   * @return the number of open emitters
+   */
+  public int getActiveEmitterCount() {
+    return emitterContext.admission().active();
+  }
+
+  /**
+   * Returns the number of emitters closed because they had not written anything for {@code
+   * datastar.emitters.idle-timeout}.
+   *
+   * @return the number of emitters closed for being idle
+   */
+  public long getIdleClosedEmitterCount() {
+    return emitterContext.registry().idleClosed();
+  }
+
+  /**
+   * Returns the timeout {@link #createEmitter()} would currently give a new emitter.
+   *
+   * @return the timeout in milliseconds
+   */
+  public long getEmitterTimeout() {
+    return emitterContext.registry().timeoutMillis();
+  }
+
+  /**
+   * Close all open emitters, as configured by {@code datastar.shutdown.*}.
+   *
+   * <p>Each emitter writes its coalesced events and a final {@code retry} hint drawn at random from
+   * {@code [0, datastar.shutdown.reconnect-window]} before it completes, so clients reconnect to
+   * other instances spread over the window. Waits at most {@code datastar.shutdown.timeout}. Called
+   * by the auto-configuration when the application context stops.
+   *
+   * @return the number of emitters closed in time
+   */
+  public int shutdown() {
+    DatastarProperties.Shutdown shutdown = properties.shutdown();
+    int closed = emitterContext.registry().drain(shutdown.timeout(), shutdown.reconnectWindow());
+
+    if (properties.enableLogging() && log.isDebugEnabled()) {
+      log.debug("Closed {} SSE emitters on shutdown", closed);
+    }
+
+    return closed;
+  }
+
+  /**
+   * Returns the number of emitters rejected because a limit in {@code datastar.connections.*} had
+   * been reached.
+   *
+   * @return the number of rejected emitters
+   */
+  public long getRejectedEmitterCount() {
+    return emitterContext.admission().rejected();
+  }
+
+  /**
+   * Returns the number of events coalesced away by rate limiting across all emitters created by
+   * this instance.
+   *
+   * @return the number of suppressed events
+   * @see DatastarSseEmitter#getSuppressedEventCount()
+   */
+  public long getSuppressedEventCount() {
+    return emitterContext.suppressedEvents().sum();
+  }
+
+  /**
+   * Returns the number of events over a byte budget in {@code datastar.limits.*} across all
+   * emitters created by this instance, whether they were rejected, chunked or truncated.
+   *
+   * @return the number of oversized events
+   */
+  public long getOversizedEventCount() {
+    return emitterContext.oversizedEvents().sum();
+  }
+
   /**
    * Parses incoming signals from the HTTP request into the specified target object.
    *
    * <p>For {@code GET} requests, signals are extracted from the {@code datastar} query parameter
-   * (URL-encoded JSON). For other request methods, signals are read directly from the request body
-   * (JSON).
+   * (JSON, already URL-decoded by the container). For other request methods, signals are parsed
+   * directly from the request body stream (JSON) without buffering the whole payload.
+   *
+   * <p>Payloads larger than {@code datastar.signals.max-size} are rejected with a {@link
+   * SignalsTooLargeException} before they are parsed.
    *
    * @param request the current HTTP request
    * @param target the class of the object to unmarshal signals into
@@ -115,20 +353,256 @@ public class Datastar {
    * @throws IOException if signals cannot be read or parsed
    */
   public <T> T readSignals(HttpServletRequest request, Class<T> target) throws IOException {
-    if (objectMapper == null) {
-      throw new UnsupportedOperationException(
-          "readSignals() requires ObjectMapper. Add jackson-databind to classpath to enable this feature.");
+    return readSignals(request, signalReader(target));
+  }
+
+  /**
+   * Parses incoming signals from the HTTP request into the specified generic target type.
+   *
+   * <p>Use this variant for generic targets such as {@code Map<String, Object>}:
+   *
+   * <pre>{@code
+   * Map<String, Object> signals =
+   *     datastar.readSignals(request, new TypeReference<Map<String, Object>>() {});
+   * }</pre>
+   *
+   * @param request the current HTTP request
+   * @param target the type reference describing the target type
+   * @param <T> the type of the target object
+   * @return the unmarshalled signal object
+   * @throws IOException if signals cannot be read or parsed
+   * @see #readSignals(HttpServletRequest, Class)
+   */
+  public <T> T readSignals(HttpServletRequest request, TypeReference<T> target)
+      throws IOException {
+    return readSignals(request, signalReader(target.getType()));
+  }
+
+  /**
+   * Reads a single signal addressed by a JSON pointer, without binding the whole signal store.
+   *
+   * <p>The payload is stream-parsed: unrelated subtrees are skipped token by token and parsing
+   * stops once the value has been found. This is considerably cheaper than {@link
+   * #readSignals(HttpServletRequest, Class)} when a handler only needs a few fields out of a large
+   * signal store.
+   *
+   * <pre>{@code
+   * String email = datastar.readSignal(request, "/form/email", String.class);
+   * }</pre>
+   *
+   * @param request the current HTTP request
+   * @param path the JSON pointer of the signal (e.g. {@code /form/email})
+   * @param target the class of the object to unmarshal the signal into
+   * @param <T> the type of the target object
+   * @return the unmarshalled signal, or {@code null} if no signal exists at {@code path}
+   * @throws IOException if signals cannot be read or parsed
+   * @throws IllegalArgumentException if {@code path} is not a valid JSON pointer
+   */
+  public <T> T readSignal(HttpServletRequest request, String path, Class<T> target)
+      throws IOException {
+    JsonNode node = readSignals(request, List.of(path)).get(path);
+    return node == null ? null : signalReader(target).readValue(node);
+  }
+
+  /**
+   * Reads several signals addressed by JSON pointers in a single streaming pass.
+   *
+   * <p>Only the addressed values are materialized; parsing stops as soon as all of them have been
+   * found.
+   *
+   * @param request the current HTTP request
+   * @param paths the JSON pointers of the signals (e.g. {@code /form/email})
+   * @return the signals found, keyed by path in the order requested; missing paths are absent
+   * @throws IOException if signals cannot be read or parsed
+   * @throws IllegalArgumentException if a path is not a valid JSON pointer
+   * @see #readSignal(HttpServletRequest, String, Class)
+   */
+  public Map<String, JsonNode> readSignals(HttpServletRequest request, Collection<String> paths)
+      throws IOException {
+    try (JsonParser parser = signalsParser(request)) {
+      return SignalPathExtractor.extract(objectMapper, parser, paths);
+    } catch (JacksonIOException ex) {
+      throw sizeLimitOr(ex);
     }
+  }
 
+  /**
+   * Returns the cached {@link ObjectReader} for the given target type, resolving it on first use.
+   *
+   * @param target the target type
+   * @return the reader bound to {@code target}
+   */
+  ObjectReader signalReader(Type target) {
+    return signalReaders.computeIfAbsent(
+        target, type -> objectMapper.readerFor(objectMapper.constructType(type)));
+  }
+
+  /**
+   * Parses incoming signals from the HTTP request with an already resolved reader.
+   *
+   * @param request the current HTTP request
+   * @param reader the reader bound to the target type
+   * @param <T> the type of the target object
+   * @return the unmarshalled signal object
+   * @throws IOException if signals cannot be read or parsed
+   */
+  <T> T readSignals(HttpServletRequest request, ObjectReader reader) throws IOException {
     if ("GET".equalsIgnoreCase(request.getMethod())) {
-      String datastarParam = request.getParameter(Consts.DATASTAR_KEY);
-      if (datastarParam == null || datastarParam.isBlank()) {
-        return objectMapper.readValue("{}", target);
+      return reader.readValue(signalsParameter(request));
+    } else {
+      try {
+        return reader.readValue(signalsBody(request));
+      } catch (JacksonIOException ex) {
+        throw sizeLimitOr(ex);
+      }
+    }
+  }
+
+  /**
+   * Jackson wraps exceptions thrown by the body stream, so a body that exceeds the limit while
+   * being parsed surfaces as a {@link JacksonIOException}. Rethrows the original {@link
+   * SignalsTooLargeException} in that case, and returns {@code ex} unchanged otherwise.
+   */
+  private static JacksonIOException sizeLimitOr(JacksonIOException ex)
+      throws SignalsTooLargeException {
+    if (ex.getCause() instanceof SignalsTooLargeException tooLarge) {
+      throw tooLarge;
+    }
+    return ex;
+  }
+
+  /**
+   * Takes an admission slot and creates a registered emitter that gives the slot back and
+   * unregisters once it completes, times out or fails.
+   */
+  private DatastarSseEmitter admit(long timeout) {
+    ServletRequestAttributes attrs =
+        RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes current
+            ? current
+            : null;
+    Runnable slot = emitterContext.admission().acquire(attrs != null ? attrs.getRequest() : null);
+    try {
+      DatastarSseEmitter emitter = new DatastarSseEmitter(emitterContext, timeout);
+      EmitterRegistry registry = emitterContext.registry();
+      registry.register(emitter);
+      emitter.onCleanup(
+          () -> {
+            registry.unregister(emitter);
+            slot.run();
+          });
+      if (attrs != null) {
+        cleanUpIfNeverBound(emitter, attrs);
       }
-      String decodedJson = URLDecoder.decode(datastarParam, StandardCharsets.UTF_8);
-      return objectMapper.readValue(decodedJson, target);
+      return emitter;
+    } catch (RuntimeException | Error ex) {
+      slot.run();
+      throw ex;
+    }
+  }
+
+  /**
+   * An emitter that a handler creates but never returns, because it throws first, is never bound
+   * to the response, so it never times out and its cleanup only runs if it is completed. Clean it
+   * up when the request ends, unless async processing has started and may still bind it.
+   */
+  private void cleanUpIfNeverBound(DatastarSseEmitter emitter, ServletRequestAttributes attrs) {
+    HttpServletRequest request = attrs.getRequest();
+    attrs.registerDestructionCallback(
+        UNBOUND_EMITTER_CALLBACK + unboundEmitterCallbacks.incrementAndGet(),
+        () -> {
+          if (!request.isAsyncStarted()) {
+            emitter.cleanUpIfUnbound();
+          }
+        },
+        RequestAttributes.SCOPE_REQUEST);
+  }
+
+  private JsonParser signalsParser(HttpServletRequest request) throws IOException {
+    if ("GET".equalsIgnoreCase(request.getMethod())) {
+      return objectMapper.createParser(signalsParameter(request));
     } else {
-      return objectMapper.readValue(request.getInputStream(), target);
+      return objectMapper.createParser(signalsBody(request));
+    }
+  }
+
+  /**
+   * Returns the JSON carried by the {@code datastar} query parameter, or {@code {}} if absent.
+   *
+   * <p>The container has already URL-decoded the parameter, so it is used as-is. Decoding it again
+   * would corrupt payloads containing {@code %} or {@code +}.
+   */
+  private String signalsParameter(HttpServletRequest request) throws SignalsTooLargeException {
+    String datastarParam = request.getParameter(Consts.DATASTAR_KEY);
+    if (datastarParam == null || datastarParam.isBlank()) {
+      return "{}";
+    }
+    long maxSize = maxSignalsSize();
+    // Every char takes at least one byte, so this is a cheap lower bound of the encoded size.
+    if (maxSize >= 0 && datastarParam.length() > maxSize) {
+      throw new SignalsTooLargeException(maxSize);
+    }
+    return datastarParam;
+  }
+
+  /**
+   * Returns the request body, rejecting it up front when the declared content length is too large
+   * and otherwise failing as soon as more than the allowed number of bytes has been read.
+   */
+  private InputStream signalsBody(HttpServletRequest request) throws IOException {
+    long maxSize = maxSignalsSize();
+    if (maxSize < 0) {
+      return request.getInputStream();
+    }
+    if (request.getContentLengthLong() > maxSize) {
+      throw new SignalsTooLargeException(maxSize);
+    }
+    return new SizeLimitedInputStream(request.getInputStream(), maxSize);
+  }
+
+  private long maxSignalsSize() {
+    return properties.signals().maxSize().toBytes();
+  }
+
+  /** Input stream that fails once more than {@code maxSize} bytes have been read. */
+  private static final class SizeLimitedInputStream extends FilterInputStream {
+    private final long maxSize;
+    private long count;
+
+    SizeLimitedInputStream(InputStream in, long maxSize) {
+      super(in);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count(n);
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count(skipped);
+      return skipped;
+    }
+
+    private void count(long n) throws SignalsTooLargeException {
+      count += n;
+      if (count > maxSize) {
+        throw new SignalsTooLargeException(maxSize);
+      }
     }
   }
 }
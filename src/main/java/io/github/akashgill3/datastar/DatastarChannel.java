@@ -0,0 +1,291 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.events.ExecuteScriptOptions;
+import io.github.akashgill3.datastar.events.PatchElementOptions;
+import io.github.akashgill3.datastar.events.PatchSignalOptions;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * A logical channel of a {@link DatastarSseEmitter}, opened with {@link
+ * DatastarSseEmitter#openChannel(String)}.
+ *
+ * <p>Browsers allow only a few HTTP/1.1 connections per origin, and every open stream holds an
+ * async context on the server. Channels let several producers, such as notifications, chat and
+ * live data, share one stream instead of opening one each:
+ *
+ * <pre>{@code
+ * DatastarSseEmitter sseEmitter = datastar.createEmitter();
+ * DatastarChannel prices = sseEmitter.openChannel("prices").rateLimit(10, 1);
+ * DatastarChannel alerts = sseEmitter.openChannel("alerts");
+ * prices.onClose(ticker.subscribe(tick -> prices.patchSignals(tick)));
+ * alerts.onClose(alertBus.subscribe(alert -> alerts.patchElements(render(alert))));
+ * }</pre>
+ *
+ * <p>Each channel has its own rate limit, starting from {@code datastar.rate-limit.*}, and
+ * coalesces its own events, so a busy channel never merges or delays the events of another. All
+ * channels write through the emitter's connection and write queue, in the order events are sent
+ * and subject to their {@link io.github.akashgill3.datastar.events.EventPriority priority}.
+ *
+ * <p>A channel is closed by {@link #close()}, which writes its coalesced events first, or when the
+ * emitter cleans up. Either way its close actions run exactly once. Sending on a closed channel
+ * throws an {@link IllegalStateException}.
+ *
+ * @author Akash Gill
+ */
+public final class DatastarChannel {
+
+  private final DatastarSseEmitter emitter;
+  private final String name;
+
+  /** Rate limiter and coalesced events, guarded by the emitter's send lock. */
+  private final DatastarSseEmitter.Coalescing coalescing;
+
+  private volatile boolean open = true;
+
+  /** Actions registered with {@link #onClose(Runnable)}. */
+  private final OnceActions closeActions = new OnceActions("channel close");
+
+  DatastarChannel(
+      DatastarSseEmitter emitter, String name, DatastarSseEmitter.Coalescing coalescing) {
+    this.emitter = emitter;
+    this.name = name;
+    this.coalescing = coalescing;
+  }
+
+  /** Returns the channel name. */
+  public String getName() {
+    return name;
+  }
+
+  /** Returns the emitter this channel writes through. */
+  public DatastarSseEmitter getEmitter() {
+    return emitter;
+  }
+
+  /** Returns whether the channel accepts events. */
+  public boolean isOpen() {
+    return open;
+  }
+
+  // ========================================================================
+  // Events
+  // ========================================================================
+
+  /**
+   * Send a patch elements event on this channel.
+   *
+   * @param elements the HTML elements to patch
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   * @see DatastarSseEmitter#patchElements(String)
+   */
+  public DatastarChannel patchElements(String elements) throws IOException {
+    return patchElements(elements, options -> {});
+  }
+
+  /**
+   * Send a patch elements event on this channel.
+   *
+   * @param elements the HTML elements to patch
+   * @param options the patch options
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarChannel patchElements(String elements, Consumer<PatchElementOptions> options)
+      throws IOException {
+    emitter.patchElements(this, elements, options);
+    return this;
+  }
+
+  /**
+   * Send a patch elements event built with an {@link Html} builder on this channel.
+   *
+   * @param html writes the elements to patch
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   * @see DatastarSseEmitter#patchHtml(Consumer)
+   */
+  public DatastarChannel patchHtml(Consumer<Html> html) throws IOException {
+    return patchHtml(html, options -> {});
+  }
+
+  /**
+   * Send a patch elements event built with an {@link Html} builder on this channel.
+   *
+   * @param html writes the elements to patch
+   * @param options the patch options
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarChannel patchHtml(Consumer<Html> html, Consumer<PatchElementOptions> options)
+      throws IOException {
+    emitter.patchHtml(this, html, options);
+    return this;
+  }
+
+  /**
+   * Send a patch signals event on this channel.
+   *
+   * @param signals the JSON signals to patch
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarChannel patchSignals(String signals) throws IOException {
+    return patchSignals(signals, options -> {});
+  }
+
+  /**
+   * Send a patch signals event on this channel.
+   *
+   * @param signals the JSON signals to patch
+   * @param config the patch options
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarChannel patchSignals(String signals, Consumer<PatchSignalOptions> config)
+      throws IOException {
+    emitter.patchSignals(this, signals, config);
+    return this;
+  }
+
+  /**
+   * Send a patch signals event on this channel, serializing {@code signals} to JSON.
+   *
+   * @param signals the signals to patch
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   * @see DatastarSseEmitter#patchSignals(Object)
+   */
+  public DatastarChannel patchSignals(Object signals) throws IOException {
+    return patchSignals(signals, options -> {});
+  }
+
+  /**
+   * Send a patch signals event on this channel, serializing {@code signals} to JSON.
+   *
+   * @param signals the signals to patch
+   * @param config the patch options
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarChannel patchSignals(Object signals, Consumer<PatchSignalOptions> config)
+      throws IOException {
+    emitter.patchSignals(this, signals, config);
+    return this;
+  }
+
+  /**
+   * Execute a JavaScript script in the browser on this channel.
+   *
+   * @param script the JavaScript code to execute
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarChannel executeScript(String script) throws IOException {
+    return executeScript(script, options -> {});
+  }
+
+  /**
+   * Execute a JavaScript script in the browser on this channel.
+   *
+   * @param script the JavaScript code to execute
+   * @param options configuration for script execution
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarChannel executeScript(String script, Consumer<ExecuteScriptOptions> options)
+      throws IOException {
+    emitter.executeScript(this, script, options);
+    return this;
+  }
+
+  /**
+   * Execute a script compiled ahead of time with {@link Datastar#compileScript(String)} on this
+   * channel.
+   *
+   * @param script the compiled script
+   * @return this channel for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarChannel executeCompiledScript(CompiledScript script) throws IOException {
+    emitter.executeCompiledScript(this, script);
+    return this;
+  }
+
+  // ========================================================================
+  // Rate Limiting
+  // ========================================================================
+
+  /**
+   * Limit the rate of events on this channel, independently of the emitter and other channels.
+   *
+   * @param eventsPerSecond sustained events per second; {@code 0} disables rate limiting
+   * @param burst events that may be written back to back, at least 1 when rate limiting
+   * @return this channel for method chaining
+   * @throws IOException if disabling rate limiting fails to write coalesced events
+   * @see DatastarSseEmitter#rateLimit(double, int)
+   */
+  public DatastarChannel rateLimit(double eventsPerSecond, int burst) throws IOException {
+    emitter.rateLimit(this, eventsPerSecond, burst);
+    return this;
+  }
+
+  /**
+   * Returns the number of events of this channel coalesced into another event while over its rate
+   * limit.
+   *
+   * @return the number of suppressed events
+   */
+  public long getSuppressedEventCount() {
+    return coalescing.suppressedEvents();
+  }
+
+  // ========================================================================
+  // Lifecycle
+  // ========================================================================
+
+  /**
+   * Register an action that releases a resource tied to this channel, such as its topic
+   * subscription. Runs exactly once when the channel is closed, by {@link #close()} or by the
+   * emitter cleaning up. An action registered after that runs immediately.
+   *
+   * @param action the close action
+   * @return this channel for method chaining
+   */
+  public DatastarChannel onClose(Runnable action) {
+    closeActions.add(action);
+    return this;
+  }
+
+  /**
+   * Close this channel, writing its coalesced events first. The emitter and its other channels
+   * stay open. Closing a closed channel does nothing.
+   */
+  public void close() {
+    emitter.closeChannel(this);
+  }
+
+  DatastarSseEmitter.Coalescing coalescing() {
+    return coalescing;
+  }
+
+  /** Stop accepting events. Called by the emitter while holding its send lock. */
+  void markClosed() {
+    open = false;
+  }
+
+  /** Stop accepting events and run the close actions, at most once. */
+  void closed() {
+    open = false;
+    Runnable actions = closeActions.take();
+    if (actions != null) {
+      actions.run();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "DatastarChannel[" + name + "]";
+  }
+}
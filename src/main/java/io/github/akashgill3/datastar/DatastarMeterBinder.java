@@ -0,0 +1,63 @@
+package io.github.akashgill3.datastar;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.TimeUnit;
+import org.jspecify.annotations.NonNull;
+
+/**
+ * Publishes the emitter statistics of a {@link Datastar} instance to Micrometer.
+ *
+ * <p>Registered automatically when Micrometer is on the classpath. Meters:
+ *
+ * <ul>
+ *   <li>{@code datastar.emitters.active} - open emitters
+ *   <li>{@code datastar.emitters.rejected} - emitters rejected by {@code datastar.connections.*}
+ *   <li>{@code datastar.emitters.idle.closed} - emitters closed for being idle
+ *   <li>{@code datastar.emitters.timeout} - timeout a new emitter would currently get
+ *   <li>{@code datastar.events.suppressed} - events coalesced away by rate limiting
+ *   <li>{@code datastar.events.oversized} - events over a byte budget of {@code datastar.limits.*}
+ * </ul>
+ *
+ * @author Akash Gill
+ */
+public class DatastarMeterBinder implements MeterBinder {
+
+  private final Datastar datastar;
+
+  public DatastarMeterBinder(Datastar datastar) {
+    this.datastar = datastar;
+  }
+
+  @Override
+  public void bindTo(@NonNull MeterRegistry registry) {
+    Gauge.builder("datastar.emitters.active", datastar, Datastar::getActiveEmitterCount)
+        .description("Open Datastar emitters")
+        .register(registry);
+    FunctionCounter.builder(
+            "datastar.emitters.rejected", datastar, Datastar::getRejectedEmitterCount)
+        .description("Datastar emitters rejected by connection limits")
+        .register(registry);
+    FunctionCounter.builder(
+            "datastar.emitters.idle.closed", datastar, Datastar::getIdleClosedEmitterCount)
+        .description("Datastar emitters closed for being idle")
+        .register(registry);
+    TimeGauge.builder(
+            "datastar.emitters.timeout",
+            datastar,
+            TimeUnit.MILLISECONDS,
+            Datastar::getEmitterTimeout)
+        .description("Timeout of new Datastar emitters under the current load")
+        .register(registry);
+    FunctionCounter.builder(
+            "datastar.events.suppressed", datastar, Datastar::getSuppressedEventCount)
+        .description("Datastar events coalesced away by rate limiting")
+        .register(registry);
+    FunctionCounter.builder("datastar.events.oversized", datastar, Datastar::getOversizedEventCount)
+        .description("Datastar events over a byte budget")
+        .register(registry);
+  }
+}
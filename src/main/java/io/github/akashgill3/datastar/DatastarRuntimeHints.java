@@ -0,0 +1,32 @@
+package io.github.akashgill3.datastar;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Runtime hints for native images of applications using Datastar, registered through {@code
+ * META-INF/spring/aot.factories}.
+ *
+ * <p>Registers the fields that emitters, their cleanup and close actions and encoded frames update
+ * through {@code VarHandle}s, and the types the library binds from signals itself. Signal types of
+ * controller parameters are registered by {@link DatastarSignalsAotProcessor}; types read with
+ * {@code Datastar.readSignals} elsewhere need {@code @RegisterReflectionForBinding}.
+ *
+ * @author Akash Gill
+ */
+class DatastarRuntimeHints implements RuntimeHintsRegistrar {
+
+  @Override
+  public void registerHints(@NonNull RuntimeHints hints, @Nullable ClassLoader classLoader) {
+    hints
+        .reflection()
+        .registerType(EncodedFrame.class, type -> type.withField("refCount"))
+        .registerType(DatastarSseEmitter.class, type -> type.withField("writableActions"))
+        .registerType(OnceActions.class, type -> type.withField("actions"));
+    new BindingReflectionHintsRegistrar()
+        .registerReflectionHints(hints.reflection(), WindowedList.Viewport.class);
+  }
+}
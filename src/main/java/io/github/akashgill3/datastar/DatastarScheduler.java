@@ -0,0 +1,55 @@
+package io.github.akashgill3.datastar;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared timer for deferred emitter work such as flushing coalesced events and closing idle
+ * emitters.
+ *
+ * <p>A single daemon thread only keeps time; every task runs on its own virtual thread, so a task
+ * blocked on a slow client never delays the others.
+ *
+ * @author Akash Gill
+ */
+final class DatastarScheduler {
+
+  private static final ScheduledExecutorService TIMER =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("datastar-scheduler").daemon().factory());
+
+  private DatastarScheduler() {}
+
+  /**
+   * Run {@code task} on a virtual thread after {@code delay}.
+   *
+   * @param task the task to run
+   * @param delay the delay
+   * @param unit the unit of {@code delay}
+   * @return a future that can be used to cancel the task before it starts
+   */
+  static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+    return TIMER.schedule(() -> startVirtual(task), delay, unit);
+  }
+
+  /**
+   * Run {@code task} on a virtual thread every {@code period}, starting after one period.
+   *
+   * <p>The period is measured from the start of one run to the next, whether or not the previous
+   * run has finished.
+   *
+   * @param task the task to run
+   * @param period the period
+   * @param unit the unit of {@code period}
+   * @return a future that can be used to cancel further runs
+   */
+  static ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long period, TimeUnit unit) {
+    return TIMER.scheduleWithFixedDelay(() -> startVirtual(task), period, period, unit);
+  }
+
+  private static void startVirtual(Runnable task) {
+    Thread.ofVirtual().name("datastar-task").start(task);
+  }
+}
@@ -0,0 +1,32 @@
+package io.github.akashgill3.datastar;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a controller method parameter to the Datastar signals of the current request.
+ *
+ * <p>This is the declarative form of {@code Datastar.readSignals(request, Type.class)}: signals are
+ * read from the {@code datastar} query parameter for {@code GET} requests and from the request body
+ * otherwise, subject to {@code datastar.signals.max-size}. The bound object is validated when the
+ * parameter is also annotated with {@code @Valid} or {@code @Validated}.
+ *
+ * <p>Typical usage:
+ *
+ * <pre>{@code
+ * @PostMapping("/search")
+ * public DatastarSseEmitter search(@DatastarSignals SearchSignals signals) {
+ *     ...
+ * }
+ * }</pre>
+ *
+ * @author Akash Gill
+ * @see DatastarSignalsArgumentResolver
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DatastarSignals {}
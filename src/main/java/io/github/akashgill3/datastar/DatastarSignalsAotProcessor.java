@@ -0,0 +1,52 @@
+package io.github.akashgill3.datastar;
+
+import java.lang.reflect.Type;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.core.MethodParameter;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Registers reflection hints for binding the types of {@link DatastarSignals} parameters, so that
+ * Jackson can read them in a native image.
+ *
+ * <p>Runs during AOT processing for every bean, registered through {@code
+ * META-INF/spring/aot.factories}. The hints cover the parameter type and the types reachable from
+ * its properties, as {@code @RegisterReflectionForBinding} would.
+ *
+ * @author Akash Gill
+ */
+class DatastarSignalsAotProcessor implements BeanRegistrationAotProcessor {
+
+  @Override
+  public @Nullable BeanRegistrationAotContribution processAheadOfTime(
+      @NonNull RegisteredBean registeredBean) {
+    Class<?> beanClass = ClassUtils.getUserClass(registeredBean.getBeanClass());
+    Set<Type> signalTypes = new LinkedHashSet<>();
+    ReflectionUtils.doWithMethods(
+        beanClass,
+        method -> {
+          for (int i = 0; i < method.getParameterCount(); i++) {
+            MethodParameter parameter = new MethodParameter(method, i);
+            if (parameter.hasParameterAnnotation(DatastarSignals.class)) {
+              signalTypes.add(parameter.getGenericParameterType());
+            }
+          }
+        },
+        ReflectionUtils.USER_DECLARED_METHODS);
+    if (signalTypes.isEmpty()) {
+      return null;
+    }
+    return (generationContext, beanRegistrationCode) ->
+        new BindingReflectionHintsRegistrar()
+            .registerReflectionHints(
+                generationContext.getRuntimeHints().reflection(), signalTypes.toArray(Type[]::new));
+  }
+}
@@ -0,0 +1,102 @@
+package io.github.akashgill3.datastar;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.core.Conventions;
+import org.springframework.core.MethodParameter;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.annotation.ValidationAnnotationUtils;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import tools.jackson.databind.ObjectReader;
+
+/**
+ * Resolves controller method parameters annotated with {@link DatastarSignals}.
+ *
+ * <p>The {@link ObjectReader} for each annotated parameter is resolved once
+ * and cached. The autoconfiguration calls {@link #prepare(HandlerMethod)} for every mapped handler
+ * at startup, so the request path only performs a map lookup before parsing.
+ *
+ * @author Akash Gill
+ */
+public class DatastarSignalsArgumentResolver implements HandlerMethodArgumentResolver {
+
+  private final Datastar datastar;
+
+  private final ConcurrentMap<MethodParameter, ObjectReader> readers = new ConcurrentHashMap<>();
+
+  public DatastarSignalsArgumentResolver(Datastar datastar) {
+    this.datastar = datastar;
+  }
+
+  /**
+   * Resolve the readers of all {@link DatastarSignals} parameters of a handler method ahead of the
+   * first request.
+   *
+   * @param handlerMethod the mapped handler method
+   */
+  public void prepare(HandlerMethod handlerMethod) {
+    for (MethodParameter parameter : handlerMethod.getMethodParameters()) {
+      if (supportsParameter(parameter)) {
+        reader(parameter);
+      }
+    }
+  }
+
+  @Override
+  public boolean supportsParameter(MethodParameter parameter) {
+    return parameter.hasParameterAnnotation(DatastarSignals.class);
+  }
+
+  @Override
+  public @Nullable Object resolveArgument(
+      @NonNull MethodParameter parameter,
+      @Nullable ModelAndViewContainer mavContainer,
+      @NonNull NativeWebRequest webRequest,
+      @Nullable WebDataBinderFactory binderFactory)
+      throws Exception {
+    HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+    if (request == null) {
+      throw new IllegalStateException("@DatastarSignals requires a servlet request");
+    }
+
+    Object signals = datastar.readSignals(request, reader(parameter));
+
+    if (binderFactory != null && signals != null) {
+      String name = Conventions.getVariableNameForParameter(parameter);
+      WebDataBinder binder = binderFactory.createBinder(webRequest, signals, name);
+      validateIfApplicable(binder, parameter);
+      if (binder.getBindingResult().hasErrors()) {
+        throw new MethodArgumentNotValidException(parameter, binder.getBindingResult());
+      }
+      if (mavContainer != null) {
+        mavContainer.addAttribute(BindingResult.MODEL_KEY_PREFIX + name, binder.getBindingResult());
+      }
+    }
+    return signals;
+  }
+
+  private ObjectReader reader(MethodParameter parameter) {
+    return readers.computeIfAbsent(
+        parameter, p -> datastar.signalReader(p.getGenericParameterType()));
+  }
+
+  private void validateIfApplicable(WebDataBinder binder, MethodParameter parameter) {
+    for (Annotation annotation : parameter.getParameterAnnotations()) {
+      Object[] hints = ValidationAnnotationUtils.determineValidationHints(annotation);
+      if (hints != null) {
+        binder.validate(hints);
+        break;
+      }
+    }
+  }
+}
@@ -5,7 +5,24 @@ import static org.springframework.http.MediaType.TEXT_PLAIN;
 import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
 import io.github.akashgill3.datastar.events.*;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 import org.jspecify.annotations.NonNull;
@@ -14,7 +31,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.node.ObjectNode;
 
 /**
  * SSE emitter for sending Datastar events to the browser.
@@ -23,34 +43,149 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter
  *
  * <ul>
  *   <li>{@link #patchElements(String)} - Patch DOM elements
+ *   <li>{@link #patchHtml(Consumer)} - Patch DOM elements written with an {@link Html} builder
  *   <li>{@link #patchSignals(String)} - Patch signal store
+ *   <li>{@link #patchSignals(Object)} - Patch signal store from an object serialized as JSON
  * </ul>
  *
  * <p>Also provides convenience methods:
  *
  * <ul>
  *   <li>{@link #executeScript(String)} - Execute JavaScript in the browser
+ *   <li>{@link #executeCompiledScript(CompiledScript)} - Execute a script compiled once with {@link
+ *       Datastar#compileScript(String)}
  *   <li>{@link #consoleLog(String)} - Log to browser console
  *   <li>{@link #consoleError(String)} - Log error to browser console
  *   <li>{@link #redirect(String)} - Redirect browser
  *   <li>{@link #replaceUrl(String)} - Replace url in the browser
  * </ul>
  *
+ * <p>Element and signal patches can be rate limited with {@link #rateLimit(double, int)} or
+ * globally with {@code datastar.rate-limit.*}. Events over the limit are coalesced rather than
+ * queued: a patch is merged into the one sent right before it if both have the same target and
+ * options, and kept in send order otherwise. Coalesced events are written together once the next
+ * token is available.
+ *
+ * <p>By default events are written on the sending thread, which waits while the client's socket
+ * buffer is full. With {@code datastar.writes.engine=non-blocking}, frames are queued per emitter
+ * and written with Servlet async I/O whenever the socket accepts data, so sending never waits on a
+ * slow client.
+ *
+ * <p>Producers can check {@link #isWritable()} before expensive renders, and wait for a slow client
+ * with {@link #onWritable(Runnable)} or {@link #awaitWritable(Duration)} instead of piling up
+ * frames it cannot take in time.
+ *
+ * <p>Several producers can share one connection through {@link #openChannel(String) channels},
+ * each with its own rate limit, coalescing and lifecycle.
+ *
  * @author Akash Gill
  */
 public class DatastarSseEmitter extends ResponseBodyEmitter {
 
   private static final Logger log = LoggerFactory.getLogger(DatastarSseEmitter.class);
 
-  private final DatastarProperties properties;
+  /** An SSE comment, ignored by the browser but failing fast once the client is gone. */
+  private static final String PROBE_FRAME = ":\n\n";
+
+
+  /** The leading line of an encoded {@link DatastarEventType#PATCH_SIGNALS} frame. */
+  private static final ByteBuffer PATCH_SIGNALS_EVENT_LINE =
+      ByteBuffer.wrap(
+              ("event: " + DatastarEventType.PATCH_SIGNALS.value + "\n")
+                  .getBytes(StandardCharsets.UTF_8))
+          .asReadOnlyBuffer();
+
+  /**
+   * The fixed lines of every script event without an id or retry: a patch appending to the body.
+   */
+  private static final String SCRIPT_EVENT_HEADER =
+      "event: "
+          + DatastarEventType.PATCH_ELEMENTS.value
+          + "\ndata: "
+          + Consts.SELECTOR_DATALINE_LITERAL
+          + " body\ndata: "
+          + Consts.MODE_DATALINE_LITERAL
+          + " "
+          + ElementPatchMode.Append.value
+          + "\n";
+
+  /** The {@code selector} and {@code mode} lines of {@link #SCRIPT_EVENT_HEADER}. */
+  private static final String SCRIPT_EVENT_DATA_LINES =
+      SCRIPT_EVENT_HEADER.substring(SCRIPT_EVENT_HEADER.indexOf("data: "));
+
+  private static final VarHandle WRITABLE_ACTIONS;
+
+  static {
+    try {
+      WRITABLE_ACTIONS =
+          MethodHandles.lookup()
+              .findVarHandle(DatastarSseEmitter.class, "writableActions", Queue.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  // Kept lean: at tens of thousands of mostly idle streams every field counts. Everything that is
+  // only needed once an emitter is rate limited or over its limit is allocated on first use.
+
+  private final EmitterContext context;
+
+  /** Guards the rate limiters, the coalesced events and the channels, and orders writes. */
+  private final ReentrantLock sendLock = new ReentrantLock();
+
+  /** Rate limiter and coalesced events, {@code null} until the emitter is first rate limited. */
+  private volatile Coalescing coalescing;
+
+  /** Open channels by name, allocated with the first one. */
+  private volatile Map<String, DatastarChannel> channels;
+
+  /** Time of the last event written, or of creation before the first one. */
+  private volatile long lastWriteNanos = System.nanoTime();
+
+  /** Time of the last liveness probe, {@code 0} before the first one. */
+  private volatile long lastProbeNanos;
+
+  /** Whether the emitter has been returned from a handler and bound to a response. */
+  private volatile boolean bound;
+
+  /** Write queue once bound with the non-blocking engine, {@code null} for blocking writes. */
+  private volatile NonBlockingWriter writer;
+
+  /** Size of the blocking write in progress, {@code 0} while none is. */
+  private volatile int inFlightBytes;
+
+  /**
+   * Actions registered with {@link #onWritable(Runnable)} and not run yet, allocated with the first
+   * one. A queue rather than composed closures, so that {@link #awaitWritable(Duration)} can remove
+   * its action again on timeout.
+   */
+  private volatile Queue<Runnable> writableActions;
+
+  /** Cleanup actions registered with {@link #onCleanup(Runnable)}. */
+  private final OnceActions cleanup = new OnceActions("emitter cleanup");
 
   public DatastarSseEmitter(DatastarProperties properties) {
-    this(properties, 60_000L); // 1 minute default timeout
+    this(properties, Consts.DEFAULT_EMITTER_TIMEOUT_MS);
   }
 
   public DatastarSseEmitter(DatastarProperties properties, long timeout) {
+    this(EmitterContext.defaults(properties), timeout);
+  }
+
+  DatastarSseEmitter(EmitterContext context, long timeout) {
     super(timeout);
-    this.properties = properties;
+    this.context = context;
+
+    TokenBucket rateLimit = defaultRateLimit();
+    if (rateLimit != null) {
+      this.coalescing = new Coalescing(rateLimit);
+    }
+
+    // One callback object for all three triggers instead of a lambda each.
+    CleanupCallback callback = new CleanupCallback();
+    onCompletion(callback);
+    onTimeout(callback);
+    onError(callback);
   }
 
   // ========================================================================
@@ -78,11 +213,192 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    */
   public DatastarSseEmitter patchElements(String elements, Consumer<PatchElementOptions> options)
       throws IOException {
+    patchElements(null, elements, options);
+    return this;
+  }
+
+  /** Send a patch elements event for {@code channel}, or for the emitter itself if {@code null}. */
+  void patchElements(
+      DatastarChannel channel, String elements, Consumer<PatchElementOptions> options)
+      throws IOException {
     PatchElementConfig opts = PatchElementConfig.from(options);
-    super.send(formatPatchElementsEvent(elements, opts), TEXT_PLAIN);
+    sendLock.lock();
+    try {
+      patchElements(coalescing(channel), elements, opts);
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  /**
+   * Send or coalesce a patch elements event, applying {@code datastar.limits} before a token is
+   * taken from the rate limiter. Must hold {@link #sendLock}.
+   */
+  private void patchElements(Coalescing events, String elements, PatchElementConfig opts)
+      throws IOException {
+    long budget = eventBudget();
+    long size = oversize(elements, budget);
+    if (size >= 0) {
+      elements = oversizedElements(events, elements, opts, size, budget);
+      if (elements == null) {
+        return;
+      }
+    }
+    if (mustCoalesce(events)) {
+      events.coalesceElements(elements, opts);
+    } else if (opts.chunkSize() == 0
+        || elements == null
+        || elements.length() <= opts.chunkSize()
+        || !sendChunked(elements, opts, opts.chunkSize())) {
+      sendFrame(formatPatchElementsEvent(elements, opts), opts.priority());
+    }
+  }
+
+  /**
+   * Write {@code elements} as a first patch and then append patches of at most {@code chunkSize}
+   * characters, each as soon as it is cut, see {@link PatchElementOptions#chunkSize}. Must hold
+   * {@link #sendLock}.
+   *
+   * @return {@code false}, having written nothing, if the mode or content cannot be chunked
+   */
+  private boolean sendChunked(String elements, PatchElementConfig opts, int chunkSize)
+      throws IOException {
+    ChunkedPatch patch = ChunkedPatch.of(elements, opts, chunkSize);
+    if (patch == null) {
+      return false;
+    }
+    sendFrame(formatPatchElementsEvent(patch.first(), opts), opts.priority());
+    while (patch.chunks().hasNext()) {
+      sendFrame(formatPatchElementsEvent(patch.chunks().next(), patch.append()), opts.priority());
+    }
+    return true;
+  }
+
+  /**
+   * Write {@code elements} in chunks like {@link #sendChunked}, but only if every chunk fits in
+   * {@code budget} bytes. A single top-level element is never split, so it may not. Must hold
+   * {@link #sendLock}.
+   *
+   * @return {@code false}, having written nothing, if the elements cannot be chunked within budget
+   */
+  private boolean sendChunked(String elements, PatchElementConfig opts, int chunkSize, long budget)
+      throws IOException {
+    ChunkedPatch patch = ChunkedPatch.of(elements, opts, chunkSize);
+    if (patch == null) {
+      return false;
+    }
+    List<String> chunks = new ArrayList<>();
+    chunks.add(patch.first());
+    while (patch.chunks().hasNext()) {
+      chunks.add(patch.chunks().next());
+    }
+    for (String chunk : chunks) {
+      if (oversize(chunk, budget) >= 0) {
+        return false;
+      }
+    }
+    sendFrame(formatPatchElementsEvent(chunks.get(0), opts), opts.priority());
+    for (int i = 1; i < chunks.size(); i++) {
+      sendFrame(formatPatchElementsEvent(chunks.get(i), patch.append()), opts.priority());
+    }
+    return true;
+  }
+
+  /**
+   * Elements cut into chunks: the first patch, sent with the original options, and the chunks
+   * appended after it to {@code append}'s target.
+   */
+  private record ChunkedPatch(String first, ElementChunks chunks, PatchElementConfig append) {
+
+    /** Returns the chunks of {@code elements}, or {@code null} if they cannot be chunked. */
+    static ChunkedPatch of(String elements, PatchElementConfig opts, int chunkSize) {
+      String target;
+      ElementChunks chunks;
+      String[] root = null;
+      if (opts.mode() == ElementPatchMode.Outer) {
+        root = ElementChunks.splitRoot(elements);
+        target = root == null ? "" : patchTarget(elements.strip(), opts.selector());
+        if (target.isEmpty()) {
+          return null;
+        }
+        chunks = new ElementChunks(root[1], chunkSize);
+      } else if (opts.mode() == ElementPatchMode.Inner || opts.mode() == ElementPatchMode.Append) {
+        if (opts.selector() == null || opts.selector().isBlank()) {
+          return null;
+        }
+        target = opts.selector();
+        chunks = new ElementChunks(elements, chunkSize);
+      } else {
+        return null;
+      }
+      String first = chunks.hasNext() ? chunks.next() : "";
+      PatchElementConfig append =
+          new PatchElementConfig(
+              null,
+              null,
+              target,
+              ElementPatchMode.Append,
+              Consts.DEFAULT_ELEMENTS_USE_VIEW_TRANSITIONS,
+              opts.namespace(),
+              opts.priority(),
+              0);
+      return new ChunkedPatch(root == null ? first : root[0] + first + root[2], chunks, append);
+    }
+  }
+
+  /**
+   * Send a patch elements event built with an {@link Html} builder.
+   *
+   * <p>The markup is written straight into the event frame, with text and attribute values escaped
+   * for their context, so no fragment string is built in between. With {@code datastar.limits} or
+   * while over the rate limit, it is rendered on its own first, to be measured or coalesced.
+   *
+   * @param html writes the elements to patch
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter patchHtml(Consumer<Html> html) throws IOException {
+    return patchHtml(html, options -> {});
+  }
+
+  /**
+   * Send a patch elements event built with an {@link Html} builder.
+   *
+   * @param html writes the elements to patch
+   * @param options the patch options
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter patchHtml(Consumer<Html> html, Consumer<PatchElementOptions> options)
+      throws IOException {
+    patchHtml(null, html, options);
     return this;
   }
 
+  /** Send a patch elements event for {@code channel}, or for the emitter itself if {@code null}. */
+  void patchHtml(
+      DatastarChannel channel, Consumer<Html> html, Consumer<PatchElementOptions> options)
+      throws IOException {
+    Objects.requireNonNull(html, "html must not be null");
+    PatchElementConfig opts = PatchElementConfig.from(options);
+    sendLock.lock();
+    try {
+      Coalescing events = coalescing(channel);
+      if (eventBudget() < 0 && !mustCoalesce(events)) {
+        sendFrame(formatPatchElementsEvent(html, opts), opts.priority());
+      } else {
+        // Rendered on its own, to be measured before it is formatted or coalesced.
+        StringBuilder elements = new StringBuilder();
+        Html builder = new Html(elements, false);
+        html.accept(builder);
+        builder.finish();
+        patchElements(events, elements.toString(), opts);
+      }
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
   /**
    * Send a patch signals event to update the signal store.
    *
@@ -104,172 +420,1451 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    */
   public DatastarSseEmitter patchSignals(String signals, Consumer<PatchSignalOptions> config)
       throws IOException {
+    patchSignals(null, signals, config);
+    return this;
+  }
+
+  /**
+   * Send a patch signals event, serializing {@code signals} to JSON.
+   *
+   * <p>Accepts any object Jackson can serialize, such as a record or a {@code Map}. The object is
+   * written as compact JSON directly into the event, without an intermediate JSON string. A {@link
+   * String} argument is treated as already serialized JSON.
+   *
+   * @param signals the signals to patch
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter patchSignals(Object signals) throws IOException {
+    return patchSignals(signals, options -> {});
+  }
+
+  /**
+   * Send a patch signals event, serializing {@code signals} to JSON.
+   *
+   * @param signals the signals to patch
+   * @param config the patch options
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   * @see #patchSignals(Object)
+   */
+  public DatastarSseEmitter patchSignals(Object signals, Consumer<PatchSignalOptions> config)
+      throws IOException {
+    patchSignals(null, signals, config);
+    return this;
+  }
+
+  /**
+   * Send a patch signals event for {@code channel}, or for the emitter itself if {@code null}. A
+   * {@link String} is treated as already serialized JSON.
+   */
+  void patchSignals(DatastarChannel channel, Object signals, Consumer<PatchSignalOptions> config)
+      throws IOException {
     PatchSignalConfig opts = PatchSignalConfig.from(config);
-    super.send(formatPatchSignalsEvent(signals, opts), TEXT_PLAIN);
+    sendLock.lock();
+    try {
+      String json = signals instanceof String string ? string : null;
+      if (json == null && signals != null && eventBudget() >= 0) {
+        // Serialized on its own, to be measured before it is formatted.
+        StringBuilder serialized = new StringBuilder();
+        context.signalWriters().write(serialized, signals);
+        json = serialized.toString();
+      }
+      if (json != null) {
+        checkSize(DatastarEventType.PATCH_SIGNALS, json);
+      }
+      Coalescing events = coalescing(channel);
+      if (mustCoalesce(events)) {
+        events.coalesceSignals(json != null ? json : signals, opts);
+      } else if (json != null || signals == null) {
+        sendFrame(formatPatchSignalsEvent(json, opts), opts.priority());
+      } else {
+        sendFrame(formatPatchSignalsEvent(signals, opts), opts.priority());
+      }
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  /**
+   * Send several patch elements events as a single write, for {@code channel} or for the emitter
+   * itself if {@code null}. The write takes the priority of the first patch. While over the rate
+   * limit, each patch is coalesced on its own instead.
+   */
+  void patchElements(DatastarChannel channel, List<ElementPatch> patches) throws IOException {
+    if (patches.isEmpty()) {
+      return;
+    }
+    List<PatchElementConfig> configs = new ArrayList<>(patches.size());
+    for (ElementPatch patch : patches) {
+      checkSize(DatastarEventType.PATCH_ELEMENTS, patch.elements());
+      configs.add(PatchElementConfig.from(patch.options()));
+    }
+    sendLock.lock();
+    try {
+      Coalescing events = coalescing(channel);
+      if (!wouldCoalesce(events)) {
+        checkBatchSize(patches);
+      }
+      if (mustCoalesce(events)) {
+        for (int i = 0; i < patches.size(); i++) {
+          events.coalesceElements(patches.get(i).elements(), configs.get(i));
+        }
+      } else {
+        StringBuilder frames = new StringBuilder();
+        for (int i = 0; i < patches.size(); i++) {
+          frames.append(formatPatchElementsEvent(patches.get(i).elements(), configs.get(i)));
+        }
+        sendFrame(frames.toString(), configs.get(0).priority());
+      }
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  // ========================================================================
+  // Execute Script - Convenience Methods
+  // ========================================================================
+
+  /**
+   * Execute a JavaScript script in the browser with default options.
+   *
+   * <p>This is a convenience method that internally creates a {@code <script>} tag and sends it via
+   * {@link #patchElements(String)}. It is not a separate Datastar event type.
+   *
+   * @param script the JavaScript code to execute
+   * @return this emitter
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter executeScript(String script) throws IOException {
+    return executeScript(script, options -> {});
+  }
+
+  /**
+   * Execute a JavaScript script in the browser with custom options.
+   *
+   * @param script the JavaScript code to execute
+   * @param options configuration for script execution
+   * @return this emitter
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter executeScript(String script, Consumer<ExecuteScriptOptions> options)
+      throws IOException {
+    executeScript(null, script, options);
+    return this;
+  }
+
+  /** Execute a script for {@code channel}, or for the emitter itself if {@code null}. */
+  void executeScript(
+      DatastarChannel channel, String script, Consumer<ExecuteScriptOptions> options)
+      throws IOException {
+    checkSize(DatastarEventType.PATCH_ELEMENTS, script);
+    ExecuteScriptConfig opts = ExecuteScriptConfig.from(options);
+    String element = buildScriptElement(script, opts.autoRemove(), opts.attributes());
+    sendScript(
+        channel, element, scriptEventId(opts), scriptRetryDuration(opts), null, opts.priority());
+  }
+
+  /**
+   * Execute a script compiled ahead of time with {@link Datastar#compileScript(String)}.
+   *
+   * <p>The pre-encoded frame is written as is, so sending involves no formatting at all.
+   *
+   * @param script the compiled script
+   * @return this emitter
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter executeCompiledScript(CompiledScript script) throws IOException {
+    executeCompiledScript(null, script);
     return this;
   }
 
-  // ========================================================================
-  // Execute Script - Convenience Methods
-  // ========================================================================
-
+  /** Execute a compiled script for {@code channel}, or for the emitter itself if {@code null}. */
+  void executeCompiledScript(DatastarChannel channel, CompiledScript script) throws IOException {
+    Objects.requireNonNull(script, "script must not be null");
+    sendScript(
+        channel,
+        script.element(),
+        script.eventId(),
+        script.retryDuration(),
+        script.frame(),
+        script.priority());
+  }
+
+  // ========================================================================
+  // Console Logging - Convenience Methods
+  // ========================================================================
+
+  /**
+   * Log a message to the browser console.
+   *
+   * <p>Equivalent to calling {@code console.log(message)} in the browser.
+   *
+   * @param message the message to log
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter consoleLog(String message) throws IOException {
+    return consoleLog(message, options -> {});
+  }
+
+  /**
+   * Log a message to the browser console with custom options.
+   *
+   * @param message the message to log
+   * @param options execution options
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter consoleLog(String message, Consumer<ExecuteScriptOptions> options)
+      throws IOException {
+    return executeScript(consoleLogScript(message), options);
+  }
+
+  /**
+   * Log an error to the browser console.
+   *
+   * <p>Equivalent to calling {@code console.error(message)} in the browser.
+   *
+   * @param message the error message to log
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter consoleError(String message) throws IOException {
+    return consoleError(message, options -> {});
+  }
+
+  /**
+   * Log an error to the browser console with custom options.
+   *
+   * @param message the error message to log
+   * @param options execution options
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter consoleError(String message, Consumer<ExecuteScriptOptions> options)
+      throws IOException {
+    return executeScript(consoleErrorScript(message), options);
+  }
+
+  // ========================================================================
+  // Browser Navigation - Convenience Methods
+  // ========================================================================
+
+  /**
+   * Redirect the browser to a new URL.
+   *
+   * <p>Uses {@code setTimeout} to allow current event processing to complete before redirecting.
+   *
+   * @param url the URL to redirect to
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter redirect(String url) throws IOException {
+    return redirect(url, options -> {});
+  }
+
+  /**
+   * Redirect the browser to a new URL with custom options.
+   *
+   * @param url the URL to redirect to
+   * @param options execution options
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter redirect(String url, Consumer<ExecuteScriptOptions> options)
+      throws IOException {
+    return executeScript(redirectScript(url), options);
+  }
+
+  /**
+   * Replace the current URL in the browser's history without reloading.
+   *
+   * <p>Uses {@code window.history.replaceState} to update the URL bar.
+   *
+   * @param url the new URL
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter replaceUrl(String url) throws IOException {
+    return replaceUrl(url, options -> {});
+  }
+
+  /**
+   * Replace the current URL in the browser's history with custom options.
+   *
+   * @param url the new URL
+   * @param options execution options
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   */
+  public DatastarSseEmitter replaceUrl(String url, Consumer<ExecuteScriptOptions> options)
+      throws IOException {
+    return executeScript(replaceUrlScript(url), options);
+  }
+
+  // ========================================================================
+  // Channels
+  // ========================================================================
+
+  /**
+   * Open a logical channel on this emitter, for one producer or topic subscription sharing the
+   * connection with others.
+   *
+   * <p>A channel has its own rate limit, coalesced events and lifecycle, while its frames are
+   * written through this emitter's connection and write queue. Closing a channel writes its
+   * coalesced events and runs its close actions, leaving the emitter and other channels open.
+   * Every channel is closed once the emitter cleans up. Opening a channel after that returns one
+   * that is already closed, whose close actions run as soon as they are registered.
+   *
+   * <pre>{@code
+   * DatastarChannel chat = sseEmitter.openChannel("chat");
+   * chat.onClose(chatRoom.subscribe(message -> chat.patchElements(render(message))));
+   * }</pre>
+   *
+   * @param name the channel name, unique among the open channels of this emitter
+   * @return the channel
+   * @throws IllegalStateException if a channel with that name is already open
+   */
+  public DatastarChannel openChannel(String name) {
+    Objects.requireNonNull(name, "name must not be null");
+    DatastarChannel channel = new DatastarChannel(this, name, new Coalescing(defaultRateLimit()));
+    sendLock.lock();
+    try {
+      if (!isCleanedUp()) {
+        Map<String, DatastarChannel> open = channels;
+        if (open == null) {
+          open = new ConcurrentHashMap<>();
+          channels = open;
+        }
+        if (open.putIfAbsent(name, channel) != null) {
+          throw new IllegalStateException("Datastar channel '" + name + "' is already open");
+        }
+      }
+    } finally {
+      sendLock.unlock();
+    }
+    // Cleanup may have missed a channel registered while it ran.
+    if (isCleanedUp()) {
+      channel.closed();
+    }
+    return channel;
+  }
+
+  /**
+   * Returns the open channel with the given name.
+   *
+   * @param name the channel name
+   * @return the channel, or {@code null} if none with that name is open
+   */
+  public DatastarChannel getChannel(String name) {
+    Map<String, DatastarChannel> open = channels;
+    return open == null ? null : open.get(name);
+  }
+
+  /** Close {@code channel}, writing its coalesced events first. Called by the channel. */
+  void closeChannel(DatastarChannel channel) {
+    sendLock.lock();
+    try {
+      Map<String, DatastarChannel> open = channels;
+      if (open != null && open.remove(channel.getName(), channel) && !isCleanedUp()) {
+        channel.coalescing().writePendingEvents();
+      }
+    } catch (IOException | RuntimeException ex) {
+      log.debug("Failed to write coalesced events of closed channel", ex);
+    } finally {
+      channel.coalescing().discardPendingEvents();
+      channel.markClosed();
+      sendLock.unlock();
+    }
+    channel.closed();
+  }
+
+  // ========================================================================
+  // Encoded Frames
+  // ========================================================================
+
+  /**
+   * Send a frame encoded once with {@link Datastar#encodeElements} or {@link
+   * Datastar#encodeSignals}, typically to many emitters.
+   *
+   * <p>The pending write holds a reference to the frame, released once it has been written. The
+   * caller keeps its own reference and releases it when done sending. While over the rate limit,
+   * the event is coalesced like any other instead. With {@code datastar.limits}, the whole encoded
+   * frame has to fit in the event budget.
+   *
+   * @param frame the encoded frame
+   * @return this emitter for method chaining
+   * @throws IOException if an I/O error occurs
+   * @throws EventTooLargeException if the frame is over budget
+   * @throws IllegalStateException if the frame has already been released
+   */
+  public DatastarSseEmitter send(EncodedFrame frame) throws IOException {
+    Objects.requireNonNull(frame, "frame must not be null");
+    sendLock.lock();
+    try {
+      long budget = eventBudget();
+      if (budget >= 0 && frame.size() > budget) {
+        recordOversized(eventType(frame), frame.size(), budget, "rejected");
+        throw new EventTooLargeException(frame.size(), budget);
+      }
+      if (mustCoalesce(coalescing) && frame.replay() != null) {
+        frame.replay().sendTo(this);
+      } else {
+        sendEncoded(frame.retain());
+      }
+    } finally {
+      sendLock.unlock();
+    }
+    return this;
+  }
+
+  /**
+   * Encode a patch elements event for {@link Datastar#encodeElements}.
+   *
+   * @param pool the pool to encode into, or {@code null} for a heap buffer
+   */
+  static EncodedFrame encodeElements(
+      FramePool pool, String elements, Consumer<PatchElementOptions> options) {
+    PatchElementConfig opts = PatchElementConfig.from(options);
+    String frame = patchElementsFrame(elements, opts);
+    EncodedFrame.EventReplay replay = emitter -> emitter.patchElements(elements, options);
+    return pool != null
+        ? pool.encode(frame, replay, opts.priority())
+        : FramePool.encodeUnpooled(frame, replay, opts.priority());
+  }
+
+  /**
+   * Encode a patch signals event for {@link Datastar#encodeSignals}.
+   *
+   * @param pool the pool to encode into, or {@code null} for a heap buffer
+   */
+  static EncodedFrame encodeSignals(
+      FramePool pool, String signals, Consumer<PatchSignalOptions> options) {
+    PatchSignalConfig opts = PatchSignalConfig.from(options);
+    String frame = patchSignalsFrame(signals, opts);
+    EncodedFrame.EventReplay replay = emitter -> emitter.patchSignals(signals, options);
+    return pool != null
+        ? pool.encode(frame, replay, opts.priority())
+        : FramePool.encodeUnpooled(frame, replay, opts.priority());
+  }
+
+  /** Write an encoded frame whose reference this write owns. Must hold {@link #sendLock}. */
+  private void sendEncoded(EncodedFrame frame) throws IOException {
+    NonBlockingWriter nonBlocking = writer;
+    if (nonBlocking != null) {
+      enqueue(nonBlocking, frame);
+      return;
+    }
+    EncodedFrame.Write write = new EncodedFrame.Write(frame);
+    inFlightBytes = frame.size();
+    try {
+      super.send(write, TEXT_PLAIN);
+    } catch (IOException ex) {
+      write.release();
+      cleanUp();
+      throw ex;
+    } catch (RuntimeException ex) {
+      write.release();
+      throw ex;
+    } finally {
+      inFlightBytes = 0;
+    }
+    lastWriteNanos = System.nanoTime();
+    runWritableActions();
+  }
+
+  // ========================================================================
+  // Script Events
+  // ========================================================================
+
+  /**
+   * Compile a script event once for {@link #executeCompiledScript(CompiledScript)}.
+   *
+   * @param script the JavaScript code to execute
+   * @param options configuration for script execution
+   * @return the compiled script
+   */
+  static CompiledScript compileScript(String script, Consumer<ExecuteScriptOptions> options) {
+    ExecuteScriptConfig opts = ExecuteScriptConfig.from(options);
+    String element = buildScriptElement(script, opts.autoRemove(), opts.attributes());
+    String eventId = scriptEventId(opts);
+    Long retryDuration = scriptRetryDuration(opts);
+    return new CompiledScript(
+        element,
+        eventId,
+        retryDuration,
+        formatScriptEvent(element, eventId, retryDuration),
+        opts.priority());
+  }
+
+  static String consoleLogScript(String message) {
+    return scriptCall("console.log(", message, ")");
+  }
+
+  static String consoleErrorScript(String message) {
+    return scriptCall("console.error(", message, ")");
+  }
+
+  static String redirectScript(String url) {
+    return scriptCall("setTimeout(() => window.location.href = ", url, ")");
+  }
+
+  static String replaceUrlScript(String url) {
+    return scriptCall("setTimeout(() => window.history.replaceState({}, '', ", url, "))");
+  }
+
+  /** Returns {@code prefix}, the argument as an escaped string literal and {@code suffix}. */
+  private static String scriptCall(String prefix, String argument, String suffix) {
+    if (argument != null && !JsStrings.needsEscaping(argument)) {
+      return prefix + '"' + argument + '"' + suffix;
+    }
+    int capacity =
+        prefix.length() + (argument == null ? 4 : argument.length() + 2) + suffix.length();
+    StringBuilder sb = new StringBuilder(capacity).append(prefix);
+    return JsStrings.appendQuoted(sb, argument).append(suffix).toString();
+  }
+
+  /**
+   * Send a script element, or coalesce it while over the rate limit.
+   *
+   * @param frame the pre-encoded frame, or {@code null} to format it now
+   */
+  private void sendScript(
+      DatastarChannel channel,
+      String element,
+      String eventId,
+      Long retryDuration,
+      String frame,
+      EventPriority priority)
+      throws IOException {
+    sendLock.lock();
+    try {
+      Coalescing events = coalescing(channel);
+      if (mustCoalesce(events)) {
+        events.coalesceElements(
+            element,
+            new PatchElementConfig(
+                eventId,
+                retryDuration,
+                "body",
+                ElementPatchMode.Append,
+                Consts.DEFAULT_ELEMENTS_USE_VIEW_TRANSITIONS,
+                Consts.DEFAULT_NAMESPACE,
+                priority,
+                0));
+      } else {
+        sendFrame(
+            frame != null ? frame : formatScriptEvent(element, eventId, retryDuration), priority);
+      }
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  private static String scriptEventId(ExecuteScriptConfig opts) {
+    return opts.eventId() == null || opts.eventId().isEmpty() ? null : opts.eventId();
+  }
+
+  private static Long scriptRetryDuration(ExecuteScriptConfig opts) {
+    Long retryDuration = opts.retryDuration();
+    return retryDuration == null || retryDuration == Consts.DEFAULT_SSE_RETRY_DURATION_MS
+        ? null
+        : retryDuration;
+  }
+
+  /**
+   * Formats a script event, the same frame {@link #formatPatchElementsEvent} produces for a body
+   * append, starting from the pre-encoded header and only appending the element itself.
+   */
+  private static String formatScriptEvent(String element, String eventId, Long retryDuration) {
+    StringBuilder sb = new StringBuilder(SCRIPT_EVENT_HEADER.length() + element.length() + 32);
+    if (eventId == null && retryDuration == null) {
+      sb.append(SCRIPT_EVENT_HEADER);
+    } else {
+      appendLine(sb, "event", DatastarEventType.PATCH_ELEMENTS.value);
+      if (eventId != null) {
+        appendLine(sb, "id", eventId);
+      }
+      if (retryDuration != null) {
+        appendLine(sb, "retry", retryDuration);
+      }
+      sb.append(SCRIPT_EVENT_DATA_LINES);
+    }
+    appendNonBlankDataLines(sb, Consts.ELEMENTS_DATALINE_LITERAL, element);
+    return sb.append('\n').toString();
+  }
+
+  // ========================================================================
+  // Rate Limiting
+  // ========================================================================
+
+  /**
+   * Limit the rate of element and signal patches written by this emitter, overriding {@code
+   * datastar.rate-limit.*}.
+   *
+   * <p>Up to {@code burst} events are written back to back, then at most {@code eventsPerSecond}.
+   * Events over the limit are queued in send order and written together with the next token. A
+   * patch is merged into the one queued right before it if both have the same options and target,
+   * which is the selector or else the ids of all top-level elements:
+   *
+   * <ul>
+   *   <li>Replacing patches ({@code inner}, {@code remove}, and {@code outer} or {@code replace}
+   *       without a selector) keep only the later patch.
+   *   <li>Additive patches ({@code append}, {@code prepend}, {@code before}, {@code after}) are
+   *       concatenated so that the result matches applying them in order.
+   *   <li>Signal patches are merged into one JSON merge patch.
+   * </ul>
+   *
+   * <p>Patches for other targets in between, or without ids, are kept as they are, so coalescing
+   * never reorders or drops an update.
+   *
+   * @param eventsPerSecond sustained events per second; {@code 0} disables rate limiting
+   * @param burst events that may be written back to back, at least 1 when rate limiting
+   * @return this emitter for method chaining
+   * @throws IOException if disabling rate limiting fails to write coalesced events
+   */
+  public DatastarSseEmitter rateLimit(double eventsPerSecond, int burst) throws IOException {
+    rateLimit(null, eventsPerSecond, burst);
+    return this;
+  }
+
+  /** Rate limit {@code channel}, or the emitter itself if {@code null}. */
+  void rateLimit(DatastarChannel channel, double eventsPerSecond, int burst) throws IOException {
+    sendLock.lock();
+    try {
+      Coalescing events = coalescing(channel);
+      if (eventsPerSecond == 0) {
+        if (events != null) {
+          events.rateLimit = null;
+          events.writePendingEvents();
+        }
+      } else if (events == null) {
+        coalescing = new Coalescing(new TokenBucket(eventsPerSecond, burst));
+      } else {
+        events.rateLimit = new TokenBucket(eventsPerSecond, burst);
+      }
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of events that were not written as a frame of their own because they were
+   * coalesced into another event while over the rate limit. Events of channels are counted by
+   * their channel.
+   *
+   * @return the number of suppressed events
+   */
+  public long getSuppressedEventCount() {
+    Coalescing events = coalescing;
+    return events == null ? 0 : events.suppressedEvents();
+  }
+
+  /**
+   * Writes coalesced events before completing, so no update is lost.
+   *
+   * <p>See {@link ResponseBodyEmitter#complete()}.
+   */
+  @Override
+  public void complete() {
+    sendLock.lock();
+    try {
+      writeAllPendingEvents();
+    } catch (IOException | RuntimeException ex) {
+      log.debug("Failed to write coalesced events on completion", ex);
+    } finally {
+      sendLock.unlock();
+    }
+    NonBlockingWriter nonBlocking = writer;
+    if (nonBlocking != null) {
+      nonBlocking.close(this::completeResponse);
+    } else {
+      completeResponse();
+    }
+  }
+
+  private void completeResponse() {
+    try {
+      super.complete();
+    } finally {
+      cleanUp();
+    }
+  }
+
+  /**
+   * Discards coalesced events before completing with an error.
+   *
+   * <p>See {@link ResponseBodyEmitter#completeWithError(Throwable)}.
+   */
+  @Override
+  public void completeWithError(@NonNull Throwable ex) {
+    sendLock.lock();
+    try {
+      discardAllPendingEvents();
+    } finally {
+      sendLock.unlock();
+    }
+    NonBlockingWriter nonBlocking = writer;
+    if (nonBlocking != null) {
+      nonBlocking.discard();
+    }
+    try {
+      super.completeWithError(ex);
+    } finally {
+      cleanUp();
+    }
+  }
+
+  /** Returns the rate limiter configured by {@code datastar.rate-limit.*}, or {@code null}. */
+  private TokenBucket defaultRateLimit() {
+    DatastarProperties.RateLimit defaults = context.properties().rateLimit();
+    return defaults.enabled()
+        ? new TokenBucket(defaults.eventsPerSecond(), defaults.effectiveBurst())
+        : null;
+  }
+
+  /**
+   * Returns the coalescing of {@code channel}, or of this emitter if {@code null}, which is itself
+   * {@code null} until the emitter is first rate limited. Must hold {@link #sendLock}.
+   *
+   * @throws IllegalStateException if the channel has been closed
+   */
+  private Coalescing coalescing(DatastarChannel channel) {
+    if (channel == null) {
+      return coalescing;
+    }
+    if (!channel.isOpen()) {
+      throw new IllegalStateException("Datastar channel '" + channel.getName() + "' is closed");
+    }
+    return channel.coalescing();
+  }
+
+  /** Whether the next event has to be coalesced. Takes a token otherwise. */
+  private static boolean mustCoalesce(Coalescing events) {
+    return events != null && events.mustCoalesce();
+  }
+
+  /** Whether the next event would have to be coalesced, without taking a token. */
+  private static boolean wouldCoalesce(Coalescing events) {
+    return events != null && events.wouldCoalesce();
+  }
+
+  /** Write the coalesced events of the emitter and of every open channel. Must hold the lock. */
+  private void writeAllPendingEvents() throws IOException {
+    if (coalescing != null) {
+      coalescing.writePendingEvents();
+    }
+    Map<String, DatastarChannel> open = channels;
+    if (open != null) {
+      for (DatastarChannel channel : open.values()) {
+        channel.coalescing().writePendingEvents();
+      }
+    }
+  }
+
+  /** Drop the coalesced events of the emitter and of every open channel. Must hold the lock. */
+  private void discardAllPendingEvents() {
+    if (coalescing != null) {
+      coalescing.discardPendingEvents();
+    }
+    Map<String, DatastarChannel> open = channels;
+    if (open != null) {
+      for (DatastarChannel channel : open.values()) {
+        channel.coalescing().discardPendingEvents();
+      }
+    }
+  }
+
+  /**
+   * Rate limiter and events coalesced while over it, of the emitter itself or of one {@link
+   * DatastarChannel}. Guarded by {@link #sendLock}; a channel only holds on to its own.
+   */
+  final class Coalescing {
+
+    /** Rate limiter, {@code null} when rate limiting is disabled. */
+    private TokenBucket rateLimit;
+
+    /** Events coalesced while over the rate limit in send order, allocated on first use. */
+    private Deque<Object> pendingEvents;
+
+    private ScheduledFuture<?> pendingFlush;
+
+    private volatile long suppressedEvents;
+
+    Coalescing(TokenBucket rateLimit) {
+      this.rateLimit = rateLimit;
+    }
+
+    long suppressedEvents() {
+      return suppressedEvents;
+    }
+
+    /** Whether the next event has to be coalesced. Takes a token otherwise. */
+    private boolean mustCoalesce() {
+      return rateLimit != null
+          && ((pendingEvents != null && !pendingEvents.isEmpty()) || !rateLimit.tryAcquire());
+    }
+
+    /** Whether the next event would have to be coalesced, without taking a token. */
+    private boolean wouldCoalesce() {
+      return rateLimit != null
+          && ((pendingEvents != null && !pendingEvents.isEmpty())
+              || rateLimit.nanosUntilAvailable() > 0);
+    }
+
+    /**
+     * Queue a patch, merging it into the last queued one if that has the same target and options.
+     * Only adjacent patches are merged, so the queue keeps the order the patches were sent in.
+     */
+    private void coalesceElements(String elements, PatchElementConfig options) {
+      String target = coalescingTarget(elements, options);
+      Deque<Object> pending = pendingEvents();
+      if (target != null
+          && pending.peekLast() instanceof PendingElements last
+          && target.equals(last.target)
+          && options.equals(last.options)) {
+        last.merge(elements, options.selector() != null && !options.selector().isBlank());
+        suppressed(1);
+      } else {
+        pending.addLast(new PendingElements(target, elements, options));
+      }
+      schedulePendingFlush();
+    }
+
+    /** Queue a signal patch, merging it into the last queued one if that has the same options. */
+    private void coalesceSignals(Object signals, PatchSignalConfig options) {
+      if (signals == null || (signals instanceof String json && json.isBlank())) {
+        return;
+      }
+      JsonNode patch = context.signalWriters().toTree(signals);
+      Deque<Object> pending = pendingEvents();
+      if (pending.peekLast() instanceof PendingSignals last && options.equals(last.options)) {
+        last.signals = mergePatches(last.signals, patch);
+        suppressed(1);
+      } else {
+        pending.addLast(new PendingSignals(patch, options));
+      }
+      schedulePendingFlush();
+    }
+
+    private Deque<Object> pendingEvents() {
+      if (pendingEvents == null) {
+        pendingEvents = new ArrayDeque<>();
+      }
+      return pendingEvents;
+    }
+
+    private void suppressed(int count) {
+      if (count > 0) {
+        suppressedEvents += count;
+        context.suppressedEvents().add(count);
+      }
+    }
+
+    private void schedulePendingFlush() {
+      if (pendingFlush == null && rateLimit != null) {
+        pendingFlush =
+            DatastarScheduler.schedule(
+                this::flushPendingEvents, rateLimit.nanosUntilAvailable(), TimeUnit.NANOSECONDS);
+      }
+    }
+
+    /** Runs on the scheduler once a token should be available. */
+    private void flushPendingEvents() {
+      sendLock.lock();
+      try {
+        pendingFlush = null;
+        if (isCleanedUp()) {
+          discardPendingEvents();
+          return;
+        }
+        if (pendingEvents == null || pendingEvents.isEmpty()) {
+          return;
+        }
+        if (rateLimit != null && !rateLimit.tryAcquire()) {
+          schedulePendingFlush();
+          return;
+        }
+        writePendingEvents();
+      } catch (IOException | RuntimeException ex) {
+        log.debug("Failed to write coalesced events, discarding them", ex);
+        discardPendingEvents();
+      } finally {
+        sendLock.unlock();
+      }
+    }
+
+    /**
+     * Write all coalesced events, as a single write per {@link EventPriority}, high priority first.
+     * Must hold {@link #sendLock}.
+     */
+    private void writePendingEvents() throws IOException {
+      if (pendingFlush != null) {
+        pendingFlush.cancel(false);
+        pendingFlush = null;
+      }
+      if (pendingEvents == null || pendingEvents.isEmpty()) {
+        return;
+      }
+      StringBuilder high = new StringBuilder();
+      StringBuilder normal = new StringBuilder();
+      for (Object event : pendingEvents) {
+        switch (event) {
+          case PendingElements e ->
+              (e.options.priority() == EventPriority.HIGH ? high : normal)
+                  .append(formatPatchElementsEvent(e.elements.toString(), e.options));
+          case PendingSignals sig ->
+              (sig.options.priority() == EventPriority.HIGH ? high : normal)
+                  .append(formatPatchSignalsEvent(sig.signals, sig.options));
+          default -> throw new IllegalStateException("Unknown pending event: " + event);
+        }
+      }
+      pendingEvents.clear();
+      if (!high.isEmpty()) {
+        sendFrame(high.toString(), EventPriority.HIGH);
+      }
+      if (!normal.isEmpty()) {
+        sendFrame(normal.toString(), EventPriority.NORMAL);
+      }
+    }
+
+    private void discardPendingEvents() {
+      if (pendingFlush != null) {
+        pendingFlush.cancel(false);
+        pendingFlush = null;
+      }
+      if (pendingEvents != null) {
+        pendingEvents.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns what a patch applies to, for merging it with an adjacent patch of the same options, or
+   * {@code null} if it must not be merged.
+   *
+   * <p>That is the selector if there is one, except in the {@code outer} and {@code replace} modes
+   * whose patched content might no longer match it. Without a selector, each top-level element is
+   * patched by its id, so the target is the list of those ids, and there is none if any top-level
+   * node lacks one.
+   */
+  private static String coalescingTarget(String elements, PatchElementConfig options) {
+    ElementPatchMode mode = options.mode();
+    if (options.selector() != null && !options.selector().isBlank()) {
+      return mode == ElementPatchMode.Outer || mode == ElementPatchMode.Replace
+          ? null
+          : options.selector().trim();
+    }
+    if (elements == null || elements.isBlank()) {
+      return null;
+    }
+    StringBuilder ids = new StringBuilder();
+    ElementChunks nodes = new ElementChunks(elements, 0);
+    while (nodes.hasNext()) {
+      String node = nodes.next().strip();
+      if (node.isEmpty()) {
+        continue;
+      }
+      String id = patchTarget(node, null);
+      if (id.isEmpty()) {
+        return null;
+      }
+      ids.append(id).append(',');
+    }
+    return ids.toString();
+  }
+
+  /** Returns the selector, or else the id of the first element, or else an empty string. */
+  private static String patchTarget(String elements, String selector) {
+    if (selector != null && !selector.isBlank()) {
+      return selector.trim();
+    }
+    if (elements == null) {
+      return "";
+    }
+    int tagEnd = elements.indexOf('>');
+    int idStart = elements.indexOf(" id=");
+    if (idStart < 0 || (tagEnd >= 0 && idStart > tagEnd) || idStart + 5 > elements.length()) {
+      return "";
+    }
+    char quote = elements.charAt(idStart + 4);
+    if (quote != '"' && quote != '\'') {
+      return "";
+    }
+    int idEnd = elements.indexOf(quote, idStart + 5);
+    return idEnd < 0 ? "" : "#" + elements.substring(idStart + 5, idEnd);
+  }
+
+  /**
+   * Combine two JSON merge patches into one with the same effect as applying them in order.
+   *
+   * @see <a href="https://datatracker.ietf.org/doc/html/rfc7386">RFC 7386 JSON Merge Patch</a>
+   */
+  private static JsonNode mergePatches(JsonNode base, JsonNode patch) {
+    if (!(base instanceof ObjectNode baseObject) || !patch.isObject()) {
+      return patch;
+    }
+    for (Map.Entry<String, JsonNode> property : patch.properties()) {
+      JsonNode current = baseObject.get(property.getKey());
+      JsonNode value = property.getValue();
+      baseObject.set(
+          property.getKey(),
+          current != null && current.isObject() && value.isObject()
+              ? mergePatches(current, value)
+              : value);
+    }
+    return baseObject;
+  }
+
+  /**
+   * Write a formatted frame to the response, cleaning up at once if the client is gone. With
+   * {@code datastar.buffers.pooled}, the frame is encoded into a pooled direct buffer first.
+   */
+  private void sendFrame(String frame, EventPriority priority) throws IOException {
+    FramePool pool = context.framePool();
+    if (pool != null) {
+      sendEncoded(pool.encode(frame, null, priority));
+      return;
+    }
+    NonBlockingWriter nonBlocking = writer;
+    if (nonBlocking != null) {
+      enqueue(nonBlocking, FramePool.encodeUnpooled(frame, null, priority));
+      return;
+    }
+    inFlightBytes = frame.length();
+    try {
+      super.send(frame, TEXT_PLAIN);
+    } catch (IOException ex) {
+      cleanUp();
+      throw ex;
+    } finally {
+      inFlightBytes = 0;
+    }
+    lastWriteNanos = System.nanoTime();
+    runWritableActions();
+  }
+
+  /** Queue a frame with the non-blocking engine, which releases it once written. */
+  private void enqueue(NonBlockingWriter nonBlocking, EncodedFrame frame) throws IOException {
+    try {
+      nonBlocking.enqueue(frame);
+    } catch (IOException ex) {
+      cleanUp();
+      throw ex;
+    }
+    lastWriteNanos = System.nanoTime();
+  }
+
+  // ========================================================================
+  // Size Limits
+  // ========================================================================
+
+  /**
+   * Returns the bytes the next event may take under {@code datastar.limits.*}: the maximum event
+   * size, lowered to what the emitter budget leaves beside the bytes still queued. Negative if no
+   * limit applies.
+   */
+  private long eventBudget() {
+    DatastarProperties.Limits limits = context.properties().limits();
+    long budget = limits.maxEventSize().toBytes();
+    long emitterSize = limits.maxEmitterSize().toBytes();
+    if (emitterSize >= 0) {
+      long left = Math.max(0, emitterSize - getQueuedBytes());
+      budget = budget < 0 ? left : Math.min(budget, left);
+    }
+    return budget;
+  }
+
+  /**
+   * Returns the UTF-8 size of {@code payload} if it is over {@code budget}, otherwise {@code -1}.
+   * Payloads that fit even at three bytes per character are not scanned.
+   */
+  private static long oversize(String payload, long budget) {
+    if (budget < 0 || payload == null || (long) payload.length() * 3 <= budget) {
+      return -1;
+    }
+    long size = utf8Size(payload);
+    return size > budget ? size : -1;
+  }
+
+  private static long utf8Size(String payload) {
+    long size = payload.length();
+    for (int i = 0; i < payload.length(); i++) {
+      char c = payload.charAt(i);
+      if (c >= 0x800) {
+        // A surrogate pair takes four bytes, other characters from here on three.
+        size += Character.isSurrogate(c) ? 1 : 2;
+      } else if (c >= 0x80) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /** Reject {@code payload} if it is over budget, whatever the policy. */
+  private void checkSize(DatastarEventType type, String payload) throws EventTooLargeException {
+    long budget = eventBudget();
+    long size = oversize(payload, budget);
+    if (size >= 0) {
+      recordOversized(type, size, budget, "rejected");
+      throw new EventTooLargeException(size, budget);
+    }
+  }
+
+  /**
+   * Reject a batch of patches whose elements are over budget together, as the batch is written as
+   * one. Each patch has been checked on its own already.
+   */
+  private void checkBatchSize(List<ElementPatch> patches) throws EventTooLargeException {
+    long budget = eventBudget();
+    if (budget < 0) {
+      return;
+    }
+    long length = 0;
+    for (ElementPatch patch : patches) {
+      length += patch.elements() == null ? 0 : patch.elements().length();
+    }
+    if (length * 3 <= budget) {
+      return;
+    }
+    long size = 0;
+    for (ElementPatch patch : patches) {
+      size += patch.elements() == null ? 0 : utf8Size(patch.elements());
+    }
+    if (size > budget) {
+      recordOversized(DatastarEventType.PATCH_ELEMENTS, size, budget, "rejected");
+      throw new EventTooLargeException(size, budget);
+    }
+  }
+
   /**
-   * Execute a JavaScript script in the browser with default options.
-   *
-   * <p>This is a convenience method that internally creates a {@code <script>} tag and sends it via
-   * {@link #patchElements(String)}. It is not a separate Datastar event type.
+   * Apply {@code datastar.limits.policy} to elements over budget. Must hold {@link #sendLock}.
    *
-   * @param script the JavaScript code to execute
-   * @return this emitter
-   * @throws IOException if an I/O error occurs
+   * @return the leading elements that fit, or {@code null} once the elements have been written in
+   *     chunks
+   * @throws EventTooLargeException if the policy is to reject, or the elements cannot be chunked or
+   *     truncated within budget
    */
-  public DatastarSseEmitter executeScript(String script) throws IOException {
-    return executeScript(script, options -> {});
+  private String oversizedElements(
+      Coalescing events, String elements, PatchElementConfig opts, long size, long budget)
+      throws IOException {
+    DatastarProperties.Limits.OversizedPolicy policy = context.properties().limits().policy();
+    // Chunks are cut by characters, so scale the budget by the payload's bytes per character.
+    int chunkSize = (int) Math.min(Integer.MAX_VALUE, (double) budget * elements.length() / size);
+    if (chunkSize > 0
+        && policy == DatastarProperties.Limits.OversizedPolicy.CHUNK
+        && !wouldCoalesce(events)
+        && sendChunked(elements, opts, chunkSize, budget)) {
+      // The chunks go out now, so they take the token like any sent patch.
+      mustCoalesce(events);
+      recordOversized(DatastarEventType.PATCH_ELEMENTS, size, budget, "chunked");
+      return null;
+    }
+    if (chunkSize > 0 && policy == DatastarProperties.Limits.OversizedPolicy.TRUNCATE) {
+      String truncated = truncateElements(elements, opts.mode(), chunkSize);
+      if (truncated != null && oversize(truncated, budget) < 0) {
+        recordOversized(DatastarEventType.PATCH_ELEMENTS, size, budget, "truncated");
+        return truncated;
+      }
+    }
+    recordOversized(DatastarEventType.PATCH_ELEMENTS, size, budget, "rejected");
+    throw new EventTooLargeException(size, budget);
   }
 
   /**
-   * Execute a JavaScript script in the browser with custom options.
-   *
-   * @param script the JavaScript code to execute
-   * @param options configuration for script execution
-   * @return this emitter
-   * @throws IOException if an I/O error occurs
+   * Returns the leading top-level elements within {@code chunkSize} characters, or for an outer
+   * patch of a single root, the root with its leading children. Returns {@code null} if not even
+   * one element fits.
    */
-  public DatastarSseEmitter executeScript(String script, Consumer<ExecuteScriptOptions> options)
-      throws IOException {
-    ExecuteScriptConfig opts = ExecuteScriptConfig.from(options);
-    String element = buildScriptElement(script, opts.autoRemove(), opts.attributes());
+  private static String truncateElements(String elements, ElementPatchMode mode, int chunkSize) {
+    String[] root = mode == ElementPatchMode.Outer ? ElementChunks.splitRoot(elements) : null;
+    if (root == null) {
+      String first = new ElementChunks(elements, chunkSize).next();
+      return first.length() <= chunkSize ? first : null;
+    }
+    int room = chunkSize - root[0].length() - root[2].length();
+    if (room < 0) {
+      return null;
+    }
+    String children = new ElementChunks(root[1], room).next();
+    return children.length() <= room ? root[0] + children + root[2] : null;
+  }
 
-    Consumer<PatchElementOptions> patchElementOptionsConsumer =
-        patchElementOptions -> {
-          patchElementOptions.selector("body").mode(ElementPatchMode.Append);
-          if (opts.eventId() != null && !opts.eventId().isEmpty()) {
-            patchElementOptions.eventId(opts.eventId());
-          }
-          if (opts.retryDuration() != null
-              && opts.retryDuration() != Consts.DEFAULT_SSE_RETRY_DURATION_MS) {
-            patchElementOptions.retryDuration(opts.retryDuration());
-          }
-        };
+  /** Returns the type of event in an encoded frame, read from its leading {@code event} line. */
+  private static DatastarEventType eventType(EncodedFrame frame) {
+    ByteBuffer data = frame.data();
+    int length = PATCH_SIGNALS_EVENT_LINE.remaining();
+    return data.remaining() >= length
+            && data.slice(data.position(), length).equals(PATCH_SIGNALS_EVENT_LINE)
+        ? DatastarEventType.PATCH_SIGNALS
+        : DatastarEventType.PATCH_ELEMENTS;
+  }
 
-    return patchElements(element, patchElementOptionsConsumer);
+  private void recordOversized(DatastarEventType type, long size, long budget, String outcome) {
+    context.oversizedEvents().increment();
+    log.warn(
+        "Datastar '{}' event of {} bytes exceeds its budget of {} bytes, {}",
+        type.value,
+        size,
+        budget,
+        outcome);
   }
 
   // ========================================================================
-  // Console Logging - Convenience Methods
+  // Backpressure
   // ========================================================================
 
   /**
-   * Log a message to the browser console.
+   * Whether an event sent now would be written without waiting on the client.
    *
-   * <p>Equivalent to calling {@code console.log(message)} in the browser.
+   * <p>With the blocking engine, an emitter is not writable while a write is stuck on a full socket
+   * buffer. With {@code datastar.writes.engine=non-blocking}, it stops being writable once more
+   * than {@code datastar.writes.high-water-mark} is queued and becomes writable again at the low
+   * water mark. Render loops can skip or defer expensive work while this returns {@code false}; a
+   * completed or failed emitter is never writable.
    *
-   * @param message the message to log
-   * @return this emitter for method chaining
-   * @throws IOException if an I/O error occurs
+   * @return whether the emitter is writable
    */
-  public DatastarSseEmitter consoleLog(String message) throws IOException {
-    return consoleLog(message, options -> {});
+  public boolean isWritable() {
+    if (isCleanedUp()) {
+      return false;
+    }
+    NonBlockingWriter nonBlocking = writer;
+    return nonBlocking != null ? nonBlocking.isWritable() : inFlightBytes == 0;
   }
 
   /**
-   * Log a message to the browser console with custom options.
+   * Returns the bytes sent but not yet accepted by the connection: the queue of the non-blocking
+   * engine, or the size of the write in progress with the blocking engine. Frames written with the
+   * blocking engine are counted in characters.
    *
-   * @param message the message to log
-   * @param options execution options
-   * @return this emitter for method chaining
-   * @throws IOException if an I/O error occurs
+   * @return the queued bytes
    */
-  public DatastarSseEmitter consoleLog(String message, Consumer<ExecuteScriptOptions> options)
-      throws IOException {
-    String script = "console.log(" + toJsString(message) + ")";
-    return executeScript(script, options);
+  public long getQueuedBytes() {
+    NonBlockingWriter nonBlocking = writer;
+    return nonBlocking != null ? nonBlocking.queuedBytes() : inFlightBytes;
   }
 
   /**
-   * Log an error to the browser console.
+   * Run {@code action} once, as soon as this emitter is writable: right away if it is, otherwise
+   * on the thread whose write made it writable again. The action also runs when the emitter is
+   * cleaned up, so a deferred render is never stranded; it should check {@link #isWritable()} or
+   * handle a failing send.
    *
-   * <p>Equivalent to calling {@code console.error(message)} in the browser.
+   * <p>Actions run on I/O threads and should be short, or hand the work off to an executor.
    *
-   * @param message the error message to log
+   * @param action the action to run
    * @return this emitter for method chaining
-   * @throws IOException if an I/O error occurs
    */
-  public DatastarSseEmitter consoleError(String message) throws IOException {
-    return consoleError(message, options -> {});
+  public DatastarSseEmitter onWritable(Runnable action) {
+    Objects.requireNonNull(action, "action must not be null");
+    Queue<Runnable> actions = writableActions;
+    if (actions == null) {
+      WRITABLE_ACTIONS.compareAndSet(this, null, new ConcurrentLinkedQueue<Runnable>());
+      actions = writableActions;
+    }
+    actions.add(action);
+    // The emitter may have become writable before the action was registered.
+    if (isWritable() || isCleanedUp()) {
+      runWritableActions();
+    }
+    return this;
   }
 
   /**
-   * Log an error to the browser console with custom options.
+   * Wait until this emitter is writable, for producers that would rather slow down than skip work.
    *
-   * @param message the error message to log
-   * @param options execution options
-   * @return this emitter for method chaining
-   * @throws IOException if an I/O error occurs
+   * @param timeout the longest time to wait
+   * @return whether the emitter is writable, {@code false} on timeout or once cleaned up
+   * @throws InterruptedException if interrupted while waiting
    */
-  public DatastarSseEmitter consoleError(String message, Consumer<ExecuteScriptOptions> options)
-      throws IOException {
-    String script = "console.error(" + toJsString(message) + ")";
-    return executeScript(script, options);
+  public boolean awaitWritable(Duration timeout) throws InterruptedException {
+    if (isWritable()) {
+      return true;
+    }
+    CountDownLatch writable = new CountDownLatch(1);
+    Runnable action = writable::countDown;
+    onWritable(action);
+    try {
+      if (!writable.await(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+        // Waiters that keep timing out must not pile up until the emitter is writable again.
+        writableActions.remove(action);
+      }
+    } catch (InterruptedException ex) {
+      writableActions.remove(action);
+      throw ex;
+    }
+    return isWritable();
+  }
+
+  /** Run and remove the actions registered with {@link #onWritable(Runnable)}. */
+  private void runWritableActions() {
+    Queue<Runnable> actions = writableActions;
+    if (actions == null) {
+      return;
+    }
+    Runnable action;
+    while ((action = actions.poll()) != null) {
+      runQuietly(action);
+    }
   }
 
   // ========================================================================
-  // Browser Navigation - Convenience Methods
+  // Lifecycle
   // ========================================================================
 
   /**
-   * Redirect the browser to a new URL.
+   * Register an action that releases a resource tied to this stream, such as a topic subscription
+   * or per-connection state.
    *
-   * <p>Uses {@code setTimeout} to allow current event processing to complete before redirecting.
+   * <p>Every action runs exactly once, on the first of: completion, timeout, error, a failed write
+   * or a failed liveness probe revealing the client is gone. Unlike {@link
+   * #onCompletion(Runnable)}, this also covers emitters completed before being returned from a
+   * handler. An action registered after cleanup runs immediately.
    *
-   * @param url the URL to redirect to
+   * @param action the cleanup action
    * @return this emitter for method chaining
-   * @throws IOException if an I/O error occurs
    */
-  public DatastarSseEmitter redirect(String url) throws IOException {
-    return redirect(url, options -> {});
+  public DatastarSseEmitter onCleanup(Runnable action) {
+    cleanup.add(action);
+    return this;
   }
 
   /**
-   * Redirect the browser to a new URL with custom options.
+   * Write a liveness probe if no event or probe has been written for {@code intervalNanos}.
    *
-   * @param url the URL to redirect to
-   * @param options execution options
-   * @return this emitter for method chaining
-   * @throws IOException if an I/O error occurs
+   * <p>The probe is an SSE comment the browser ignores. A client that has gone away makes the write
+   * fail, which cleans up the emitter right away instead of on the next event. Skipped while
+   * another write is in progress, since that write will detect a dead client just as well.
    */
-  public DatastarSseEmitter redirect(String url, Consumer<ExecuteScriptOptions> options)
-      throws IOException {
-    String script = "setTimeout(() => window.location.href = " + toJsString(url) + ")";
-    return executeScript(script, options);
+  void probe(long intervalNanos) {
+    if (!bound || isCleanedUp() || !sendLock.tryLock()) {
+      return;
+    }
+    try {
+      long now = System.nanoTime();
+      if (!probeDue(now, intervalNanos)) {
+        return;
+      }
+      NonBlockingWriter nonBlocking = writer;
+      if (nonBlocking == null) {
+        super.send(PROBE_FRAME, TEXT_PLAIN);
+      } else if (nonBlocking.queuedBytes() == 0) {
+        nonBlocking.enqueue(FramePool.encodeUnpooled(PROBE_FRAME, null));
+      }
+      lastProbeNanos = now;
+    } catch (IOException | IllegalStateException ex) {
+      log.debug("Liveness probe failed, cleaning up emitter", ex);
+      cleanUp();
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  /** Returns whether the cleanup actions have run. */
+  boolean isCleanedUp() {
+    return cleanup.hasRun();
   }
 
   /**
-   * Replace the current URL in the browser's history without reloading.
-   *
-   * <p>Uses {@code window.history.replaceState} to update the URL bar.
-   *
-   * @param url the new URL
-   * @return this emitter for method chaining
-   * @throws IOException if an I/O error occurs
+   * Run the cleanup actions if this emitter has never been bound to a response. Such an emitter
+   * never times out, so its actions would not run unless it is completed explicitly.
    */
-  public DatastarSseEmitter replaceUrl(String url) throws IOException {
-    return replaceUrl(url, options -> {});
+  void cleanUpIfUnbound() {
+    if (!bound) {
+      cleanUp();
+    }
+  }
+
+  /** Returns the {@link System#nanoTime()} of the last write, or of creation before any write. */
+  long lastWriteNanos() {
+    return lastWriteNanos;
+  }
+
+  /** Returns the {@link System#nanoTime()} of the last liveness probe, {@code 0} before the first. */
+  long lastProbeNanos() {
+    return lastProbeNanos;
+  }
+
+  /** Whether neither an event nor a liveness probe has been written for {@code intervalNanos}. */
+  boolean probeDue(long now, long intervalNanos) {
+    long probed = lastProbeNanos();
+    return now - lastWriteNanos() >= intervalNanos
+        && (probed == 0 || now - probed >= intervalNanos);
   }
 
   /**
-   * Replace the current URL in the browser's history with custom options.
+   * Close this emitter, telling the browser to reconnect after {@code retryMillis}. Used for idle
+   * emitters and on shutdown.
    *
-   * @param url the new URL
-   * @param options execution options
-   * @return this emitter for method chaining
-   * @throws IOException if an I/O error occurs
+   * <p>Coalesced events are written first. Failing to write the hint still completes the emitter.
    */
-  public DatastarSseEmitter replaceUrl(String url, Consumer<ExecuteScriptOptions> options)
-      throws IOException {
-    String script =
-        "setTimeout(() => window.history.replaceState({}, '', " + toJsString(url) + "))";
-    return executeScript(script, options);
+  void closeWithRetry(long retryMillis) {
+    sendLock.lock();
+    try {
+      writeAllPendingEvents();
+      sendFrame("retry: " + retryMillis + "\n\n", EventPriority.NORMAL);
+    } catch (IOException | RuntimeException ex) {
+      log.debug("Failed to send retry hint before closing emitter", ex);
+    } finally {
+      sendLock.unlock();
+    }
+    complete();
+  }
+
+  /**
+   * The single cleanup path: drops coalesced events, closes the open channels and runs the
+   * registered cleanup actions, at most once however many of the triggers fire.
+   */
+  private void cleanUp() {
+    Runnable actions = cleanup.take();
+    if (actions == null) {
+      return;
+    }
+    // A writer blocked on a dead client holds the lock; the pending flush discards on its own.
+    if (sendLock.tryLock()) {
+      try {
+        discardAllPendingEvents();
+      } finally {
+        sendLock.unlock();
+      }
+    }
+    NonBlockingWriter nonBlocking = writer;
+    if (nonBlocking != null) {
+      nonBlocking.discard();
+    }
+    runWritableActions();
+    Map<String, DatastarChannel> open = channels;
+    if (open != null) {
+      for (DatastarChannel channel : open.values()) {
+        channel.closed();
+      }
+      open.clear();
+    }
+    actions.run();
+  }
+
+  /** Routes completion, timeout and error to {@link #cleanUp()}. */
+  private final class CleanupCallback implements Runnable, Consumer<Throwable> {
+
+    @Override
+    public void run() {
+      cleanUp();
+    }
+
+    @Override
+    public void accept(Throwable ex) {
+      cleanUp();
+    }
+  }
+
+  private static void runQuietly(Runnable action) {
+    try {
+      action.run();
+    } catch (RuntimeException ex) {
+      log.warn("Datastar emitter action failed", ex);
+    }
   }
 
   // ========================================================================
@@ -279,6 +1874,7 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
   @Override
   protected void extendResponse(@NonNull ServerHttpResponse outputMessage) {
     super.extendResponse(outputMessage);
+    bound = true;
 
     HttpHeaders headers = outputMessage.getHeaders();
     if (headers.getContentType() == null) {
@@ -286,19 +1882,60 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
     }
 
     headers.setCacheControl("no-cache");
+
+    if (context.properties().writes().engine() == DatastarProperties.Writes.Engine.NON_BLOCKING
+        && outputMessage instanceof ServletServerHttpResponse) {
+      startNonBlockingWrites();
+    }
+  }
+
+  /**
+   * Switch to the non-blocking engine. The writer goes out as the last early send, so events sent
+   * before binding are still written first; {@link EncodedFrameHttpMessageConverter} attaches it
+   * to the output stream once the response is in async mode, and every later frame is queued on
+   * it instead of going through {@link ResponseBodyEmitter#send}.
+   */
+  private void startNonBlockingWrites() {
+    sendLock.lock();
+    try {
+      DatastarProperties.Writes writes = context.properties().writes();
+      NonBlockingWriter nonBlocking =
+          new NonBlockingWriter(
+              this::writeFailed,
+              this::runWritableActions,
+              writes.highWaterMark().toBytes(),
+              writes.lowWaterMark().toBytes());
+      super.send(nonBlocking, TEXT_PLAIN);
+      writer = nonBlocking;
+    } catch (IOException | IllegalStateException ex) {
+      log.debug("Could not start non-blocking writes, writing blocking instead", ex);
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  /** Called by the non-blocking writer, outside its lock, when the client is gone. */
+  private void writeFailed(Throwable ex) {
+    log.debug("Non-blocking write failed, completing emitter", ex);
+    completeWithError(ex);
   }
 
   // ========================================================================
   // Internal Records
   // ========================================================================
 
+  /** One patch of a batch sent with {@link #patchElements(DatastarChannel, List)}. */
+  record ElementPatch(String elements, Consumer<PatchElementOptions> options) {}
+
   private record PatchElementConfig(
       String eventId,
       Long retryDuration,
       String selector,
       ElementPatchMode mode,
       boolean useViewTransition,
-      Namespace namespace) {
+      Namespace namespace,
+      EventPriority priority,
+      int chunkSize) {
     static PatchElementConfig from(Consumer<PatchElementOptions> config) {
       PatchElementOptions opts = new PatchElementOptions();
       config.accept(opts);
@@ -308,26 +1945,86 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
           opts.getSelector(),
           opts.getMode(),
           opts.isUseViewTransition(),
-          opts.getNamespace());
+          opts.getNamespace(),
+          opts.getPriority(),
+          opts.getChunkSize());
     }
   }
 
-  private record PatchSignalConfig(String eventId, Long retryDuration, boolean onlyIfMissing) {
+  private record PatchSignalConfig(
+      String eventId, Long retryDuration, boolean onlyIfMissing, EventPriority priority) {
     static PatchSignalConfig from(Consumer<PatchSignalOptions> config) {
       PatchSignalOptions opts = new PatchSignalOptions();
       config.accept(opts);
       return new PatchSignalConfig(
-          opts.getEventId(), opts.getRetryDuration(), opts.isOnlyIfMissing());
+          opts.getEventId(), opts.getRetryDuration(), opts.isOnlyIfMissing(), opts.getPriority());
     }
   }
 
   private record ExecuteScriptConfig(
-      String eventId, Long retryDuration, boolean autoRemove, List<String> attributes) {
+      String eventId,
+      Long retryDuration,
+      boolean autoRemove,
+      List<String> attributes,
+      EventPriority priority) {
     static ExecuteScriptConfig from(Consumer<ExecuteScriptOptions> config) {
       ExecuteScriptOptions opts = new ExecuteScriptOptions();
       config.accept(opts);
       return new ExecuteScriptConfig(
-          opts.getEventId(), opts.getRetryDuration(), opts.getAutoRemove(), opts.getAttributes());
+          opts.getEventId(),
+          opts.getRetryDuration(),
+          opts.getAutoRemove(),
+          opts.getAttributes(),
+          opts.getPriority());
+    }
+  }
+
+  /** Element patch coalesced while over the rate limit. Guarded by {@link #sendLock}. */
+  private static final class PendingElements {
+    final String target;
+    final StringBuilder elements;
+    final PatchElementConfig options;
+
+    PendingElements(String target, String elements, PatchElementConfig options) {
+      this.target = target;
+      this.elements = new StringBuilder(elements == null ? "" : elements);
+      this.options = options;
+    }
+
+    /**
+     * Merge a later patch of the same target and options into this one, so that applying the
+     * result has the same effect as applying both in order.
+     *
+     * @param selected whether the patch has a selector, so its content is inserted as a whole
+     *     rather than element by element
+     */
+    void merge(String later, boolean selected) {
+      String content = later == null ? "" : later;
+      ElementPatchMode mode =
+          options.mode() != null ? options.mode() : Consts.DEFAULT_ELEMENT_PATCH_MODE;
+      switch (mode) {
+        case Append, Before -> elements.append('\n').append(content);
+        case Prepend, After -> {
+          if (selected) {
+            // A later fragment lands in front of the earlier one at the same position
+            elements.insert(0, '\n').insert(0, content);
+          } else {
+            elements.append('\n').append(content);
+          }
+        }
+        default -> elements.replace(0, elements.length(), content);
+      }
+    }
+  }
+
+  /** Signal patch coalesced while over the rate limit. Guarded by {@link #sendLock}. */
+  private static final class PendingSignals {
+    JsonNode signals;
+    final PatchSignalConfig options;
+
+    PendingSignals(JsonNode signals, PatchSignalConfig options) {
+      this.signals = signals;
+      this.options = options;
     }
   }
 
@@ -368,9 +2065,68 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    *     Reference</a>
    */
   private String formatPatchElementsEvent(String elements, PatchElementConfig options) {
+    String frame = patchElementsFrame(elements, options);
+
+    if (context.properties().enableLogging() && log.isDebugEnabled()) {
+      log.debug("Formatted 'datastar-patch-elements' event with length {}", frame.length());
+    }
+
+    return frame;
+  }
+
+  private static String patchElementsFrame(String elements, PatchElementConfig options) {
     int initialCapacity = 128 + (elements == null ? 0 : Math.min(elements.length(), 4096));
     StringBuilder sb = new StringBuilder(initialCapacity);
 
+    appendPatchElementsHeader(sb, options);
+
+    if (elements != null && !elements.isEmpty()) {
+      appendNonBlankDataLines(sb, Consts.ELEMENTS_DATALINE_LITERAL, elements);
+    }
+    return sb.append("\n").toString();
+  }
+
+  /**
+   * Formats a {@link DatastarEventType#PATCH_ELEMENTS} event whose elements are written by an
+   * {@link Html} builder straight into the frame.
+   *
+   * @param html writes the elements
+   * @param options the patch options
+   * @return the formatted SSE event
+   */
+  private String formatPatchElementsEvent(Consumer<Html> html, PatchElementConfig options) {
+    StringBuilder sb = new StringBuilder(256);
+
+    appendPatchElementsHeader(sb, options);
+
+    int lineStart = sb.length();
+    sb.append("data: ").append(Consts.ELEMENTS_DATALINE_LITERAL).append(' ');
+    int contentStart = sb.length();
+    Html builder = new Html(sb, true);
+    html.accept(builder);
+    builder.finish();
+    if (sb.length() == contentStart) {
+      sb.setLength(lineStart);
+    } else {
+      sb.append('\n');
+    }
+    sb.append("\n");
+
+    if (context.properties().enableLogging() && log.isDebugEnabled()) {
+      log.debug("Formatted 'datastar-patch-elements' event with length {}", sb.length());
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Append the {@code event}, {@code id} and {@code retry} lines and the option data lines of a
+   * {@link DatastarEventType#PATCH_ELEMENTS} event.
+   *
+   * @param sb the string builder to append to
+   * @param options the patch options
+   */
+  private static void appendPatchElementsHeader(StringBuilder sb, PatchElementConfig options) {
     appendLine(sb, "event", DatastarEventType.PATCH_ELEMENTS.value);
 
     if (options.eventId() != null) {
@@ -392,17 +2148,6 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
     if (options.namespace() != null && !options.namespace().equals(Consts.DEFAULT_NAMESPACE)) {
       appendDataLine(sb, Consts.NAMESPACE_DATALINE_LITERAL, options.namespace().value);
     }
-
-    if (elements != null && !elements.isEmpty()) {
-      appendNonBlankDataLines(sb, Consts.ELEMENTS_DATALINE_LITERAL, elements);
-    }
-    sb.append("\n");
-
-    if (properties.enableLogging() && log.isDebugEnabled()) {
-      log.debug("Formatted 'datastar-patch-elements' event with length {}", sb.length());
-    }
-
-    return sb.toString();
   }
 
   /**
@@ -430,9 +2175,75 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    * @see <a href="https://datatracker.ietf.org/doc/html/rfc7386">RFC 7386 JSON Merge Patch</a>
    */
   private String formatPatchSignalsEvent(String signals, PatchSignalConfig options) {
+    String frame = patchSignalsFrame(signals, options);
+
+    if (context.properties().enableLogging() && log.isDebugEnabled()) {
+      log.debug(
+          "Formatted 'datastar-patch-signals' event into SSE event, with length: {}",
+          frame.length());
+    }
+
+    return frame;
+  }
+
+  private static String patchSignalsFrame(String signals, PatchSignalConfig options) {
     int initialCapacity = 128 + (signals == null ? 0 : Math.min(signals.length(), 4096));
     StringBuilder sb = new StringBuilder(initialCapacity);
 
+    appendPatchSignalsHeader(sb, options);
+
+    if (signals != null && !signals.isEmpty()) {
+      appendNonBlankDataLines(sb, Consts.SIGNALS_DATALINE_LITERAL, signals);
+    }
+    return sb.append("\n").toString();
+  }
+
+  /**
+   * Formats a {@link DatastarEventType#PATCH_SIGNALS} event for a signal object.
+   *
+   * <p>The object is serialized as compact JSON straight into the frame buffer, right after the
+   * {@code data: signals } prefix. If a custom serializer emits line breaks anyway, the JSON is
+   * split into separate {@code data: signals} lines like {@link #formatPatchSignalsEvent(String,
+   * PatchSignalConfig)} does.
+   *
+   * @param signals the signal object to serialize
+   * @param options the patch options
+   * @return the formatted SSE event
+   */
+  private String formatPatchSignalsEvent(Object signals, PatchSignalConfig options) {
+    StringBuilder sb = new StringBuilder(256);
+
+    appendPatchSignalsHeader(sb, options);
+
+    int lineStart = sb.length();
+    sb.append("data: ").append(Consts.SIGNALS_DATALINE_LITERAL).append(' ');
+    int jsonStart = sb.length();
+    context.signalWriters().write(sb, signals);
+    if (containsLineBreak(sb, jsonStart)) {
+      String json = sb.substring(jsonStart);
+      sb.setLength(lineStart);
+      appendNonBlankDataLines(sb, Consts.SIGNALS_DATALINE_LITERAL, json);
+    } else {
+      sb.append('\n');
+    }
+    sb.append("\n");
+
+    if (context.properties().enableLogging() && log.isDebugEnabled()) {
+      log.debug(
+          "Formatted 'datastar-patch-signals' event into SSE event, with length: {}", sb.length());
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Append the {@code event}, {@code id}, {@code retry} and {@code onlyIfMissing} lines of a
+   * {@link DatastarEventType#PATCH_SIGNALS} event.
+   *
+   * @param sb the string builder to append to
+   * @param options the patch options
+   */
+  private static void appendPatchSignalsHeader(StringBuilder sb, PatchSignalConfig options) {
     appendLine(sb, "event", DatastarEventType.PATCH_SIGNALS.value);
 
     if (options.eventId() != null) {
@@ -446,18 +2257,16 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
     if (options.onlyIfMissing()) {
       appendDataLine(sb, Consts.ONLY_IF_MISSING_DATALINE_LITERAL, true);
     }
+  }
 
-    if (signals != null && !signals.isEmpty()) {
-      appendNonBlankDataLines(sb, Consts.SIGNALS_DATALINE_LITERAL, signals);
-    }
-    sb.append("\n");
-
-    if (properties.enableLogging() && log.isDebugEnabled()) {
-      log.debug(
-          "Formatted 'datastar-patch-signals' event into SSE event, with length: {}", sb.length());
+  private static boolean containsLineBreak(CharSequence cs, int from) {
+    for (int i = from; i < cs.length(); i++) {
+      char c = cs.charAt(i);
+      if (c == '\n' || c == '\r') {
+        return true;
+      }
     }
-
-    return sb.toString();
+    return false;
   }
 
   /**
@@ -475,7 +2284,7 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    *     href="https://html.spec.whatwg.org/multipage/server-sent-events.html#server-sent-events">
    *     SSE Specification</a>
    */
-  private void appendLine(StringBuilder sb, String literal, Object value) {
+  private static void appendLine(StringBuilder sb, String literal, Object value) {
     sb.append(literal).append(": ").append(value).append('\n');
   }
 
@@ -503,7 +2312,7 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    * @param literal the data type prefix (e.g., "elements", "signals")
    * @param value the data value
    */
-  private void appendDataLine(StringBuilder sb, String literal, Object value) {
+  private static void appendDataLine(StringBuilder sb, String literal, Object value) {
     sb.append("data: ").append(literal).append(' ').append(value).append('\n');
   }
 
@@ -522,7 +2331,7 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    * @param literal the data type prefix (e.g., "elements", "signals")
    * @param payload the multi-line string to process
    */
-  private void appendNonBlankDataLines(StringBuilder sb, String literal, String payload) {
+  private static void appendNonBlankDataLines(StringBuilder sb, String literal, String payload) {
     final int n = payload.length();
     int start = 0;
 
@@ -559,7 +2368,7 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    * @param end the end index (exclusive)
    * @return {@code true} if the range contains only whitespace, {@code false} otherwise
    */
-  private boolean isBlankRange(String s, int start, int end) {
+  private static boolean isBlankRange(String s, int start, int end) {
     for (int i = start; i < end; i++) {
       if (!Character.isWhitespace(s.charAt(i))) {
         return false;
@@ -602,7 +2411,8 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
    * @return an HTML string containing the complete {@code <script>} element
    * @see ExecuteScriptOptions
    */
-  private String buildScriptElement(String script, Boolean autoRemove, List<String> attributes) {
+  private static String buildScriptElement(
+      String script, Boolean autoRemove, List<String> attributes) {
     if (script == null || script.isEmpty() || script.contains("</script>")) {
       throw new IllegalArgumentException("Script cannot be null/empty or contain '</script>'");
     }
@@ -625,26 +2435,4 @@ public class DatastarSseEmitter extends ResponseBodyEmitter {
     el.append(">").append(script).append("</script>");
     return el.toString();
   }
-
-  /**
-   * Convert a Java string to a JavaScript string literal.
-   *
-   * <p>Escapes special characters and wraps in quotes.
-   *
-   * @param str the string to convert
-   * @return a JavaScript string literal
-   */
-  private String toJsString(String str) {
-    if (str == null) return "null";
-
-    // Escape special JavaScript characters
-    String escaped =
-        str.replace("\\", "\\\\")
-            .replace("\"", "\\\"")
-            .replace("\n", "\\n")
-            .replace("\r", "\\r")
-            .replace("\t", "\\t");
-
-    return "\"" + escaped + "\"";
-  }
 }
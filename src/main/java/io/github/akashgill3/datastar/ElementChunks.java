@@ -0,0 +1,157 @@
+package io.github.akashgill3.datastar;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Cuts HTML into chunks of bounded size between top-level elements, for {@link
+ * io.github.akashgill3.datastar.events.PatchElementOptions#chunkSize(int) chunked} patches.
+ *
+ * <p>Chunks are cut lazily, so only one is held at a time besides the source. The scan knows just
+ * enough HTML to find the start of each top-level node: quoted attribute values, comments, void
+ * and self-closing elements, and elements such as {@code script} whose text is not markup. A
+ * top-level element larger than the chunk size makes a chunk of its own.
+ *
+ * @author Akash Gill
+ */
+final class ElementChunks {
+
+  private static final Set<String> VOID_ELEMENTS =
+      Set.of(
+          "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source",
+          "track", "wbr");
+
+  private static final Set<String> RAW_TEXT_ELEMENTS =
+      Set.of("script", "style", "textarea", "title");
+
+  private final String html;
+  private final int chunkSize;
+  private int position;
+
+  ElementChunks(String html, int chunkSize) {
+    this.html = html;
+    this.chunkSize = chunkSize;
+  }
+
+  boolean hasNext() {
+    return position < html.length();
+  }
+
+  /** Returns the next chunk: as many whole top-level nodes as fit, at least one. */
+  String next() {
+    int start = position;
+    int limit = start + chunkSize;
+    int cut = -1;
+    int depth = 0;
+    int i = start;
+    while (i < html.length()) {
+      if (html.charAt(i) != '<') {
+        i++;
+        continue;
+      }
+      if (depth == 0 && i > start) {
+        if (i > limit) {
+          position = cut < 0 ? i : cut;
+          return html.substring(start, position);
+        }
+        cut = i;
+      }
+      if (html.startsWith("<!--", i)) {
+        int end = html.indexOf("-->", i + 4);
+        i = end < 0 ? html.length() : end + 3;
+      } else if (html.startsWith("</", i)) {
+        depth = Math.max(0, depth - 1);
+        i = endOfTag(i);
+      } else if (i + 1 < html.length() && Character.isLetter(html.charAt(i + 1))) {
+        String name = html.substring(i + 1, endOfName(html, i + 1)).toLowerCase(Locale.ROOT);
+        int tagEnd = endOfTag(i);
+        if (RAW_TEXT_ELEMENTS.contains(name)) {
+          i = endOfTag(indexOfIgnoreCase("</" + name, tagEnd));
+        } else {
+          i = tagEnd;
+          if (!VOID_ELEMENTS.contains(name) && html.charAt(tagEnd - 2) != '/') {
+            depth++;
+          }
+        }
+      } else {
+        // <!DOCTYPE>, <?...> or a stray '<' in text.
+        i = endOfTag(i);
+      }
+    }
+    // The rest fits, or its last node starts within the chunk but ends beyond it.
+    position = html.length() <= limit || cut < 0 ? html.length() : cut;
+    return html.substring(start, position);
+  }
+
+  /**
+   * Split a single root element into its start tag, content and end tag.
+   *
+   * @return the three parts, or {@code null} if {@code html} is not a single element with an end
+   *     tag
+   */
+  static String[] splitRoot(String html) {
+    String trimmed = html.strip();
+    if (trimmed.length() < 2
+        || trimmed.charAt(0) != '<'
+        || !Character.isLetter(trimmed.charAt(1))) {
+      return null;
+    }
+    int nameEnd = endOfName(trimmed, 1);
+    String endTag = "</" + trimmed.substring(1, nameEnd) + ">";
+    int startTagEnd = new ElementChunks(trimmed, 0).endOfTag(0);
+    int endTagStart = trimmed.length() - endTag.length();
+    if (startTagEnd > endTagStart
+        || !trimmed.regionMatches(true, endTagStart, endTag, 0, endTag.length())) {
+      return null;
+    }
+    // The end tag must close the root, not a last child of the same name.
+    if (new ElementChunks(trimmed, 0).next().length() != trimmed.length()) {
+      return null;
+    }
+    return new String[] {
+      trimmed.substring(0, startTagEnd), trimmed.substring(startTagEnd, endTagStart), endTag
+    };
+  }
+
+  /** Returns the index after the {@code >} closing the tag at {@code from}, skipping quotes. */
+  private int endOfTag(int from) {
+    if (from < 0) {
+      return html.length();
+    }
+    char quote = 0;
+    for (int i = from + 1; i < html.length(); i++) {
+      char c = html.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == '>') {
+        return i + 1;
+      }
+    }
+    return html.length();
+  }
+
+  private int indexOfIgnoreCase(String needle, int from) {
+    for (int i = from; i <= html.length() - needle.length(); i++) {
+      if (html.regionMatches(true, i, needle, 0, needle.length())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int endOfName(String html, int from) {
+    int i = from;
+    while (i < html.length()) {
+      char c = html.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '-' && c != ':' && c != '_' && c != '.') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,94 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * State shared by all emitters created by one {@link Datastar} instance.
+ *
+ * <p>Emitters constructed directly share the context of the configuration they were last created
+ * with, see {@link #defaults(DatastarProperties)}.
+ *
+ * @author Akash Gill
+ */
+final class EmitterContext {
+
+  /**
+   * Context of directly constructed emitters, replaced when one is created with other properties.
+   * Only one is kept, so configurations used once are not held forever.
+   */
+  private static volatile EmitterContext defaults;
+
+  private final DatastarProperties properties;
+  private final SignalWriters signalWriters;
+  private final LongAdder suppressedEvents = new LongAdder();
+  private final LongAdder oversizedEvents = new LongAdder();
+  private final AdmissionControl admission;
+  private final EmitterRegistry registry;
+  private final FramePool framePool;
+
+  EmitterContext(DatastarProperties properties, SignalWriters signalWriters) {
+    this.properties = properties != null ? properties : new DatastarProperties(false);
+    this.signalWriters = signalWriters;
+    this.admission = new AdmissionControl(this.properties.connections());
+    this.registry = new EmitterRegistry(this.properties);
+    DatastarProperties.Buffers buffers = this.properties.buffers();
+    this.framePool = buffers.pooled() ? new FramePool(buffers.maxPooled().toBytes()) : null;
+  }
+
+  /**
+   * Returns the context shared by emitters constructed directly with {@code properties}, so that
+   * they share admission control, the registry and the frame pool like emitters created by one
+   * {@link Datastar} instance do. Emitters created with other properties in between get a new
+   * context.
+   *
+   * @param properties the emitter configuration, {@code null} for the defaults
+   * @return the shared context for that configuration
+   */
+  static EmitterContext defaults(DatastarProperties properties) {
+    DatastarProperties key = properties != null ? properties : new DatastarProperties(false);
+    EmitterContext context = defaults;
+    if (context != null && context.properties.equals(key)) {
+      return context;
+    }
+    synchronized (EmitterContext.class) {
+      context = defaults;
+      if (context == null || !context.properties.equals(key)) {
+        context = new EmitterContext(key, SignalWriters.defaults());
+        defaults = context;
+      }
+      return context;
+    }
+  }
+
+  DatastarProperties properties() {
+    return properties;
+  }
+
+  SignalWriters signalWriters() {
+    return signalWriters;
+  }
+
+  /** Events absorbed by coalescing instead of being written as their own frame. */
+  LongAdder suppressedEvents() {
+    return suppressedEvents;
+  }
+
+  /** Events over a byte budget of {@code datastar.limits.*}, whatever the policy made of them. */
+  LongAdder oversizedEvents() {
+    return oversizedEvents;
+  }
+
+  AdmissionControl admission() {
+    return admission;
+  }
+
+  EmitterRegistry registry() {
+    return registry;
+  }
+
+  /** Pool that frames are encoded into, {@code null} unless {@code datastar.buffers.pooled}. */
+  FramePool framePool() {
+    return framePool;
+  }
+}
@@ -0,0 +1,218 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the open emitters of one {@link Datastar} instance.
+ *
+ * <p>When {@code datastar.emitters.idle-timeout} is set, a periodic sweep closes emitters that have
+ * not written anything for that long, after sending a final {@code retry} hint. When {@code
+ * datastar.emitters.probe-interval} is set, the same sweep sends liveness probes to emitters that
+ * have been quiet for that long, so dead clients are found early. The registry also derives the
+ * timeout of new emitters from the current load: {@code datastar.emitters.timeout} while quiet,
+ * shrinking towards {@code datastar.emitters.min-timeout} as open connections approach {@code
+ * datastar.connections.max} or the heap fills up.
+ *
+ * @author Akash Gill
+ */
+final class EmitterRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(EmitterRegistry.class);
+
+  /** Heap usage below which memory does not count as pressure. */
+  private static final double HEAP_PRESSURE_START = 0.5;
+
+  /** Heap usage at which memory counts as full pressure. */
+  private static final double HEAP_PRESSURE_FULL = 0.9;
+
+  private final DatastarProperties.Emitters settings;
+  private final DatastarProperties.Connections connections;
+  private final DoubleSupplier heapUsage;
+  private final Set<DatastarSseEmitter> emitters = ConcurrentHashMap.newKeySet();
+  private final LongAdder idleClosed = new LongAdder();
+
+  private volatile ScheduledFuture<?> sweep;
+
+  EmitterRegistry(DatastarProperties properties) {
+    this(properties, EmitterRegistry::currentHeapUsage);
+  }
+
+  EmitterRegistry(DatastarProperties properties, DoubleSupplier heapUsage) {
+    this.settings = properties.emitters();
+    this.connections = properties.connections();
+    this.heapUsage = heapUsage;
+  }
+
+  void register(DatastarSseEmitter emitter) {
+    emitters.add(emitter);
+    if (sweep == null
+        && (settings.idleTimeout().isPositive() || settings.probeInterval().isPositive())) {
+      startSweep();
+    }
+  }
+
+  void unregister(DatastarSseEmitter emitter) {
+    emitters.remove(emitter);
+  }
+
+  /** Returns the number of registered emitters. */
+  int size() {
+    return emitters.size();
+  }
+
+  /** Returns the number of emitters closed for being idle. */
+  long idleClosed() {
+    return idleClosed.sum();
+  }
+
+  /**
+   * Returns the timeout for a new emitter under the current load, in milliseconds.
+   *
+   * <p>Pressure is the higher of the connection usage relative to {@code datastar.connections.max}
+   * and the heap usage between 50% and 90%. The timeout shrinks linearly with it.
+   */
+  long timeoutMillis() {
+    long max = settings.timeout().toMillis();
+    long min = settings.minTimeout().toMillis();
+    if (min >= max) {
+      return max;
+    }
+    double pressure = Math.max(connectionPressure(), heapPressure());
+    return max - Math.round((max - min) * pressure);
+  }
+
+  /**
+   * Close every registered emitter that has been idle for longer than the idle timeout, and probe
+   * the quiet ones that are due a liveness probe.
+   *
+   * <p>Closing and probing write to the client, and a client that stopped reading may block the
+   * write. Each runs on a virtual thread of its own so the sweep never waits for one.
+   */
+  void sweep() {
+    long idleNanos = settings.idleTimeout().toNanos();
+    long probeNanos = settings.probeInterval().toNanos();
+    long retryMillis = settings.idleRetry().toMillis();
+    long now = System.nanoTime();
+    for (DatastarSseEmitter emitter : emitters) {
+      long quietNanos = now - emitter.lastWriteNanos();
+      if (idleNanos > 0 && quietNanos > idleNanos) {
+        if (emitters.remove(emitter)) {
+          idleClosed.increment();
+          Thread.ofVirtual()
+              .name("datastar-idle-close")
+              .start(() -> emitter.closeWithRetry(retryMillis));
+        }
+      } else if (probeNanos > 0 && emitter.probeDue(now, probeNanos)) {
+        Thread.ofVirtual().name("datastar-probe").start(() -> emitter.probe(probeNanos));
+      }
+    }
+  }
+
+  /**
+   * Close every registered emitter for shutdown, waiting at most {@code timeout}.
+   *
+   * <p>Each emitter writes its coalesced events and a {@code retry} hint drawn at random from
+   * {@code [0, reconnectWindow]}, so clients do not all reconnect at the same instant. Emitters
+   * still blocked on a slow client when the timeout elapses are left to the container.
+   *
+   * @param timeout how long to wait for the emitters to close
+   * @param reconnectWindow the window over which clients are told to reconnect
+   * @return the number of emitters that closed in time
+   */
+  int drain(Duration timeout, Duration reconnectWindow) {
+    stop();
+    List<DatastarSseEmitter> open = List.copyOf(emitters);
+    if (open.isEmpty()) {
+      return 0;
+    }
+    long window = reconnectWindow.toMillis();
+    CountDownLatch closed = new CountDownLatch(open.size());
+    for (DatastarSseEmitter emitter : open) {
+      long retryMillis = window > 0 ? ThreadLocalRandom.current().nextLong(window + 1) : 0;
+      Thread.ofVirtual()
+          .name("datastar-shutdown")
+          .start(
+              () -> {
+                try {
+                  emitter.closeWithRetry(retryMillis);
+                } finally {
+                  closed.countDown();
+                }
+              });
+    }
+    try {
+      if (!closed.await(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+        log.warn(
+            "{} of {} Datastar emitters did not close within {}",
+            closed.getCount(),
+            open.size(),
+            timeout);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    return open.size() - (int) closed.getCount();
+  }
+
+  /** Stop the sweep. Registered emitters are left open. */
+  void stop() {
+    ScheduledFuture<?> current = sweep;
+    if (current != null) {
+      current.cancel(false);
+    }
+  }
+
+  private synchronized void startSweep() {
+    if (sweep == null) {
+      long period = Math.max(shortestInterval().toMillis() / 2, 100);
+      sweep =
+          DatastarScheduler.scheduleWithFixedDelay(
+              this::sweepQuietly, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private Duration shortestInterval() {
+    Duration idle = settings.idleTimeout();
+    Duration probe = settings.probeInterval();
+    if (!idle.isPositive()) {
+      return probe;
+    }
+    return probe.isPositive() && probe.compareTo(idle) < 0 ? probe : idle;
+  }
+
+  private void sweepQuietly() {
+    try {
+      sweep();
+    } catch (RuntimeException ex) {
+      log.warn("Failed to sweep Datastar emitters", ex);
+    }
+  }
+
+  private double connectionPressure() {
+    int max = connections.max();
+    return max > 0 ? Math.min(1.0, (double) emitters.size() / max) : 0.0;
+  }
+
+  private double heapPressure() {
+    double usage = heapUsage.getAsDouble();
+    double pressure = (usage - HEAP_PRESSURE_START) / (HEAP_PRESSURE_FULL - HEAP_PRESSURE_START);
+    return Math.clamp(pressure, 0.0, 1.0);
+  }
+
+  private static double currentHeapUsage() {
+    Runtime runtime = Runtime.getRuntime();
+    return (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+  }
+}
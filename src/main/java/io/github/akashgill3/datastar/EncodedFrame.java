@@ -0,0 +1,180 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.events.EventPriority;
+import jakarta.servlet.ServletOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * A frame encoded once, ready to be written to any number of emitters.
+ *
+ * <p>Frames are reference counted so that a broadcast frame in a pooled buffer can be shared
+ * safely. A new frame holds one reference for its creator. Every pending write holds one more,
+ * and the buffer returns to its pool once the last reference is released:
+ *
+ * <pre>{@code
+ * EncodedFrame frame = datastar.encodeElements("<div id=\"price\">42</div>", options -> {});
+ * try {
+ *   for (DatastarSseEmitter emitter : subscribers) {
+ *     emitter.send(frame);
+ *   }
+ * } finally {
+ *   frame.release();
+ * }
+ * }</pre>
+ *
+ * <p>Written with the auto-configured {@link EncodedFrameHttpMessageConverter}, through {@link
+ * ServletOutputStream#write(ByteBuffer)} without copying the frame onto the heap.
+ *
+ * @author Akash Gill
+ */
+public final class EncodedFrame {
+
+  private static final VarHandle REF_COUNT;
+
+  static {
+    try {
+      REF_COUNT =
+          MethodHandles.lookup().findVarHandle(EncodedFrame.class, "refCount", int.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private final ByteBuffer buffer;
+
+  /** The pool to return the buffer to, {@code null} for an unpooled buffer. */
+  private final FramePool pool;
+
+  /** Sends the same event again on an emitter that has to coalesce it, {@code null} if none. */
+  private final EventReplay replay;
+
+  private final EventPriority priority;
+
+  private volatile int refCount = 1;
+
+  EncodedFrame(ByteBuffer buffer, FramePool pool, EventReplay replay, EventPriority priority) {
+    this.buffer = buffer;
+    this.pool = pool;
+    this.replay = replay;
+    this.priority = priority;
+  }
+
+  /**
+   * Add a reference.
+   *
+   * @return this frame
+   * @throws IllegalStateException if the frame has already been released
+   */
+  public EncodedFrame retain() {
+    while (true) {
+      int current = refCount;
+      if (current <= 0) {
+        throw new IllegalStateException("EncodedFrame has already been released");
+      }
+      if (REF_COUNT.compareAndSet(this, current, current + 1)) {
+        return this;
+      }
+    }
+  }
+
+  /**
+   * Release a reference, returning the buffer to its pool when it was the last one.
+   *
+   * @return whether this released the last reference
+   * @throws IllegalStateException if the frame has already been released
+   */
+  public boolean release() {
+    int remaining = (int) REF_COUNT.getAndAdd(this, -1) - 1;
+    if (remaining < 0) {
+      throw new IllegalStateException("EncodedFrame has already been released");
+    }
+    if (remaining == 0 && pool != null) {
+      pool.release(buffer);
+    }
+    return remaining == 0;
+  }
+
+  /** Returns the number of references held. */
+  public int refCount() {
+    return refCount;
+  }
+
+  /** Returns the encoded size in bytes. */
+  public int size() {
+    return buffer.limit();
+  }
+
+  /** Returns whether the frame is encoded into a direct buffer. */
+  public boolean isDirect() {
+    return buffer.isDirect();
+  }
+
+  /** Returns the priority the frame is queued with, taken from the options it was encoded with. */
+  public EventPriority priority() {
+    return priority;
+  }
+
+  EventReplay replay() {
+    return replay;
+  }
+
+  /** Returns a view of the encoded bytes with its own position, leaving the frame untouched. */
+  ByteBuffer data() {
+    return buffer.duplicate();
+  }
+
+  /**
+   * Write the frame without consuming it. Uses the NIO write of Servlet 6.1 on a servlet stream,
+   * and the backing array or a small bounce buffer otherwise.
+   */
+  void writeTo(OutputStream out) throws IOException {
+    ByteBuffer data = data();
+    if (out instanceof ServletOutputStream servletOut) {
+      servletOut.write(data);
+    } else if (data.hasArray()) {
+      out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+    } else {
+      byte[] chunk = new byte[Math.min(data.remaining(), 8192)];
+      while (data.hasRemaining()) {
+        int length = Math.min(chunk.length, data.remaining());
+        data.get(chunk, 0, length);
+        out.write(chunk, 0, length);
+      }
+    }
+  }
+
+  /**
+   * One pending write of this frame, owning one reference. Releasing is idempotent, so the write
+   * can be released by whichever of the converter or the failing sender gets there first.
+   */
+  static final class Write {
+
+    private final EncodedFrame frame;
+    private boolean released;
+
+    Write(EncodedFrame frame) {
+      this.frame = frame;
+    }
+
+    EncodedFrame frame() {
+      return frame;
+    }
+
+    synchronized void release() {
+      if (!released) {
+        released = true;
+        frame.release();
+      }
+    }
+  }
+
+  /** Sends the event a frame was encoded from through the regular emitter path. */
+  @FunctionalInterface
+  interface EventReplay {
+    void sendTo(DatastarSseEmitter emitter) throws IOException;
+  }
+}
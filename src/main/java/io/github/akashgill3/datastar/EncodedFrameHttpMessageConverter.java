@@ -0,0 +1,74 @@
+package io.github.akashgill3.datastar;
+
+import jakarta.servlet.ServletOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+/**
+ * Writes {@link EncodedFrame}s sent through a {@link DatastarSseEmitter} to the response, and
+ * releases the reference the pending write held.
+ *
+ * <p>On a servlet response, frames are written with {@code ServletOutputStream.write(ByteBuffer)},
+ * so a frame in a direct buffer goes to the connector without being copied onto the heap first.
+ *
+ * <p>With {@code datastar.writes.engine=non-blocking}, the converter also hands the servlet output
+ * stream to the emitter's write queue once the response is in async mode.
+ *
+ * <p>Registered with Spring MVC by the autoconfiguration; applications configuring Spring MVC
+ * without it have to add it to the message converters themselves.
+ *
+ * @author Akash Gill
+ */
+public class EncodedFrameHttpMessageConverter implements HttpMessageConverter<Object> {
+
+  @Override
+  public boolean canRead(@NonNull Class<?> clazz, @Nullable MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  public boolean canWrite(@NonNull Class<?> clazz, @Nullable MediaType mediaType) {
+    return EncodedFrame.Write.class.isAssignableFrom(clazz) || clazz == NonBlockingWriter.class;
+  }
+
+  @Override
+  public @NonNull List<MediaType> getSupportedMediaTypes() {
+    return List.of(MediaType.ALL);
+  }
+
+  @Override
+  public @NonNull Object read(@NonNull Class<?> clazz, @NonNull HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("EncodedFrame cannot be read", inputMessage);
+  }
+
+  @Override
+  public void write(
+      @NonNull Object write,
+      @Nullable MediaType contentType,
+      @NonNull HttpOutputMessage outputMessage)
+      throws IOException {
+    if (write instanceof NonBlockingWriter writer) {
+      OutputStream body = outputMessage.getBody();
+      if (!(body instanceof ServletOutputStream servletOut)) {
+        throw new HttpMessageNotWritableException("Non-blocking writes need a servlet response");
+      }
+      writer.attach(servletOut);
+      return;
+    }
+    EncodedFrame.Write pending = (EncodedFrame.Write) write;
+    try {
+      pending.frame().writeTo(outputMessage.getBody());
+    } finally {
+      pending.release();
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package io.github.akashgill3.datastar;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an outgoing event exceeds its byte budget under {@code datastar.limits.*} and the
+ * {@code datastar.limits.policy} cannot send it in another form.
+ *
+ * <p>The check happens before the event is formatted, so nothing has been written for it.
+ *
+ * @author Akash Gill
+ */
+public class EventTooLargeException extends IOException {
+
+  private final long size;
+  private final long maxSize;
+
+  public EventTooLargeException(long size, long maxSize) {
+    super("Datastar event of " + size + " bytes exceeds its budget of " + maxSize + " bytes");
+    this.size = size;
+    this.maxSize = maxSize;
+  }
+
+  /** Returns the size of the rejected payload in bytes. */
+  public long getSize() {
+    return size;
+  }
+
+  /** Returns the budget that was available for the event in bytes. */
+  public long getMaxSize() {
+    return maxSize;
+  }
+}
@@ -0,0 +1,198 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.events.EventPriority;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-classed pool of direct buffers that frames are encoded into.
+ *
+ * <p>Frames are encoded as UTF-8 straight from their characters into the smallest size class that
+ * fits, so no intermediate byte array is allocated. Frames larger than the largest class are
+ * encoded into a heap buffer of their own that is not pooled.
+ *
+ * <p>Released buffers are kept up to a per-class share of {@code maxPooledBytes}; beyond that they
+ * are dropped and left to the garbage collector, as is any buffer whose frame is never released.
+ * The pool is a cache, so neither leaks native memory.
+ *
+ * @author Akash Gill
+ */
+final class FramePool {
+
+  private static final int[] SIZE_CLASSES = {1 << 10, 1 << 12, 1 << 14, 1 << 16};
+
+  private final ArrayBlockingQueue<ByteBuffer>[] free;
+  private final LongAdder allocated = new LongAdder();
+  private final LongAdder reused = new LongAdder();
+
+  @SuppressWarnings("unchecked")
+  FramePool(long maxPooledBytes) {
+    free = new ArrayBlockingQueue[SIZE_CLASSES.length];
+    long perClass = maxPooledBytes / SIZE_CLASSES.length;
+    for (int i = 0; i < SIZE_CLASSES.length; i++) {
+      int capacity = (int) Math.min(Integer.MAX_VALUE, perClass / SIZE_CLASSES[i]);
+      free[i] = capacity > 0 ? new ArrayBlockingQueue<>(capacity) : null;
+    }
+  }
+
+  /**
+   * Encode {@code text} as UTF-8 into a buffer from this pool.
+   *
+   * @param text the frame
+   * @param replay sends the event again on an emitter that has to coalesce it, or {@code null}
+   * @return the encoded frame, holding one reference
+   */
+  EncodedFrame encode(CharSequence text, EncodedFrame.EventReplay replay) {
+    return encode(text, replay, EventPriority.NORMAL);
+  }
+
+  /**
+   * Encode {@code text} as UTF-8 into a buffer from this pool.
+   *
+   * @param text the frame
+   * @param replay sends the event again on an emitter that has to coalesce it, or {@code null}
+   * @param priority the priority the frame is queued with
+   * @return the encoded frame, holding one reference
+   */
+  EncodedFrame encode(
+      CharSequence text, EncodedFrame.EventReplay replay, EventPriority priority) {
+    int size = utf8Length(text);
+    ByteBuffer buffer = acquire(size);
+    encodeUtf8(text, buffer);
+    buffer.flip();
+    return new EncodedFrame(buffer, this, replay, priority);
+  }
+
+  /**
+   * Encode {@code text} as UTF-8 into a heap buffer that belongs to no pool.
+   *
+   * @param text the frame
+   * @param replay sends the event again on an emitter that has to coalesce it, or {@code null}
+   * @return the encoded frame, holding one reference
+   */
+  static EncodedFrame encodeUnpooled(String text, EncodedFrame.EventReplay replay) {
+    return encodeUnpooled(text, replay, EventPriority.NORMAL);
+  }
+
+  /**
+   * Encode {@code text} as UTF-8 into a heap buffer that belongs to no pool.
+   *
+   * @param text the frame
+   * @param replay sends the event again on an emitter that has to coalesce it, or {@code null}
+   * @param priority the priority the frame is queued with
+   * @return the encoded frame, holding one reference
+   */
+  static EncodedFrame encodeUnpooled(
+      String text, EncodedFrame.EventReplay replay, EventPriority priority) {
+    return new EncodedFrame(
+        ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), null, replay, priority);
+  }
+
+  private ByteBuffer acquire(int size) {
+    int sizeClass = sizeClass(size);
+    if (sizeClass < 0) {
+      return ByteBuffer.allocate(size);
+    }
+    ByteBuffer buffer = free[sizeClass] != null ? free[sizeClass].poll() : null;
+    if (buffer != null) {
+      reused.increment();
+      return buffer;
+    }
+    allocated.increment();
+    return ByteBuffer.allocateDirect(SIZE_CLASSES[sizeClass]);
+  }
+
+  /** Take back a buffer whose last reference has been released. */
+  void release(ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      return;
+    }
+    int sizeClass = sizeClass(buffer.capacity());
+    if (sizeClass >= 0 && SIZE_CLASSES[sizeClass] == buffer.capacity() && free[sizeClass] != null) {
+      buffer.clear();
+      free[sizeClass].offer(buffer);
+    }
+  }
+
+  /** Direct buffers allocated because none of the right size was idle. */
+  long allocated() {
+    return allocated.sum();
+  }
+
+  /** Encodes served from an idle pooled buffer. */
+  long reused() {
+    return reused.sum();
+  }
+
+  /** Buffers currently idle in the pool. */
+  int idle() {
+    int idle = 0;
+    for (ArrayBlockingQueue<ByteBuffer> queue : free) {
+      idle += queue != null ? queue.size() : 0;
+    }
+    return idle;
+  }
+
+  private static int sizeClass(int size) {
+    for (int i = 0; i < SIZE_CLASSES.length; i++) {
+      if (size <= SIZE_CLASSES[i]) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the UTF-8 length of {@code text}, counting unpaired surrogates as {@code ?}. */
+  static int utf8Length(CharSequence text) {
+    int length = text.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          bytes += 1;
+        } else if (Character.isHighSurrogate(c)
+            && i + 1 < length
+            && Character.isLowSurrogate(text.charAt(i + 1))) {
+          bytes += 2;
+          i++;
+        } else if (Character.isSurrogate(c)) {
+          // Replaced by '?', one byte like String.getBytes does.
+        } else {
+          bytes += 2;
+        }
+      }
+    }
+    return bytes;
+  }
+
+  /** Writes {@code text} as UTF-8, replacing unpaired surrogates with {@code ?}. */
+  static void encodeUtf8(CharSequence text, ByteBuffer out) {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        out.put((byte) c);
+      } else if (c < 0x800) {
+        out.put((byte) (0xC0 | (c >> 6)));
+        out.put((byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, text.charAt(++i));
+        out.put((byte) (0xF0 | (cp >> 18)));
+        out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+        out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+        out.put((byte) (0x80 | (cp & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        out.put((byte) '?');
+      } else {
+        out.put((byte) (0xE0 | (c >> 12)));
+        out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        out.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+}
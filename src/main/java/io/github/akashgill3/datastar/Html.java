@@ -0,0 +1,372 @@
+package io.github.akashgill3.datastar;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Builder writing HTML straight into the frame of a {@link
+ * DatastarSseEmitter#patchHtml(java.util.function.Consumer)} event, escaping text and attribute
+ * values for the context they are written in.
+ *
+ * <p>No fragment string is built: markup is appended to the frame buffer as it is written, and
+ * {@code data: elements} line framing is applied on the fly. Escaped output never contains a line
+ * break, so only {@link #raw(String)} can start a new data line.
+ *
+ * <p>Typical usage:
+ *
+ * <pre>{@code
+ * emitter.patchHtml(html -> html
+ *     .open("ul").attr("id", "todos")
+ *       .open("li").attr("class", done ? "done" : null).text(title).close()
+ *       .open("input").attr("type", "checkbox").attr("checked", done).close()
+ *     .close());
+ * }</pre>
+ *
+ * <p>Escaping covers markup, not meaning. URL attributes such as {@code href} or {@code src} only
+ * keep values that are relative or use {@code http}, {@code https}, {@code mailto} or {@code tel};
+ * other schemes such as {@code javascript:} are replaced by {@value #UNSAFE_URL}. Attributes whose
+ * value is script or CSS, {@code on*} event handlers, {@code style} and {@code srcdoc}, are only
+ * written through {@link #trustedAttr(String, String)}. Text cannot be written into {@code script}
+ * or {@code style} elements, whose content is not HTML. Datastar {@code data-*} attribute values
+ * are expressions and must never be built from user input.
+ *
+ * <p>Elements still open at the end are closed automatically. Void elements such as {@code input}
+ * or {@code br} never get an end tag. Instances are only valid inside the callback they are passed
+ * to.
+ *
+ * @author Akash Gill
+ */
+public final class Html {
+
+  /** Elements without content or end tag. */
+  private static final Set<String> VOID_ELEMENTS =
+      Set.of(
+          "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source",
+          "track", "wbr");
+
+  /** Elements whose content is script or CSS rather than HTML. */
+  private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style");
+
+  /** Attributes whose value is navigated to or loaded as a URL. */
+  private static final Set<String> URL_ATTRIBUTES =
+      Set.of("action", "background", "cite", "formaction", "href", "poster", "src", "xlink:href");
+
+  /** Attributes other than {@code on*} event handlers whose value is script, CSS or a document. */
+  private static final Set<String> SCRIPT_ATTRIBUTES = Set.of("srcdoc", "style");
+
+  /** URL schemes that cannot run script. */
+  private static final Set<String> SAFE_SCHEMES = Set.of("http", "https", "mailto", "tel");
+
+  /** Written in place of a URL attribute value with another scheme. */
+  static final String UNSAFE_URL = "about:invalid";
+
+  private static final String DATA_LINE_PREFIX =
+      "data: " + Consts.ELEMENTS_DATALINE_LITERAL + " ";
+
+  private final StringBuilder sb;
+  private final boolean framed;
+
+  /** Names of the open elements, innermost last; allocated with the first element. */
+  private String[] open;
+
+  private int depth;
+
+  /** Whether the start tag of the innermost element still accepts attributes. */
+  private boolean inStartTag;
+
+  /**
+   * @param sb the buffer to write to
+   * @param framed whether to start a new {@code data: elements} line on each line break
+   */
+  Html(StringBuilder sb, boolean framed) {
+    this.sb = sb;
+    this.framed = framed;
+  }
+
+  /**
+   * Open an element. Attributes may follow until content is written.
+   *
+   * @param tag the element name
+   * @return this builder
+   * @throws IllegalArgumentException if {@code tag} is not a valid element name
+   */
+  public Html open(String tag) {
+    checkName(tag, "element");
+    endStartTag();
+    sb.append('<').append(tag);
+    inStartTag = true;
+    if (open == null) {
+      open = new String[8];
+    } else if (depth == open.length) {
+      open = Arrays.copyOf(open, depth * 2);
+    }
+    open[depth++] = tag;
+    return this;
+  }
+
+  /**
+   * Add an attribute to the element just opened. A {@code null} value omits the attribute.
+   *
+   * <p>The value of a URL attribute such as {@code href} is replaced by {@value #UNSAFE_URL} unless
+   * it is relative or uses {@code http}, {@code https}, {@code mailto} or {@code tel}.
+   *
+   * @param name the attribute name
+   * @param value the attribute value, escaped for a double-quoted attribute
+   * @return this builder
+   * @throws IllegalArgumentException if {@code name} is not a valid attribute name, or an {@code
+   *     on*} event handler, {@code style} or {@code srcdoc}; see {@link #trustedAttr(String,
+   *     String)}
+   * @throws IllegalStateException if content has been written since the element was opened
+   */
+  public Html attr(String name, String value) {
+    checkAttribute(name);
+    String lowerName = name.toLowerCase(Locale.ROOT);
+    if (lowerName.startsWith("on") || SCRIPT_ATTRIBUTES.contains(lowerName)) {
+      throw new IllegalArgumentException(
+          "Attribute holds script or CSS, use trustedAttr(): " + name);
+    }
+    if (value != null && URL_ATTRIBUTES.contains(lowerName) && !isSafeUrl(value)) {
+      value = UNSAFE_URL;
+    }
+    appendAttribute(name, value);
+    return this;
+  }
+
+  /**
+   * Add an attribute to the element just opened without checking what its value means, for {@code
+   * on*} event handlers, {@code style}, {@code srcdoc} or URLs built by the application. The value
+   * is still escaped for a double-quoted attribute. A {@code null} value omits the attribute.
+   *
+   * <p>Never pass user-controlled input here.
+   *
+   * @param name the attribute name
+   * @param value the attribute value
+   * @return this builder
+   * @throws IllegalArgumentException if {@code name} is not a valid attribute name
+   * @throws IllegalStateException if content has been written since the element was opened
+   */
+  public Html trustedAttr(String name, String value) {
+    checkAttribute(name);
+    appendAttribute(name, value);
+    return this;
+  }
+
+  /**
+   * Add a numeric attribute to the element just opened.
+   *
+   * @param name the attribute name
+   * @param value the attribute value
+   * @return this builder
+   */
+  public Html attr(String name, long value) {
+    checkAttribute(name);
+    sb.append(' ').append(name).append("=\"").append(value).append('"');
+    return this;
+  }
+
+  /**
+   * Add a boolean attribute to the element just opened, such as {@code checked} or {@code
+   * disabled}, if {@code present} is {@code true}.
+   *
+   * @param name the attribute name
+   * @param present whether to add the attribute
+   * @return this builder
+   */
+  public Html attr(String name, boolean present) {
+    checkAttribute(name);
+    if (present) {
+      sb.append(' ').append(name);
+    }
+    return this;
+  }
+
+  /**
+   * Write text content, escaped for an element body.
+   *
+   * @param text the text, nothing is written for {@code null}
+   * @return this builder
+   * @throws IllegalStateException if the innermost element is {@code script} or {@code style},
+   *     whose content is not HTML and cannot be escaped this way; use {@link #raw(String)}
+   */
+  public Html text(String text) {
+    if (depth > 0 && RAW_TEXT_ELEMENTS.contains(open[depth - 1].toLowerCase(Locale.ROOT))) {
+      throw new IllegalStateException("Text cannot be escaped inside <" + open[depth - 1] + ">");
+    }
+    endStartTag();
+    if (text != null) {
+      escape(text, false);
+    }
+    return this;
+  }
+
+  /**
+   * Write a number as text content.
+   *
+   * @param value the number
+   * @return this builder
+   */
+  public Html text(long value) {
+    endStartTag();
+    sb.append(value);
+    return this;
+  }
+
+  /**
+   * Write trusted markup as is, without escaping. Each line break, whether {@code \n}, {@code
+   * \r\n} or a lone {@code \r}, starts a new data line.
+   *
+   * <p>Never pass user-controlled input here.
+   *
+   * @param html the markup, nothing is written for {@code null}
+   * @return this builder
+   */
+  public Html raw(String html) {
+    endStartTag();
+    if (html == null) {
+      return this;
+    }
+    if (!framed) {
+      sb.append(html);
+      return this;
+    }
+    int start = 0;
+    for (int i = 0; i < html.length(); i++) {
+      char c = html.charAt(i);
+      if (c == '\n' || c == '\r') {
+        sb.append(html, start, i).append('\n').append(DATA_LINE_PREFIX);
+        if (c == '\r' && i + 1 < html.length() && html.charAt(i + 1) == '\n') {
+          i++;
+        }
+        start = i + 1;
+      }
+    }
+    sb.append(html, start, html.length());
+    return this;
+  }
+
+  /**
+   * Close the innermost open element.
+   *
+   * @return this builder
+   * @throws IllegalStateException if no element is open
+   */
+  public Html close() {
+    if (depth == 0) {
+      throw new IllegalStateException("No open element to close");
+    }
+    String tag = open[--depth];
+    open[depth] = null;
+    endStartTag();
+    if (!VOID_ELEMENTS.contains(tag.toLowerCase(Locale.ROOT))) {
+      sb.append("</").append(tag).append('>');
+    }
+    return this;
+  }
+
+  /**
+   * Shorthand for {@code open(tag).text(text).close()}.
+   *
+   * @param tag the element name
+   * @param text the text content
+   * @return this builder
+   */
+  public Html element(String tag, String text) {
+    return open(tag).text(text).close();
+  }
+
+  /** Close every element still open. */
+  void finish() {
+    while (depth > 0) {
+      close();
+    }
+  }
+
+  private void endStartTag() {
+    if (inStartTag) {
+      sb.append('>');
+      inStartTag = false;
+    }
+  }
+
+  private void appendAttribute(String name, String value) {
+    if (value != null) {
+      sb.append(' ').append(name).append("=\"");
+      escape(value, true);
+      sb.append('"');
+    }
+  }
+
+  private void checkAttribute(String name) {
+    if (!inStartTag) {
+      throw new IllegalStateException("Attributes must directly follow open(): " + name);
+    }
+    checkName(name, "attribute");
+  }
+
+  /** Accepts the names used in practice, including {@code data-*} and {@code data-on:click}. */
+  private static void checkName(String name, String kind) {
+    if (name == null || name.isEmpty()) {
+      throw new IllegalArgumentException("Invalid " + kind + " name: " + name);
+    }
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      boolean valid =
+          (c >= 'a' && c <= 'z')
+              || (c >= 'A' && c <= 'Z')
+              || (i > 0 && c >= '0' && c <= '9')
+              || (i > 0 && (c == '-' || c == '_' || c == ':' || c == '.'))
+              || (kind.equals("attribute") && (c == '@' || c == '_' || c == ':'));
+      if (!valid) {
+        throw new IllegalArgumentException("Invalid " + kind + " name: " + name);
+      }
+    }
+  }
+
+  /**
+   * Whether {@code url} is relative or uses a scheme from {@link #SAFE_SCHEMES}. Like browsers,
+   * this ignores leading control characters and spaces as well as tabs and line breaks anywhere.
+   */
+  private static boolean isSafeUrl(String url) {
+    StringBuilder scheme = new StringBuilder();
+    for (int i = 0; i < url.length(); i++) {
+      char c = url.charAt(i);
+      if (c == ':') {
+        return SAFE_SCHEMES.contains(scheme.toString().toLowerCase(Locale.ROOT));
+      }
+      if (c == '/' || c == '?' || c == '#') {
+        return true;
+      }
+      if (c == '\t' || c == '\n' || c == '\r' || (c <= ' ' && scheme.isEmpty())) {
+        continue;
+      }
+      scheme.append(c);
+    }
+    return true;
+  }
+
+  /**
+   * Append {@code value} escaped for text or a double-quoted attribute value. Line breaks become
+   * character references so the output stays on the current data line.
+   */
+  private void escape(String value, boolean attribute) {
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      String replacement =
+          switch (value.charAt(i)) {
+            case '&' -> "&amp;";
+            case '<' -> "&lt;";
+            case '>' -> "&gt;";
+            case '"' -> attribute ? "&quot;" : null;
+            case '\n' -> "&#10;";
+            case '\r' -> "&#13;";
+            default -> null;
+          };
+      if (replacement != null) {
+        sb.append(value, start, i).append(replacement);
+        start = i + 1;
+      }
+    }
+    sb.append(value, start, value.length());
+  }
+}
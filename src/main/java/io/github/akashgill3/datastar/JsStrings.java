@@ -0,0 +1,109 @@
+package io.github.akashgill3.datastar;
+
+/**
+ * Encodes strings as JavaScript string literals that are safe inside an HTML {@code <script>}
+ * element.
+ *
+ * <p>Besides quotes, backslashes and control characters, this escapes:
+ *
+ * <ul>
+ *   <li>U+2028 and U+2029, which end a line in JavaScript source before ES2019
+ *   <li>{@code <}, so that neither {@code </script} nor {@code <!--} can appear in the literal and
+ *       end or change the state of the script element
+ *   <li>unpaired surrogates, which cannot be encoded as UTF-8
+ * </ul>
+ *
+ * <p>Strings without any such character are appended in one go without being copied first.
+ *
+ * @author Akash Gill
+ */
+final class JsStrings {
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private JsStrings() {}
+
+  /**
+   * Returns whether {@code value} contains a character that {@link #appendQuoted} may escape,
+   * counting surrogates even when they are paired. Callers can concatenate a string without such
+   * characters directly, which copies it once less.
+   *
+   * @param value the string to check
+   * @return {@code true} unless the value can be quoted as is
+   */
+  static boolean needsEscaping(String value) {
+    return firstUnsafe(value, 0) != value.length();
+  }
+
+  /**
+   * Appends {@code value} as a double-quoted JavaScript string literal, or {@code null}.
+   *
+   * @param sb the buffer to append to
+   * @param value the string to encode
+   * @return {@code sb}
+   */
+  static StringBuilder appendQuoted(StringBuilder sb, String value) {
+    if (value == null) {
+      return sb.append("null");
+    }
+    sb.append('"');
+    int length = value.length();
+    int unsafe = firstUnsafe(value, 0);
+    if (unsafe == length) {
+      return sb.append(value).append('"');
+    }
+    int start = 0;
+    while (unsafe < length) {
+      sb.append(value, start, unsafe);
+      char c = value.charAt(unsafe);
+      if (Character.isHighSurrogate(c)
+          && unsafe + 1 < length
+          && Character.isLowSurrogate(value.charAt(unsafe + 1))) {
+        // A valid pair is written as is.
+        sb.append(c).append(value.charAt(unsafe + 1));
+        start = unsafe + 2;
+      } else {
+        appendEscaped(sb, c);
+        start = unsafe + 1;
+      }
+      unsafe = firstUnsafe(value, start);
+    }
+    return sb.append(value, start, length).append('"');
+  }
+
+  /** Returns the index of the first character needing a closer look, or the length. */
+  private static int firstUnsafe(String value, int from) {
+    for (int i = from; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x20
+          || c == '"'
+          || c == '\\'
+          || c == '<'
+          || c == 0x7F
+          || c == '\u2028'
+          || c == '\u2029'
+          || Character.isSurrogate(c)) {
+        return i;
+      }
+    }
+    return value.length();
+  }
+
+  private static void appendEscaped(StringBuilder sb, char c) {
+    switch (c) {
+      case '"' -> sb.append("\\\"");
+      case '\\' -> sb.append("\\\\");
+      case '\n' -> sb.append("\\n");
+      case '\r' -> sb.append("\\r");
+      case '\t' -> sb.append("\\t");
+      case '\b' -> sb.append("\\b");
+      case '\f' -> sb.append("\\f");
+      default ->
+          sb.append("\\u")
+              .append(HEX[(c >> 12) & 0xF])
+              .append(HEX[(c >> 8) & 0xF])
+              .append(HEX[(c >> 4) & 0xF])
+              .append(HEX[c & 0xF]);
+    }
+  }
+}
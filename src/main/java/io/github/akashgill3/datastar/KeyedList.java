@@ -0,0 +1,255 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.DatastarSseEmitter.ElementPatch;
+import io.github.akashgill3.datastar.events.ElementPatchMode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A live list that sends only the rows that changed since the last update to one connection.
+ *
+ * <p>The list remembers the row ids it sent last and a hash of each rendered row. Every {@link
+ * #update(DatastarSseEmitter, List)} renders the new rows and writes the smallest set of patches
+ * that turns the old list into the new one, as a single write:
+ *
+ * <ul>
+ *   <li>{@code remove} for rows that are gone, and for rows that moved;
+ *   <li>{@code outer} for rows whose content changed, by id selector;
+ *   <li>{@code after}, {@code before} or {@code append} for new and moved rows, one patch per run
+ *       of consecutive rows.
+ * </ul>
+ *
+ * <p>Rows that keep their relative order stay in place; only the fewest rows needed are moved. The
+ * payload therefore grows with the size of the change rather than the size of the list. The first
+ * update replaces the content of the container with all rows, as does the next one after {@link
+ * #reset()}.
+ *
+ * <p>Each rendered row must be a single element whose {@code id} attribute is the row id, and ids
+ * must be valid CSS identifiers:
+ *
+ * <pre>{@code
+ * KeyedList<Order> orders =
+ *     new KeyedList<>("#orders", order -> "order-" + order.id(), this::renderOrderRow);
+ * orders.update(sseEmitter, orderService.openOrders());
+ * }</pre>
+ *
+ * <p>A keyed list tracks what one client has seen, so every connection needs its own. Updates are
+ * serialized.
+ *
+ * @param <T> the row type
+ * @author Akash Gill
+ */
+public final class KeyedList<T> {
+
+  private final String selector;
+  private final Function<? super T, String> id;
+  private final Function<? super T, String> renderer;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Row ids in the order last sent, {@code null} before the first update. */
+  private List<String> ids;
+
+  /** Hashes of the rows last sent, by row id. */
+  private Map<String, Long> hashes;
+
+  /**
+   * Create a keyed list.
+   *
+   * @param selector the selector of the element containing the rows
+   * @param id returns the id of a row, which its rendered element must carry
+   * @param renderer renders a row as a single element
+   */
+  public KeyedList(
+      String selector, Function<? super T, String> id, Function<? super T, String> renderer) {
+    this.selector = Objects.requireNonNull(selector, "selector must not be null");
+    this.id = Objects.requireNonNull(id, "id must not be null");
+    this.renderer = Objects.requireNonNull(renderer, "renderer must not be null");
+  }
+
+  /**
+   * Send the changes from the rows last sent to {@code rows}.
+   *
+   * @param emitter the emitter to write to
+   * @param rows the rows, in display order
+   * @return the number of patch events written, {@code 0} if nothing changed
+   * @throws IOException if an I/O error occurs
+   * @throws IllegalArgumentException if two rows have the same id
+   */
+  public int update(DatastarSseEmitter emitter, List<? extends T> rows) throws IOException {
+    Objects.requireNonNull(emitter, "emitter must not be null");
+    return update(emitter, null, rows);
+  }
+
+  /**
+   * Send the changes from the rows last sent to {@code rows} on a channel.
+   *
+   * @param channel the channel to write to
+   * @param rows the rows, in display order
+   * @return the number of patch events written, {@code 0} if nothing changed
+   * @throws IOException if an I/O error occurs
+   * @throws IllegalArgumentException if two rows have the same id
+   */
+  public int update(DatastarChannel channel, List<? extends T> rows) throws IOException {
+    Objects.requireNonNull(channel, "channel must not be null");
+    return update(channel.getEmitter(), channel, rows);
+  }
+
+  /** Forget the rows sent, so that the next update sends the whole list again. */
+  public void reset() {
+    lock.lock();
+    try {
+      ids = null;
+      hashes = null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int update(DatastarSseEmitter emitter, DatastarChannel channel, List<? extends T> rows)
+      throws IOException {
+    Objects.requireNonNull(rows, "rows must not be null");
+    lock.lock();
+    try {
+      int size = rows.size();
+      String[] newIds = new String[size];
+      String[] elements = new String[size];
+      Map<String, Long> newHashes = HashMap.newHashMap(size);
+      for (int i = 0; i < size; i++) {
+        T row = rows.get(i);
+        newIds[i] = id.apply(row);
+        elements[i] = renderer.apply(row);
+        if (newHashes.put(newIds[i], hash(elements[i])) != null) {
+          throw new IllegalArgumentException("Duplicate row id: " + newIds[i]);
+        }
+      }
+      List<ElementPatch> patches =
+          ids == null ? initialPatches(elements) : diff(newIds, elements, newHashes);
+      emitter.patchElements(channel, patches);
+      ids = List.of(newIds);
+      hashes = newHashes;
+      return patches.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private List<ElementPatch> initialPatches(String[] elements) {
+    if (elements.length == 0) {
+      return List.of();
+    }
+    return List.of(patch(String.join("\n", elements), selector, ElementPatchMode.Inner));
+  }
+
+  private List<ElementPatch> diff(String[] newIds, String[] elements, Map<String, Long> newHashes) {
+    Map<String, Integer> oldPositions = HashMap.newHashMap(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      oldPositions.put(ids.get(i), i);
+    }
+    int size = newIds.length;
+    int[] oldPosition = new int[size];
+    for (int i = 0; i < size; i++) {
+      oldPosition[i] = oldPositions.getOrDefault(newIds[i], -1);
+    }
+    boolean[] stable = stableRows(oldPosition);
+
+    // Removes go first, so inserts only ever anchor on rows that stay.
+    List<ElementPatch> patches = new ArrayList<>();
+    for (String oldId : ids) {
+      if (!newHashes.containsKey(oldId)) {
+        patches.add(patch(null, "#" + oldId, ElementPatchMode.Remove));
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (oldPosition[i] >= 0 && !stable[i]) {
+        patches.add(patch(null, "#" + newIds[i], ElementPatchMode.Remove));
+      }
+    }
+
+    String previous = null;
+    int i = 0;
+    while (i < size) {
+      if (stable[i]) {
+        if (hashes.get(newIds[i]).longValue() != newHashes.get(newIds[i]).longValue()) {
+          patches.add(patch(elements[i], "#" + newIds[i], ElementPatchMode.Outer));
+        }
+        previous = newIds[i++];
+        continue;
+      }
+      int end = i;
+      StringBuilder run = new StringBuilder(elements[end++]);
+      while (end < size && !stable[end]) {
+        run.append('\n').append(elements[end++]);
+      }
+      if (previous != null) {
+        patches.add(patch(run.toString(), "#" + previous, ElementPatchMode.After));
+      } else if (end < size) {
+        patches.add(patch(run.toString(), "#" + newIds[end], ElementPatchMode.Before));
+      } else {
+        patches.add(patch(run.toString(), selector, ElementPatchMode.Append));
+      }
+      previous = newIds[end - 1];
+      i = end;
+    }
+    return patches;
+  }
+
+  /**
+   * Returns which rows stay in place: a longest sequence of kept rows whose old positions are in
+   * increasing order. Every other kept row has moved.
+   *
+   * @param oldPosition the old position of each new row, {@code -1} for new rows
+   */
+  static boolean[] stableRows(int[] oldPosition) {
+    int size = oldPosition.length;
+    // tails[k] is the row ending the best sequence of length k + 1 found so far.
+    int[] tails = new int[size];
+    int[] predecessor = new int[size];
+    int length = 0;
+    for (int i = 0; i < size; i++) {
+      if (oldPosition[i] < 0) {
+        continue;
+      }
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (oldPosition[tails[mid]] < oldPosition[i]) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      predecessor[i] = low > 0 ? tails[low - 1] : -1;
+      tails[low] = i;
+      if (low == length) {
+        length++;
+      }
+    }
+    boolean[] stable = new boolean[size];
+    for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessor[i]) {
+      stable[i] = true;
+    }
+    return stable;
+  }
+
+  private static ElementPatch patch(String elements, String selector, ElementPatchMode mode) {
+    return new ElementPatch(elements, options -> options.selector(selector).mode(mode));
+  }
+
+  /** 64-bit FNV-1a over the characters of a rendered row. */
+  private static long hash(String element) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < element.length(); i++) {
+      hash ^= element.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,343 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.events.EventPriority;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write queue of one emitter for the non-blocking write engine ({@code
+ * datastar.writes.engine=non-blocking}).
+ *
+ * <p>Frames are queued by any thread and written with Servlet async I/O, only while {@link
+ * ServletOutputStream#isReady()} reports that the socket accepts data: on the sending thread while
+ * it does, and otherwise on the container thread calling {@link #onWritePossible()} once it does
+ * again. A sender never waits on the client, at most on another thread's write that cannot block
+ * either.
+ *
+ * <p>The writer is attached once the response is in async mode, by writing the writer itself
+ * through {@link EncodedFrameHttpMessageConverter}. Frames queued before that are written as soon
+ * as the container reports the stream ready.
+ *
+ * <p>Frames queue in one lane per {@link EventPriority}. The next frame comes from the high lane
+ * while it has any, so scripts and navigation overtake bulk patches still queued; within a lane,
+ * frames are written in the order they were queued. A frame the stream took only part of is always
+ * finished first, so frames never interleave on the wire.
+ *
+ * <p>The writer stops being writable once more than the high water mark is queued, and becomes
+ * writable again once the queue has been written down to the low water mark.
+ *
+ * @author Akash Gill
+ */
+final class NonBlockingWriter implements WriteListener {
+
+  /** Orders writes; only ever held for calls that return without waiting on the client. */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final ArrayDeque<Pending> highQueue = new ArrayDeque<>();
+  private final ArrayDeque<Pending> normalQueue = new ArrayDeque<>();
+
+  /** The frame being written, taken off its lane; {@code null} between frames. */
+  private Pending writing;
+
+  /** Notified once, outside the lock, when a write fails or the container reports an error. */
+  private final Consumer<Throwable> onFailure;
+
+  /** Notified outside the lock whenever the writer becomes writable again. */
+  private final Runnable onWritable;
+
+  private final long highWaterMark;
+  private final long lowWaterMark;
+
+  private ServletOutputStream out;
+
+  /** Whether the stream reported not ready, so the container will call onWritePossible. */
+  private boolean awaitingWritable;
+
+  private boolean flushPending;
+  private long queuedBytes;
+
+  /** Whether the queue went over the high water mark and has not been written down since. */
+  private boolean unwritable;
+
+  /** Whether {@link #onWritable} is due once the lock is released. */
+  private boolean writableAgain;
+
+  /** Whether no more frames are accepted, after {@link #close} or {@link #discard}. */
+  private boolean closed;
+
+  /** Runs once the queue has been written after {@link #close}. */
+  private Runnable whenWritten;
+
+  private Throwable failure;
+
+  NonBlockingWriter(
+      Consumer<Throwable> onFailure, Runnable onWritable, long highWaterMark, long lowWaterMark) {
+    this.onFailure = onFailure;
+    this.onWritable = onWritable;
+    this.highWaterMark = highWaterMark;
+    this.lowWaterMark = lowWaterMark;
+  }
+
+  /**
+   * Queue a frame in the lane of its {@link EncodedFrame#priority() priority} and write as much as
+   * the stream accepts right away.
+   *
+   * @param frame the frame, whose reference the queue takes over
+   * @throws IOException if the write failed or the writer is closed; the frame is released either
+   *     way
+   */
+  void enqueue(EncodedFrame frame) throws IOException {
+    lock.lock();
+    try {
+      if (closed || failure != null) {
+        frame.release();
+        throw new IOException("Emitter stream is closed", failure);
+      }
+      (frame.priority() == EventPriority.HIGH ? highQueue : normalQueue)
+          .addLast(new Pending(frame));
+      queuedBytes += frame.size();
+      if (queuedBytes > highWaterMark) {
+        unwritable = true;
+      }
+    } finally {
+      lock.unlock();
+    }
+    write();
+  }
+
+  /**
+   * Attach the servlet output stream of the async response. Called by {@link
+   * EncodedFrameHttpMessageConverter} on the thread that initializes the emitter.
+   *
+   * <p>Commits the response headers with a last blocking flush, then switches the stream to
+   * non-blocking mode. The container calls {@link #onWritePossible()} once it can be written to.
+   */
+  void attach(ServletOutputStream out) throws IOException {
+    out.flush();
+    lock.lock();
+    try {
+      this.out = out;
+      awaitingWritable = true;
+    } finally {
+      lock.unlock();
+    }
+    out.setWriteListener(this);
+  }
+
+  /**
+   * Accept no more frames and run {@code whenWritten} once the queued ones have been written, or
+   * right away if the writer has failed or been discarded. Ignored while an earlier close is still
+   * waiting for the queue.
+   */
+  void close(Runnable whenWritten) {
+    boolean now;
+    lock.lock();
+    try {
+      if (this.whenWritten != null) {
+        return;
+      }
+      now = closed || failure != null;
+      closed = true;
+      if (!now) {
+        this.whenWritten = whenWritten;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (now) {
+      whenWritten.run();
+      return;
+    }
+    try {
+      write();
+    } catch (IOException ex) {
+      // Already reported to onFailure, which completes the emitter.
+    }
+  }
+
+  /** Drop and release all queued frames and accept no more. */
+  void discard() {
+    lock.lock();
+    try {
+      closed = true;
+      whenWritten = null;
+      releaseQueued();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns whether frames are accepted and the queue is not over the high water mark. */
+  boolean isWritable() {
+    lock.lock();
+    try {
+      return !unwritable && !closed && failure == null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the bytes queued but not yet accepted by the stream. */
+  long queuedBytes() {
+    lock.lock();
+    try {
+      return queuedBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void onWritePossible() throws IOException {
+    lock.lock();
+    try {
+      awaitingWritable = false;
+    } finally {
+      lock.unlock();
+    }
+    write();
+  }
+
+  @Override
+  public void onError(Throwable ex) {
+    if (fail(ex)) {
+      onFailure.accept(ex);
+    }
+  }
+
+  /**
+   * Write while the stream is ready, then report writability, a failure or completion outside the
+   * lock.
+   */
+  private void write() throws IOException {
+    IOException failed = null;
+    Runnable written = null;
+    boolean writable = false;
+    lock.lock();
+    try {
+      if (out == null || awaitingWritable || failure != null) {
+        return;
+      }
+      try {
+        writeQueued();
+        if (writing == null
+            && highQueue.isEmpty()
+            && normalQueue.isEmpty()
+            && !awaitingWritable
+            && whenWritten != null) {
+          written = whenWritten;
+          whenWritten = null;
+        }
+      } catch (IOException ex) {
+        failed = ex;
+      }
+      writable = writableAgain && failed == null;
+      writableAgain = false;
+    } finally {
+      lock.unlock();
+    }
+    if (writable) {
+      onWritable.run();
+    }
+    if (failed != null) {
+      if (fail(failed)) {
+        onFailure.accept(failed);
+      }
+      throw failed;
+    }
+    if (written != null) {
+      written.run();
+    }
+  }
+
+  /**
+   * Write queued frames and flush until the stream stops being ready. Must hold {@link #lock}.
+   *
+   * <p>{@link ServletOutputStream#write(ByteBuffer)} may take only part of a frame; the rest stays
+   * in {@link #writing} until the container calls {@link #onWritePossible()}.
+   */
+  private void writeQueued() throws IOException {
+    while (true) {
+      if (!out.isReady()) {
+        awaitingWritable = true;
+        return;
+      }
+      if (writing == null) {
+        writing = highQueue.isEmpty() ? normalQueue.pollFirst() : highQueue.pollFirst();
+      }
+      Pending next = writing;
+      if (next == null) {
+        break;
+      }
+      int remaining = next.data.remaining();
+      out.write(next.data);
+      queuedBytes -= remaining - next.data.remaining();
+      if (unwritable && queuedBytes <= lowWaterMark) {
+        unwritable = false;
+        writableAgain = true;
+      }
+      flushPending = true;
+      if (!next.data.hasRemaining()) {
+        writing = null;
+        next.frame.release();
+      }
+    }
+    if (flushPending) {
+      flushPending = false;
+      out.flush();
+      if (!out.isReady()) {
+        awaitingWritable = true;
+      }
+    }
+  }
+
+  /** Record the first failure and release the queue. Returns whether this was the first. */
+  private boolean fail(Throwable ex) {
+    lock.lock();
+    try {
+      if (failure != null) {
+        return false;
+      }
+      failure = ex;
+      whenWritten = null;
+      releaseQueued();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Release the frame being written and both lanes. Must hold {@link #lock}. */
+  private void releaseQueued() {
+    if (writing != null) {
+      writing.frame.release();
+      writing = null;
+    }
+    for (Pending pending : highQueue) {
+      pending.frame.release();
+    }
+    for (Pending pending : normalQueue) {
+      pending.frame.release();
+    }
+    highQueue.clear();
+    normalQueue.clear();
+    queuedBytes = 0;
+  }
+
+  /** A queued frame and what is left of it to write. */
+  private static final class Pending {
+
+    private final EncodedFrame frame;
+    private final ByteBuffer data;
+
+    Pending(EncodedFrame frame) {
+      this.frame = frame;
+      this.data = frame.data();
+    }
+  }
+}
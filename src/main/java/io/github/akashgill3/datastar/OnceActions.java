@@ -0,0 +1,91 @@
+package io.github.akashgill3.datastar;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Actions that run exactly once, on the first of several triggers, such as the cleanup actions of
+ * an emitter or the close actions of a channel.
+ *
+ * <p>Lock-free: registered actions are composed into one, swapped for a sentinel once they have
+ * run. An action registered after that runs immediately. A failing action is logged and does not
+ * keep the others from running.
+ *
+ * @author Akash Gill
+ */
+final class OnceActions {
+
+  private static final Logger log = LoggerFactory.getLogger(OnceActions.class);
+
+  private static final Runnable DONE = () -> {};
+
+  private static final VarHandle ACTIONS;
+
+  static {
+    try {
+      ACTIONS = MethodHandles.lookup().findVarHandle(OnceActions.class, "actions", Runnable.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  /** Names the actions in the log, such as {@code "emitter cleanup"}. */
+  private final String name;
+
+  /** The registered actions composed into one, or {@link #DONE} once they have run. */
+  private volatile Runnable actions;
+
+  OnceActions(String name) {
+    this.name = name;
+  }
+
+  /** Register an action, or run it right away if the actions have run. */
+  void add(Runnable action) {
+    while (true) {
+      Runnable current = actions;
+      if (current == DONE) {
+        runQuietly(action);
+        return;
+      }
+      Runnable next =
+          current == null
+              ? action
+              : () -> {
+                runQuietly(current);
+                runQuietly(action);
+              };
+      if (ACTIONS.compareAndSet(this, current, next)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Mark the actions as run and return them, for a caller that has more to do before running them.
+   *
+   * @return the registered actions, a no-op if there are none, or {@code null} if they have been
+   *     taken already
+   */
+  Runnable take() {
+    Runnable current = (Runnable) ACTIONS.getAndSet(this, DONE);
+    if (current == DONE) {
+      return null;
+    }
+    return current == null ? DONE : () -> runQuietly(current);
+  }
+
+  /** Returns whether the actions have been taken to run. */
+  boolean hasRun() {
+    return actions == DONE;
+  }
+
+  private void runQuietly(Runnable action) {
+    try {
+      action.run();
+    } catch (RuntimeException ex) {
+      log.warn("Datastar {} action failed", name, ex);
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package io.github.akashgill3.datastar;
+
+import java.util.List;
+
+/**
+ * Supplies the rows of a {@link WindowedList}, one range at a time.
+ *
+ * <p>Typically backed by a paged query, so that only the rows entering the window are loaded:
+ *
+ * <pre>{@code
+ * RowSource<Order> orders = (offset, limit) -> orderRepository.findPage(offset, limit);
+ * }</pre>
+ *
+ * @param <T> the row type
+ * @author Akash Gill
+ */
+@FunctionalInterface
+public interface RowSource<T> {
+
+  /**
+   * Returns the rows in {@code [offset, offset + limit)}, in display order.
+   *
+   * @param offset the position of the first row, at least 0
+   * @param limit the number of rows wanted, at least 1
+   * @return up to {@code limit} rows, fewer at the end of the list
+   */
+  List<T> rows(int offset, int limit);
+}
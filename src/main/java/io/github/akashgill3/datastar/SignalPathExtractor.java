@@ -0,0 +1,136 @@
+package io.github.akashgill3.datastar;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonPointer;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+
+/**
+ * Extracts values addressed by JSON pointers from a signal payload without materializing the whole
+ * payload.
+ *
+ * <p>The payload is walked token by token. Subtrees that no requested pointer can descend into are
+ * skipped with {@link JsonParser#skipChildren()}, only the addressed values are read into {@link
+ * JsonNode}s, and parsing stops as soon as every requested pointer has been resolved.
+ *
+ * @author Akash Gill
+ */
+final class SignalPathExtractor {
+
+  private SignalPathExtractor() {}
+
+  /**
+   * Extract the values addressed by {@code paths} from the parser's remaining content.
+   *
+   * @param mapper the mapper used to read matched values into trees
+   * @param parser the parser positioned before the signal payload
+   * @param paths JSON pointer expressions (e.g. {@code /form/email})
+   * @return the matched values keyed by path, in request order; unmatched paths are absent
+   * @throws IllegalArgumentException if a path is not a valid JSON pointer
+   */
+  static Map<String, JsonNode> extract(
+      ObjectMapper mapper, JsonParser parser, Collection<String> paths) {
+    Collection<String> distinct = new LinkedHashSet<>(paths);
+    List<Target> targets = new ArrayList<>(distinct.size());
+    for (String path : distinct) {
+      targets.add(new Target(path, JsonPointer.compile(path)));
+    }
+
+    Map<String, JsonNode> found = new LinkedHashMap<>();
+    if (targets.isEmpty() || parser.nextToken() == null) {
+      return found;
+    }
+    // Matched values are read mid-stream, so the rest of the payload must not count as trailing
+    ObjectReader reader = mapper.reader().without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+    walk(reader, parser, targets, found, targets.size());
+
+    Map<String, JsonNode> ordered = new LinkedHashMap<>();
+    for (Target target : targets) {
+      JsonNode node = found.get(target.path());
+      if (node != null) {
+        ordered.put(target.path(), node);
+      }
+    }
+    return ordered;
+  }
+
+  /**
+   * Walk the value at the parser's current token for the given still-active targets.
+   *
+   * @return {@code true} once all targets have been resolved and parsing can stop
+   */
+  private static boolean walk(
+      ObjectReader reader,
+      JsonParser parser,
+      List<Target> active,
+      Map<String, JsonNode> found,
+      int total) {
+    if (active.stream().anyMatch(target -> target.remaining().matches())) {
+      JsonNode node = reader.readTree(parser);
+      for (Target target : active) {
+        JsonNode match = target.remaining().matches() ? node : node.at(target.remaining());
+        if (!match.isMissingNode()) {
+          found.put(target.path(), match);
+        }
+      }
+      return found.size() == total;
+    }
+
+    JsonToken token = parser.currentToken();
+    if (token == JsonToken.START_OBJECT) {
+      while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+        String name = parser.currentName();
+        parser.nextToken();
+        if (descend(reader, parser, active, found, total, p -> p.matchProperty(name))) {
+          return true;
+        }
+      }
+    } else if (token == JsonToken.START_ARRAY) {
+      int index = 0;
+      JsonToken next;
+      while ((next = parser.nextToken()) != JsonToken.END_ARRAY && next != null) {
+        int element = index++;
+        if (descend(reader, parser, active, found, total, p -> p.matchElement(element))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean descend(
+      ObjectReader reader,
+      JsonParser parser,
+      List<Target> active,
+      Map<String, JsonNode> found,
+      int total,
+      Function<JsonPointer, JsonPointer> step) {
+    List<Target> next = null;
+    for (Target target : active) {
+      JsonPointer tail = step.apply(target.remaining());
+      if (tail != null) {
+        if (next == null) {
+          next = new ArrayList<>(active.size());
+        }
+        next.add(new Target(target.path(), tail));
+      }
+    }
+    if (next == null) {
+      parser.skipChildren();
+      return false;
+    }
+    return walk(reader, parser, next, found, total);
+  }
+
+  private record Target(String path, JsonPointer remaining) {}
+}
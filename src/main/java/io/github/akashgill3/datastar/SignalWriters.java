@@ -0,0 +1,101 @@
+package io.github.akashgill3.datastar;
+
+import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Cache of compact {@link ObjectWriter}s used to serialize signal objects straight into SSE frames.
+ *
+ * <p>One writer is resolved per value class and shared by all emitters of a {@link Datastar}
+ * instance. Writers never indent, so the output fits on a single {@code data: signals} line.
+ *
+ * @author Akash Gill
+ */
+final class SignalWriters {
+
+  private final ObjectMapper objectMapper;
+  private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  SignalWriters(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  /** Returns the writers backed by a default {@link ObjectMapper}, for standalone emitters. */
+  static SignalWriters defaults() {
+    return DefaultHolder.INSTANCE;
+  }
+
+  /**
+   * Serialize {@code value} as compact JSON, appending it to {@code sb}.
+   *
+   * @param sb the frame buffer to append to
+   * @param value the value to serialize
+   */
+  void write(StringBuilder sb, Object value) {
+    writer(value.getClass()).writeValue(new StringBuilderWriter(sb), value);
+  }
+
+  /**
+   * Convert signals to a JSON tree, parsing them if they are already serialized.
+   *
+   * @param signals a JSON string or an object to convert
+   * @return the signals as a tree
+   */
+  JsonNode toTree(Object signals) {
+    if (signals instanceof String json) {
+      return objectMapper.readTree(json);
+    }
+    return objectMapper.valueToTree(signals);
+  }
+
+  private ObjectWriter writer(Class<?> type) {
+    return writers.computeIfAbsent(
+        type, t -> objectMapper.writerFor(t).without(SerializationFeature.INDENT_OUTPUT));
+  }
+
+  private static final class DefaultHolder {
+    static final SignalWriters INSTANCE = new SignalWriters(JsonMapper.builder().build());
+  }
+
+  /** Unsynchronized {@link Writer} appending to a {@link StringBuilder}. */
+  private static final class StringBuilderWriter extends Writer {
+    private final StringBuilder sb;
+
+    StringBuilderWriter(StringBuilder sb) {
+      this.sb = sb;
+    }
+
+    @Override
+    public void write(int c) {
+      sb.append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      sb.append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+      sb.append(str, off, off + len);
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+      sb.append(csq);
+      return this;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,29 @@
+package io.github.akashgill3.datastar;
+
+import java.io.IOException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an incoming signal payload exceeds {@code datastar.signals.max-size}.
+ *
+ * <p>The check happens before the payload is parsed or fully buffered. When thrown from a
+ * controller, Spring MVC answers with {@code 413 Content Too Large}.
+ *
+ * @author Akash Gill
+ */
+@ResponseStatus(HttpStatus.CONTENT_TOO_LARGE)
+public class SignalsTooLargeException extends IOException {
+
+  private final long maxSize;
+
+  public SignalsTooLargeException(long maxSize) {
+    super("Datastar signals exceed the maximum size of " + maxSize + " bytes");
+    this.maxSize = maxSize;
+  }
+
+  /** Returns the configured maximum signal size in bytes. */
+  public long getMaxSize() {
+    return maxSize;
+  }
+}
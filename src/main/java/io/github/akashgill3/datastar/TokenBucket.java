@@ -0,0 +1,61 @@
+package io.github.akashgill3.datastar;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket limiting the rate of events written by an emitter.
+ *
+ * <p>Tokens are refilled continuously at {@code permitsPerSecond} up to {@code burst}. The bucket
+ * starts full. Instances are not thread-safe; the owning emitter guards access.
+ *
+ * @author Akash Gill
+ */
+final class TokenBucket {
+
+  private final double permitsPerNano;
+  private final double capacity;
+  private final LongSupplier nanoClock;
+
+  private double tokens;
+  private long lastRefill;
+
+  TokenBucket(double permitsPerSecond, int burst) {
+    this(permitsPerSecond, burst, System::nanoTime);
+  }
+
+  TokenBucket(double permitsPerSecond, int burst, LongSupplier nanoClock) {
+    if (!(permitsPerSecond > 0)) {
+      throw new IllegalArgumentException("permitsPerSecond must be > 0");
+    }
+    if (burst < 1) {
+      throw new IllegalArgumentException("burst must be >= 1");
+    }
+    this.permitsPerNano = permitsPerSecond / 1_000_000_000d;
+    this.capacity = burst;
+    this.nanoClock = nanoClock;
+    this.tokens = burst;
+    this.lastRefill = nanoClock.getAsLong();
+  }
+
+  /** Take a token if one is available. */
+  boolean tryAcquire() {
+    refill();
+    if (tokens >= 1) {
+      tokens -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  /** Returns the nanoseconds until the next token is available, {@code 0} if one is available. */
+  long nanosUntilAvailable() {
+    refill();
+    return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+  }
+
+  private void refill() {
+    long now = nanoClock.getAsLong();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+    lastRefill = now;
+  }
+}
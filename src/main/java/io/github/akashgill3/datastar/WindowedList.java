@@ -0,0 +1,237 @@
+package io.github.akashgill3.datastar;
+
+import io.github.akashgill3.datastar.DatastarSseEmitter.ElementPatch;
+import io.github.akashgill3.datastar.events.ElementPatchMode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A virtualized list that keeps only a window of a long list in the DOM of one connection.
+ *
+ * <p>The client reports the range it shows as a {@link Viewport}, typically bound from signals on
+ * scroll. Each {@link #update(DatastarSseEmitter, Viewport)} loads from the {@link RowSource} and
+ * renders only the rows entering the window, and writes as one batch:
+ *
+ * <ul>
+ *   <li>{@code remove} for each row leaving the window;
+ *   <li>{@code prepend} for the rows entering above it;
+ *   <li>{@code append} for the rows entering below it.
+ * </ul>
+ *
+ * <p>A window that does not overlap the previous one replaces the content of the container, or
+ * only removes the rows shown if it is past the end of the list. Server work and bytes on the wire
+ * therefore stay proportional to the viewport, however long the list:
+ *
+ * <pre>{@code
+ * @PostMapping("/orders/scroll")
+ * public void scroll(@DatastarSignals WindowedList.Viewport viewport) throws IOException {
+ *   orders.update(sseEmitter, viewport); // the connection's WindowedList
+ * }
+ * }</pre>
+ *
+ * <p>Each rendered row must be a single element whose {@code id} attribute is the row id, and ids
+ * must be valid CSS identifiers. A windowed list tracks what one client shows, so every connection
+ * needs its own. Updates are serialized.
+ *
+ * @param <T> the row type
+ * @author Akash Gill
+ */
+public final class WindowedList<T> {
+
+  /** The most rows a window holds unless configured otherwise. */
+  public static final int DEFAULT_MAX_ROWS = 500;
+
+  private final String selector;
+  private final RowSource<? extends T> source;
+  private final Function<? super T, String> id;
+  private final Function<? super T, String> renderer;
+  private final int maxRows;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Position of the first row shown. */
+  private int offset;
+
+  /** Ids of the rows shown, in order; {@code null} before the first update. */
+  private List<String> ids;
+
+  /**
+   * Create a windowed list holding at most {@link #DEFAULT_MAX_ROWS} rows.
+   *
+   * @param selector the selector of the element containing the rows
+   * @param source loads the rows entering the window
+   * @param id returns the id of a row, which its rendered element must carry
+   * @param renderer renders a row as a single element
+   */
+  public WindowedList(
+      String selector,
+      RowSource<? extends T> source,
+      Function<? super T, String> id,
+      Function<? super T, String> renderer) {
+    this(selector, source, id, renderer, DEFAULT_MAX_ROWS);
+  }
+
+  /**
+   * Create a windowed list.
+   *
+   * @param selector the selector of the element containing the rows
+   * @param source loads the rows entering the window
+   * @param id returns the id of a row, which its rendered element must carry
+   * @param renderer renders a row as a single element
+   * @param maxRows the most rows a window holds, whatever limit the client asks for
+   */
+  public WindowedList(
+      String selector,
+      RowSource<? extends T> source,
+      Function<? super T, String> id,
+      Function<? super T, String> renderer,
+      int maxRows) {
+    if (maxRows < 1) {
+      throw new IllegalArgumentException("maxRows must be >= 1");
+    }
+    this.selector = Objects.requireNonNull(selector, "selector must not be null");
+    this.source = Objects.requireNonNull(source, "source must not be null");
+    this.id = Objects.requireNonNull(id, "id must not be null");
+    this.renderer = Objects.requireNonNull(renderer, "renderer must not be null");
+    this.maxRows = maxRows;
+  }
+
+  /**
+   * Move the window to {@code viewport}, sending the rows that enter and leave it.
+   *
+   * <p>A negative offset is treated as 0, and the limit is capped at the configured maximum.
+   *
+   * @param emitter the emitter to write to
+   * @param viewport the range the client shows
+   * @return the number of patch events written, {@code 0} if the window did not change
+   * @throws IOException if an I/O error occurs
+   */
+  public int update(DatastarSseEmitter emitter, Viewport viewport) throws IOException {
+    Objects.requireNonNull(emitter, "emitter must not be null");
+    return update(emitter, null, viewport);
+  }
+
+  /**
+   * Move the window to {@code viewport} on a channel, sending the rows that enter and leave it.
+   *
+   * @param channel the channel to write to
+   * @param viewport the range the client shows
+   * @return the number of patch events written, {@code 0} if the window did not change
+   * @throws IOException if an I/O error occurs
+   * @see #update(DatastarSseEmitter, Viewport)
+   */
+  public int update(DatastarChannel channel, Viewport viewport) throws IOException {
+    Objects.requireNonNull(channel, "channel must not be null");
+    return update(channel.getEmitter(), channel, viewport);
+  }
+
+  /** Forget the window shown, so that the next update sends the whole window again. */
+  public void reset() {
+    lock.lock();
+    try {
+      ids = null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int update(DatastarSseEmitter emitter, DatastarChannel channel, Viewport viewport)
+      throws IOException {
+    Objects.requireNonNull(viewport, "viewport must not be null");
+    int newOffset = Math.max(0, viewport.offset());
+    int limit = Math.clamp(viewport.limit(), 0, maxRows);
+    long newEnd = (long) newOffset + limit;
+    lock.lock();
+    try {
+      List<ElementPatch> patches = new ArrayList<>();
+      List<String> shown;
+      long end = ids == null ? 0 : (long) offset + ids.size();
+      if (ids == null || ids.isEmpty() || newOffset >= end || newEnd <= offset) {
+        List<String> loaded = new ArrayList<>();
+        String elements = load(newOffset, limit, loaded);
+        if (elements != null) {
+          patches.add(patch(elements, selector, ElementPatchMode.Inner));
+        } else if (ids != null) {
+          // An inner patch without elements is ambiguous, so remove the rows shown instead.
+          for (String shownId : ids) {
+            patches.add(patch(null, "#" + shownId, ElementPatchMode.Remove));
+          }
+        }
+        shown = loaded;
+      } else {
+        int keepFrom = Math.max(0, newOffset - offset);
+        int keepTo = (int) Math.min(ids.size(), newEnd - offset);
+        for (int i = 0; i < keepFrom; i++) {
+          patches.add(patch(null, "#" + ids.get(i), ElementPatchMode.Remove));
+        }
+        for (int i = keepTo; i < ids.size(); i++) {
+          patches.add(patch(null, "#" + ids.get(i), ElementPatchMode.Remove));
+        }
+        shown = new ArrayList<>(limit);
+        if (newOffset < offset) {
+          String above = load(newOffset, offset - newOffset, shown);
+          if (above != null) {
+            patches.add(patch(above, selector, ElementPatchMode.Prepend));
+          }
+        }
+        shown.addAll(ids.subList(keepFrom, keepTo));
+        if (newEnd > end) {
+          String below = load((int) end, (int) (newEnd - end), shown);
+          if (below != null) {
+            patches.add(patch(below, selector, ElementPatchMode.Append));
+          }
+        }
+      }
+      if (ids != null && newOffset == offset && shown.equals(ids)) {
+        return 0;
+      }
+      emitter.patchElements(channel, patches);
+      offset = newOffset;
+      ids = shown;
+      return patches.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Load and render rows, adding their ids to {@code loaded}.
+   *
+   * @return the rendered rows, or {@code null} if there are none
+   */
+  private String load(int from, int count, List<String> loaded) {
+    if (count <= 0) {
+      return null;
+    }
+    List<? extends T> rows = source.rows(from, count);
+    if (rows.isEmpty()) {
+      return null;
+    }
+    StringBuilder elements = new StringBuilder();
+    for (int i = 0; i < Math.min(rows.size(), count); i++) {
+      T row = rows.get(i);
+      loaded.add(id.apply(row));
+      if (i > 0) {
+        elements.append('\n');
+      }
+      elements.append(renderer.apply(row));
+    }
+    return elements.toString();
+  }
+
+  private static ElementPatch patch(String elements, String selector, ElementPatchMode mode) {
+    return new ElementPatch(elements, options -> options.selector(selector).mode(mode));
+  }
+
+  /**
+   * The range of rows a client shows, as reported in its signals.
+   *
+   * @param offset the position of the first row shown
+   * @param limit the number of rows shown
+   */
+  public record Viewport(int offset, int limit) {}
+}
@@ -1,19 +1,54 @@
 package io.github.akashgill3.datastar.autoconfigure;
 
 import io.github.akashgill3.datastar.Datastar;
+import io.github.akashgill3.datastar.DatastarMeterBinder;
+import io.github.akashgill3.datastar.DatastarSignals;
+import io.github.akashgill3.datastar.DatastarSignalsArgumentResolver;
+import io.github.akashgill3.datastar.EncodedFrameHttpMessageConverter;
+import java.util.List;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.BindableRuntimeHintsRegistrar;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.http.converter.HttpMessageConverters;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import tools.jackson.databind.json.JsonMapper;
 
 /**
  * Auto-configuration for Datastar.
  *
  * <p>This configuration automatically creates a {@link Datastar} bean when Spring Boot detects the
  * Datastar library on the classpath. The bean is configured using properties defined in {@link
- * DatastarProperties}.
+ * DatastarProperties}. Signals are read with the application's {@link JsonMapper} when one is
+ * available, so custom modules and features apply to Datastar as well.
+ *
+ * <p>In servlet web applications, a {@link DatastarSignalsArgumentResolver} is registered so that
+ * controller parameters annotated with {@link DatastarSignals} are bound automatically, and an
+ * {@link EncodedFrameHttpMessageConverter} writes encoded frames sent through emitters.
+ *
+ * <p>Open emitters are closed gracefully when the application context stops, see {@link
+ * Datastar#shutdown()}.
+ *
+ * <p>When Micrometer is on the classpath, emitter statistics are published through a {@link
+ * DatastarMeterBinder}.
+ *
+ * <p>For AOT processing and native images, binding hints for {@link DatastarProperties} are
+ * registered with the configuration.
  *
  * <p>The configuration can be customized via application properties with the prefix {@code
  * datastar}, including max concurrent connections, and logging flag.
@@ -26,8 +61,10 @@ import org.springframework.context.annotation.Bean;
  *
  * @author Akash Gill
  */
-@AutoConfiguration
+@AutoConfiguration(
+    afterName = "org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration")
 @EnableConfigurationProperties(DatastarProperties.class)
+@ImportRuntimeHints(DatastarAutoConfiguration.DatastarAutoConfigurationRuntimeHints.class)
 public class DatastarAutoConfiguration {
 
   private static final Logger log = LoggerFactory.getLogger(DatastarAutoConfiguration.class);
@@ -39,12 +76,112 @@ public class DatastarAutoConfiguration {
    * application context.
    *
    * @param properties the Datastar configuration properties
+   * @param jsonMapper the application's JSON mapper, if any
    * @return configured Datastar instance
    */
   @Bean
   @ConditionalOnMissingBean
-  public Datastar datastar(DatastarProperties properties) {
+  public Datastar datastar(DatastarProperties properties, ObjectProvider<JsonMapper> jsonMapper) {
     log.info("Configuring Datastar with enableLogging: {}", properties.enableLogging());
-    return new Datastar(properties);
+    JsonMapper mapper = jsonMapper.getIfAvailable();
+    return mapper != null ? new Datastar(properties, mapper) : new Datastar(properties);
+  }
+
+  /**
+   * Closes open emitters gracefully when the application context stops.
+   *
+   * @param datastar the Datastar instance whose emitters to close
+   * @return the lifecycle bean
+   */
+  @Bean
+  @ConditionalOnMissingBean
+  DatastarShutdownLifecycle datastarShutdownLifecycle(Datastar datastar) {
+    return new DatastarShutdownLifecycle(datastar);
+  }
+
+  /** Spring MVC integration, only active in servlet web applications. */
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+  static class DatastarWebMvcConfiguration {
+
+    /**
+     * Creates the resolver for {@link DatastarSignals} parameters.
+     *
+     * @param datastar the Datastar instance used to read signals
+     * @return the argument resolver
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    DatastarSignalsArgumentResolver datastarSignalsArgumentResolver(Datastar datastar) {
+      return new DatastarSignalsArgumentResolver(datastar);
+    }
+
+    /**
+     * Registers the {@link DatastarSignalsArgumentResolver} and the {@link
+     * EncodedFrameHttpMessageConverter} with Spring MVC.
+     *
+     * @param resolver the resolver to register
+     * @return a configurer adding the resolver
+     */
+    @Bean
+    WebMvcConfigurer datastarWebMvcConfigurer(DatastarSignalsArgumentResolver resolver) {
+      return new WebMvcConfigurer() {
+        @Override
+        public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+          resolvers.add(resolver);
+        }
+
+        @Override
+        public void configureMessageConverters(HttpMessageConverters.ServerBuilder builder) {
+          builder.addCustomConverter(new EncodedFrameHttpMessageConverter());
+        }
+      };
+    }
+
+    /**
+     * Resolves the signal readers of all mapped handlers once the handler mappings are ready, so
+     * the first request does not pay for it.
+     *
+     * @param resolver the resolver to prepare
+     * @param handlerMappings the application's request mappings
+     * @return the initializer
+     */
+    @Bean
+    SmartInitializingSingleton datastarSignalsReaderInitializer(
+        DatastarSignalsArgumentResolver resolver,
+        ObjectProvider<RequestMappingHandlerMapping> handlerMappings) {
+      return () ->
+          handlerMappings
+              .orderedStream()
+              .forEach(mapping -> mapping.getHandlerMethods().values().forEach(resolver::prepare));
+    }
+  }
+
+  /** Micrometer integration, only active when Micrometer is on the classpath. */
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+  static class DatastarMetricsConfiguration {
+
+    /**
+     * Creates the binder publishing emitter statistics.
+     *
+     * @param datastar the Datastar instance to observe
+     * @return the meter binder
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    DatastarMeterBinder datastarMeterBinder(Datastar datastar) {
+      return new DatastarMeterBinder(datastar);
+    }
+  }
+
+  /** Registers binding hints for {@link DatastarProperties} and its groups. */
+  static class DatastarAutoConfigurationRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(@NonNull RuntimeHints hints, @Nullable ClassLoader classLoader) {
+      BindableRuntimeHintsRegistrar.forTypes(DatastarProperties.class)
+          .registerHints(hints, classLoader);
+    }
   }
 }
@@ -1,7 +1,10 @@
 package io.github.akashgill3.datastar.autoconfigure;
 
+import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
 /**
@@ -15,11 +18,476 @@ import org.springframework.validation.annotation.Validated;
  *
  * <pre>
  * datastar.enable-logging=false
+ * datastar.signals.max-size=1MB
+ * datastar.rate-limit.events-per-second=30
+ * datastar.rate-limit.burst=10
+ * datastar.connections.max=10000
+ * datastar.connections.max-per-ip=20
+ * datastar.emitters.timeout=5m
+ * datastar.emitters.min-timeout=30s
+ * datastar.emitters.idle-timeout=2m
+ * datastar.emitters.probe-interval=15s
+ * datastar.shutdown.timeout=10s
+ * datastar.buffers.pooled=true
+ * datastar.writes.engine=non-blocking
+ * datastar.writes.high-water-mark=256KB
+ * datastar.limits.max-event-size=4MB
+ * datastar.limits.policy=chunk
  * </pre>
  *
+ * <p>Groups that are not configured fall back to their defaults. To create properties in code,
+ * set only the groups that differ with the {@link #builder() builder}:
+ *
+ * <pre>{@code
+ * DatastarProperties.builder().connections(new Connections(1000, -1, 20, null)).build();
+ * }</pre>
+ *
  * @param enableLogging whether to enable logging (default: false)
+ * @param signals settings for reading incoming signals
+ * @param rateLimit default per-emitter rate limit for outgoing events
+ * @param connections limits on concurrently open emitters
+ * @param emitters timeouts of emitters created by {@code Datastar#createEmitter()}
+ * @param shutdown how open emitters are closed when the application shuts down
+ * @param buffers pooling of the buffers outgoing frames are encoded into
+ * @param writes how events are written to the response
+ * @param limits byte budgets of outgoing events
  * @author Akash Gill
  */
 @Validated
 @ConfigurationProperties(prefix = "datastar")
-public record DatastarProperties(@DefaultValue("false") boolean enableLogging) {}
+public record DatastarProperties(
+    @DefaultValue("false") boolean enableLogging,
+    @DefaultValue Signals signals,
+    @DefaultValue RateLimit rateLimit,
+    @DefaultValue Connections connections,
+    @DefaultValue Emitters emitters,
+    @DefaultValue Shutdown shutdown,
+    @DefaultValue Buffers buffers,
+    @DefaultValue Writes writes,
+    @DefaultValue Limits limits) {
+
+  @ConstructorBinding
+  public DatastarProperties {
+    if (signals == null) {
+      signals = new Signals(null);
+    }
+    if (rateLimit == null) {
+      rateLimit = new RateLimit(0, 0);
+    }
+    if (connections == null) {
+      connections = new Connections(-1, -1, -1, null);
+    }
+    if (emitters == null) {
+      emitters = new Emitters(null, null, null, null, null);
+    }
+    if (shutdown == null) {
+      shutdown = new Shutdown(null, null);
+    }
+    if (buffers == null) {
+      buffers = new Buffers(false, null);
+    }
+    if (writes == null) {
+      writes = new Writes(null, null, null);
+    }
+    if (limits == null) {
+      limits = new Limits(null, null, null);
+    }
+  }
+
+  /**
+   * Creates properties with the given logging flag and defaults for everything else.
+   *
+   * @param enableLogging whether to enable logging
+   */
+  public DatastarProperties(boolean enableLogging) {
+    this(enableLogging, null, null, null, null, null, null, null, null);
+  }
+
+  /**
+   * Returns a builder starting from the defaults, for creating properties in code rather than
+   * binding them.
+   *
+   * @return the builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Builds {@link DatastarProperties} group by group. Groups that are not set, or set to {@code
+   * null}, fall back to their defaults.
+   */
+  public static final class Builder {
+
+    private boolean enableLogging;
+    private Signals signals;
+    private RateLimit rateLimit;
+    private Connections connections;
+    private Emitters emitters;
+    private Shutdown shutdown;
+    private Buffers buffers;
+    private Writes writes;
+    private Limits limits;
+
+    private Builder() {}
+
+    public Builder enableLogging(boolean enableLogging) {
+      this.enableLogging = enableLogging;
+      return this;
+    }
+
+    public Builder signals(Signals signals) {
+      this.signals = signals;
+      return this;
+    }
+
+    public Builder rateLimit(RateLimit rateLimit) {
+      this.rateLimit = rateLimit;
+      return this;
+    }
+
+    public Builder connections(Connections connections) {
+      this.connections = connections;
+      return this;
+    }
+
+    public Builder emitters(Emitters emitters) {
+      this.emitters = emitters;
+      return this;
+    }
+
+    public Builder shutdown(Shutdown shutdown) {
+      this.shutdown = shutdown;
+      return this;
+    }
+
+    public Builder buffers(Buffers buffers) {
+      this.buffers = buffers;
+      return this;
+    }
+
+    public Builder writes(Writes writes) {
+      this.writes = writes;
+      return this;
+    }
+
+    public Builder limits(Limits limits) {
+      this.limits = limits;
+      return this;
+    }
+
+    /** Create the properties, with defaults for the groups not set. */
+    public DatastarProperties build() {
+      return new DatastarProperties(
+          enableLogging,
+          signals,
+          rateLimit,
+          connections,
+          emitters,
+          shutdown,
+          buffers,
+          writes,
+          limits);
+    }
+  }
+
+  /**
+   * Settings for reading signals sent by the browser.
+   *
+   * @param maxSize the maximum size of a signal payload, checked before parsing; a negative value
+   *     disables the limit (default: 1MB)
+   */
+  public record Signals(@DefaultValue("1MB") DataSize maxSize) {
+
+    public Signals {
+      if (maxSize == null) {
+        maxSize = DataSize.ofMegabytes(1);
+      }
+    }
+  }
+
+  /**
+   * Default rate limit applied to every emitter, see {@code DatastarSseEmitter#rateLimit}.
+   *
+   * <p>Events over the limit are coalesced and written together once a token becomes available.
+   *
+   * @param eventsPerSecond sustained events per second per emitter; {@code 0} disables rate
+   *     limiting (default: 0)
+   * @param burst events that may be written back to back before the limit applies; {@code 0} uses
+   *     {@code eventsPerSecond} rounded up (default: 0)
+   */
+  public record RateLimit(
+      @DefaultValue("0") double eventsPerSecond, @DefaultValue("0") int burst) {
+
+    public RateLimit {
+      if (eventsPerSecond < 0) {
+        throw new IllegalArgumentException("eventsPerSecond must be >= 0");
+      }
+      if (burst < 0) {
+        throw new IllegalArgumentException("burst must be >= 0");
+      }
+    }
+
+    /** Returns whether rate limiting is enabled. */
+    public boolean enabled() {
+      return eventsPerSecond > 0;
+    }
+
+    /** Returns the effective burst, resolving {@code 0} to {@code eventsPerSecond} rounded up. */
+    public int effectiveBurst() {
+      return burst > 0 ? burst : (int) Math.max(1, Math.ceil(eventsPerSecond));
+    }
+  }
+
+  /**
+   * Limits on concurrently open emitters, enforced by {@code Datastar#createEmitter}.
+   *
+   * <p>Requests over a limit are rejected with {@code 503 Service Unavailable} and a {@code
+   * Retry-After} header before a stream is opened. Per-user limits apply to authenticated requests
+   * and are keyed by principal name; per-IP limits are keyed by the remote address.
+   *
+   * @param max open emitters across all clients; {@code -1} for no limit (default: -1)
+   * @param maxPerUser open emitters per authenticated user; {@code -1} for no limit (default: -1)
+   * @param maxPerIp open emitters per remote address; {@code -1} for no limit (default: -1)
+   * @param retryAfter how long rejected clients should wait, randomly extended by up to the same
+   *     amount to spread reconnects (default: 5s)
+   */
+  public record Connections(
+      @DefaultValue("-1") int max,
+      @DefaultValue("-1") int maxPerUser,
+      @DefaultValue("-1") int maxPerIp,
+      @DefaultValue("5s") Duration retryAfter) {
+
+    public Connections {
+      if (max < -1 || maxPerUser < -1 || maxPerIp < -1) {
+        throw new IllegalArgumentException("connection limits must be >= 0, or -1 for no limit");
+      }
+      if (retryAfter == null) {
+        retryAfter = Duration.ofSeconds(5);
+      }
+    }
+
+    /** Returns whether any connection limit is configured. */
+    public boolean enabled() {
+      return max >= 0 || maxPerUser >= 0 || maxPerIp >= 0;
+    }
+  }
+
+  /**
+   * Timeouts and liveness probes of emitters created by {@code Datastar#createEmitter()}.
+   *
+   * <p>The timeout adapts to load: new emitters get {@code timeout} while the server is quiet,
+   * shrinking towards {@code minTimeout} as open emitters approach {@code datastar.connections.max}
+   * or the heap fills up. Emitters that have not written anything for {@code idleTimeout} are
+   * closed after a final {@code retry} hint, so the browser reconnects once it is active again.
+   *
+   * <p>Emitters that have not written anything for {@code probeInterval} get an SSE comment, so a
+   * client that has gone away is detected and its resources released without waiting for the next
+   * event.
+   *
+   * @param timeout timeout of new emitters while the server is quiet (default: 60s)
+   * @param minTimeout timeout of new emitters under full pressure; defaults to {@code timeout},
+   *     which disables adaptation
+   * @param idleTimeout how long an emitter may go without writing before it is closed; zero
+   *     disables closing idle emitters (default: 0)
+   * @param idleRetry reconnection delay sent to the browser when closing an idle emitter (default:
+   *     5s)
+   * @param probeInterval how long an emitter may go without writing before a liveness probe is
+   *     sent; zero disables probes (default: 0)
+   */
+  public record Emitters(
+      @DefaultValue("60s") Duration timeout,
+      Duration minTimeout,
+      @DefaultValue("0s") Duration idleTimeout,
+      @DefaultValue("5s") Duration idleRetry,
+      @DefaultValue("0s") Duration probeInterval) {
+
+    public Emitters {
+      if (timeout == null) {
+        timeout = Duration.ofSeconds(60);
+      }
+      if (minTimeout == null) {
+        minTimeout = timeout;
+      }
+      if (idleTimeout == null) {
+        idleTimeout = Duration.ZERO;
+      }
+      if (idleRetry == null) {
+        idleRetry = Duration.ofSeconds(5);
+      }
+      if (probeInterval == null) {
+        probeInterval = Duration.ZERO;
+      }
+      if (minTimeout.compareTo(timeout) > 0) {
+        throw new IllegalArgumentException("minTimeout must not be greater than timeout");
+      }
+      if (idleTimeout.isNegative() || probeInterval.isNegative()) {
+        throw new IllegalArgumentException("idleTimeout and probeInterval must not be negative");
+      }
+    }
+
+    /** Returns whether the timeout of new emitters adapts to load. */
+    public boolean adaptive() {
+      return minTimeout.compareTo(timeout) < 0;
+    }
+  }
+
+  /**
+   * Graceful shutdown of open emitters.
+   *
+   * <p>When the application context stops, coalesced events are written and every open emitter gets
+   * a final {@code retry} hint drawn at random from {@code [0, reconnectWindow]} before it is
+   * completed, so clients reconnect to the remaining instances spread over the window instead of
+   * all at once.
+   *
+   * @param timeout how long to wait for open emitters to close (default: 10s)
+   * @param reconnectWindow the window over which clients are told to reconnect (default: 10s)
+   */
+  public record Shutdown(
+      @DefaultValue("10s") Duration timeout, @DefaultValue("10s") Duration reconnectWindow) {
+
+    public Shutdown {
+      if (timeout == null) {
+        timeout = Duration.ofSeconds(10);
+      }
+      if (reconnectWindow == null) {
+        reconnectWindow = Duration.ofSeconds(10);
+      }
+      if (timeout.isNegative() || reconnectWindow.isNegative()) {
+        throw new IllegalArgumentException("timeout and reconnectWindow must not be negative");
+      }
+    }
+  }
+
+  /**
+   * Buffers that outgoing frames are encoded into.
+   *
+   * <p>When pooled, frames are encoded straight into direct buffers from a size-classed pool and
+   * written with the container's NIO path, instead of into a fresh byte array per frame that is
+   * copied again into the socket buffer. Frames larger than the largest size class are encoded
+   * into a heap buffer of their own.
+   *
+   * @param pooled whether to encode frames into pooled direct buffers (default: false)
+   * @param maxPooled upper bound on the memory held by idle pooled buffers (default: 32MB)
+   */
+  public record Buffers(
+      @DefaultValue("false") boolean pooled, @DefaultValue("32MB") DataSize maxPooled) {
+
+    public Buffers {
+      if (maxPooled == null) {
+        maxPooled = DataSize.ofMegabytes(32);
+      }
+      if (maxPooled.isNegative()) {
+        throw new IllegalArgumentException("maxPooled must not be negative");
+      }
+    }
+  }
+
+  /**
+   * How events are written to the response.
+   *
+   * <p>The {@link Engine#BLOCKING blocking} engine writes on the thread that sends the event, which
+   * waits while a slow client's socket buffer is full. The {@link Engine#NON_BLOCKING non-blocking}
+   * engine queues frames per emitter and writes them with Servlet async I/O only while the socket
+   * accepts data, so senders never wait on a client and the container's own threads finish the
+   * writes.
+   *
+   * <p>With the non-blocking engine, an emitter stops being writable once more than {@code
+   * highWaterMark} is queued, and becomes writable again once the queue is down to {@code
+   * lowWaterMark}, see {@code DatastarSseEmitter#isWritable()}.
+   *
+   * @param engine the write engine of emitters bound to a servlet response (default: blocking)
+   * @param highWaterMark queued bytes above which a non-blocking emitter is not writable (default:
+   *     64KB)
+   * @param lowWaterMark queued bytes at or below which it is writable again; defaults to half of
+   *     {@code highWaterMark}
+   */
+  public record Writes(
+      @DefaultValue("blocking") Engine engine,
+      @DefaultValue("64KB") DataSize highWaterMark,
+      DataSize lowWaterMark) {
+
+    public Writes {
+      if (engine == null) {
+        engine = Engine.BLOCKING;
+      }
+      if (highWaterMark == null) {
+        highWaterMark = DataSize.ofKilobytes(64);
+      }
+      if (lowWaterMark == null) {
+        lowWaterMark = DataSize.ofBytes(highWaterMark.toBytes() / 2);
+      }
+      if (lowWaterMark.isNegative() || lowWaterMark.compareTo(highWaterMark) > 0) {
+        throw new IllegalArgumentException(
+            "lowWaterMark must not be negative or greater than highWaterMark");
+      }
+    }
+
+    /** Write engines, see {@link Writes}. */
+    public enum Engine {
+      /** Write on the sending thread through {@code ResponseBodyEmitter}. */
+      BLOCKING,
+      /** Queue frames and write them when the servlet output stream is ready. */
+      NON_BLOCKING
+    }
+  }
+
+  /**
+   * Byte budgets of outgoing events, protecting the heap from runaway payloads.
+   *
+   * <p>The payload of an event (elements, signal JSON or script) is measured before any frame is
+   * formatted. It must fit in {@code maxEventSize}, and together with the bytes still queued for
+   * the emitter, see {@code DatastarSseEmitter#getQueuedBytes()}, in {@code maxEmitterSize}.
+   * Payloads over budget are handled according to {@code policy}, counted and logged. Both limits
+   * are off by default.
+   *
+   * <p>With the blocking engine, each write returns before the next event is measured, so nothing
+   * is queued and {@code maxEmitterSize} acts as a second {@code maxEventSize}. It only accounts for
+   * a backlog with {@link Writes.Engine#NON_BLOCKING}.
+   *
+   * @param maxEventSize the maximum size of one event's payload; a negative value disables the
+   *     limit (default: -1)
+   * @param maxEmitterSize the maximum bytes held for one emitter, queued bytes plus the new
+   *     payload; a negative value disables the limit (default: -1)
+   * @param policy what to do with payloads over budget (default: reject)
+   */
+  public record Limits(
+      @DefaultValue("-1B") DataSize maxEventSize,
+      @DefaultValue("-1B") DataSize maxEmitterSize,
+      @DefaultValue("reject") OversizedPolicy policy) {
+
+    public Limits {
+      if (maxEventSize == null) {
+        maxEventSize = DataSize.ofBytes(-1);
+      }
+      if (maxEmitterSize == null) {
+        maxEmitterSize = DataSize.ofBytes(-1);
+      }
+      if (policy == null) {
+        policy = OversizedPolicy.REJECT;
+      }
+    }
+
+    /** Returns whether any size limit is configured. */
+    public boolean enabled() {
+      return !maxEventSize.isNegative() || !maxEmitterSize.isNegative();
+    }
+
+    /** What happens to payloads over budget, see {@link Limits}. */
+    public enum OversizedPolicy {
+      /** Throw {@code EventTooLargeException} without writing anything. */
+      REJECT,
+      /**
+       * Send patch elements as chunks, see {@code PatchElementOptions#chunkSize(int)}, if every
+       * chunk fits in the budget. Chunks are cut between top-level elements, so a single element
+       * over budget is rejected, as is anything that cannot be chunked or is rate limited.
+       */
+      CHUNK,
+      /**
+       * Send only the leading patch elements that fit in the budget; reject what cannot be
+       * truncated.
+       */
+      TRUNCATE
+    }
+  }
+}
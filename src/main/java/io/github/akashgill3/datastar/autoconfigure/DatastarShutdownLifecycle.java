@@ -0,0 +1,64 @@
+package io.github.akashgill3.datastar.autoconfigure;
+
+import io.github.akashgill3.datastar.Datastar;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Closes all open Datastar emitters when the application context stops, see {@link
+ * Datastar#shutdown()}.
+ *
+ * <p>Runs before the web server's graceful shutdown, which would otherwise wait for the open
+ * streams until its own timeout and then cut them mid-write.
+ *
+ * @author Akash Gill
+ */
+class DatastarShutdownLifecycle implements SmartLifecycle {
+
+  /** Stops before the web server's graceful shutdown at {@code DEFAULT_PHASE - 1024}. */
+  static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 512;
+
+  private final Datastar datastar;
+
+  private volatile boolean running;
+
+  DatastarShutdownLifecycle(Datastar datastar) {
+    this.datastar = datastar;
+  }
+
+  @Override
+  public void start() {
+    running = true;
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    datastar.shutdown();
+  }
+
+  @Override
+  public void stop(Runnable callback) {
+    running = false;
+    // Drain off the caller so the lifecycle processor can stop other beans of this phase meanwhile.
+    Thread.ofVirtual()
+        .name("datastar-shutdown")
+        .start(
+            () -> {
+              try {
+                datastar.shutdown();
+              } finally {
+                callback.run();
+              }
+            });
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+}
@@ -0,0 +1,22 @@
+package io.github.akashgill3.datastar.events;
+
+/**
+ * The outbound priority of an event.
+ *
+ * <p>{@link #HIGH} events are written before {@link #NORMAL} events that are still waiting, either
+ * coalesced while over the rate limit or queued by the non-blocking write engine. Within a
+ * priority, events keep the order they were sent in, and a frame that is already partly written
+ * is always finished first. The blocking write engine writes every event as it is sent, so there
+ * is nothing to overtake.
+ *
+ * <p>Scripts, including console logging and navigation, default to {@link #HIGH}; element and
+ * signal patches default to {@link #NORMAL}.
+ *
+ * @author Akash Gill
+ */
+public enum EventPriority {
+  /** Overtakes waiting {@link #NORMAL} events, for navigation, scripts and errors. */
+  HIGH,
+  /** Written in send order, for element and signal patches. */
+  NORMAL
+}
@@ -18,6 +18,10 @@ import java.util.List;
  * <p>When {@link #autoRemove(boolean)} is set to {@code true}, the script tag is automatically
  * removed from the DOM after execution (Default: {@code true}).
  *
+ * <p>Scripts are sent with {@link EventPriority#HIGH} by default, so navigation and errors overtake
+ * bulk patches still waiting to be written. Use {@link #priority(EventPriority)} with {@link
+ * EventPriority#NORMAL} for scripts that must run after earlier patches.
+ *
  * <p>Typical usage:
  *
  * <pre>
@@ -35,6 +39,7 @@ public class ExecuteScriptOptions {
   private String eventId;
   private Long retryDuration;
   private boolean autoRemove = Consts.DEFAULT_EXECUTE_AUTO_REMOVE;
+  private EventPriority priority = Consts.DEFAULT_SCRIPT_PRIORITY;
   private final List<String> attributes = new ArrayList<>();
 
   public ExecuteScriptOptions eventId(String eventId) {
@@ -70,6 +75,11 @@ public class ExecuteScriptOptions {
     return this;
   }
 
+  public ExecuteScriptOptions priority(EventPriority priority) {
+    this.priority = priority;
+    return this;
+  }
+
   public String getEventId() {
     return eventId;
   }
@@ -85,4 +95,8 @@ public class ExecuteScriptOptions {
   public List<String> getAttributes() {
     return attributes;
   }
+
+  public EventPriority getPriority() {
+    return priority;
+  }
 }
@@ -6,7 +6,8 @@ import io.github.akashgill3.datastar.Consts;
  * Configuration options for {@code datastar-patch-elements} event.
  *
  * <p>These options control how a patch is applied (selector, patch mode, namespace,
- * useViewTransition) and how the event is delivered over SSE (event ID and retry duration).
+ * useViewTransition) and how the event is delivered over SSE (event ID, retry duration and
+ * outbound {@link EventPriority priority}).
  *
  * <p>Typical usage:
  *
@@ -29,6 +30,8 @@ public class PatchElementOptions {
   private ElementPatchMode mode = Consts.DEFAULT_ELEMENT_PATCH_MODE;
   private boolean useViewTransition = Consts.DEFAULT_ELEMENTS_USE_VIEW_TRANSITIONS;
   private Namespace namespace = Consts.DEFAULT_NAMESPACE;
+  private EventPriority priority = Consts.DEFAULT_PATCH_PRIORITY;
+  private int chunkSize = Consts.DEFAULT_ELEMENTS_CHUNK_SIZE;
 
   public PatchElementOptions eventId(String eventId) {
     this.eventId = eventId;
@@ -63,6 +66,35 @@ public class PatchElementOptions {
     return this;
   }
 
+  /**
+   * Split elements longer than {@code chunkSize} characters into several patches written one after
+   * the other, so the browser can render the first part while the rest is still being sent.
+   *
+   * <p>The content is cut between top-level elements, never inside one. With the {@code inner}
+   * mode, the first chunk replaces the content of the selector and the others are appended to it.
+   * With the {@code outer} mode, the elements must be a single root element, identified by the
+   * selector or its id: the first patch replaces it with the start of its content and the rest is
+   * appended into it. With the {@code append} mode, every chunk is appended. Other modes, and
+   * content that cannot be cut safely, are sent whole. The event id and retry duration go with the
+   * first patch.
+   *
+   * @param chunkSize the maximum characters of elements per patch, {@code 0} to never split
+   * @return these options
+   * @throws IllegalArgumentException if {@code chunkSize} is negative
+   */
+  public PatchElementOptions chunkSize(int chunkSize) {
+    if (chunkSize < 0) {
+      throw new IllegalArgumentException("chunkSize must be >= 0");
+    }
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  public PatchElementOptions priority(EventPriority priority) {
+    this.priority = priority;
+    return this;
+  }
+
   public String getEventId() {
     return eventId;
   }
@@ -86,4 +118,12 @@ public class PatchElementOptions {
   public Namespace getNamespace() {
     return namespace;
   }
+
+  public EventPriority getPriority() {
+    return priority;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
 }
@@ -6,7 +6,8 @@ import io.github.akashgill3.datastar.Consts;
  * Options for {@code 'datastar-patch-signals'} event.
  *
  * <p>This class provides configuration options for signal patch events, controlling SSE delivery
- * (event id and retry duration) and how the incoming signal payload is applied.
+ * (event id, retry duration and outbound {@link EventPriority priority}) and how the incoming
+ * signal payload is applied.
  *
  * <p>When {@link #isOnlyIfMissing()} returns {@code true}, the patch is applied conditionally:
  * signals are only set if they do not already exist on the client.
@@ -26,6 +27,7 @@ public class PatchSignalOptions {
   private String eventId;
   private Long retryDuration = Consts.DEFAULT_SSE_RETRY_DURATION_MS;
   private boolean onlyIfMissing = Consts.DEFAULT_PATCH_SIGNAL_ONLY_IF_MISSING;
+  private EventPriority priority = Consts.DEFAULT_PATCH_PRIORITY;
 
   public PatchSignalOptions eventId(String eventId) {
     this.eventId = eventId;
@@ -45,6 +47,11 @@ public class PatchSignalOptions {
     return this;
   }
 
+  public PatchSignalOptions priority(EventPriority priority) {
+    this.priority = priority;
+    return this;
+  }
+
   public String getEventId() {
     return eventId;
   }
@@ -56,4 +63,8 @@ public class PatchSignalOptions {
   public boolean isOnlyIfMissing() {
     return onlyIfMissing;
   }
+
+  public EventPriority getPriority() {
+    return priority;
+  }
 }
@@ -0,0 +1,147 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+class AdmissionControlTest {
+
+  @Test
+  void acquire_overGlobalLimit_shouldRejectUntilReleased() {
+    AdmissionControl admission = admission(2, -1, -1);
+    Runnable first = admission.acquire(null);
+    admission.acquire(null);
+
+    ConnectionLimitExceededException ex =
+        assertThrows(ConnectionLimitExceededException.class, () -> admission.acquire(null));
+    assertEquals("global", ex.getLimit());
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+    assertEquals(1, admission.rejected());
+
+    first.run();
+    assertDoesNotThrow(() -> admission.acquire(null));
+    assertEquals(2, admission.active());
+  }
+
+  @Test
+  void release_runTwice_shouldReleaseOnce() {
+    AdmissionControl admission = admission(1, -1, -1);
+    Runnable slot = admission.acquire(null);
+    slot.run();
+    slot.run();
+
+    assertEquals(0, admission.active());
+    admission.acquire(null);
+    assertThrows(ConnectionLimitExceededException.class, () -> admission.acquire(null));
+  }
+
+  @Test
+  void acquire_overPerIpLimit_shouldOnlyRejectThatAddress() {
+    AdmissionControl admission = admission(-1, -1, 1);
+    admission.acquire(request("10.0.0.1", null));
+
+    ConnectionLimitExceededException ex =
+        assertThrows(
+            ConnectionLimitExceededException.class,
+            () -> admission.acquire(request("10.0.0.1", null)));
+    assertEquals("ip", ex.getLimit());
+    assertDoesNotThrow(() -> admission.acquire(request("10.0.0.2", null)));
+    assertEquals(2, admission.active());
+  }
+
+  @Test
+  void acquire_overPerUserLimit_shouldRejectAndReleaseOtherSlots() {
+    AdmissionControl admission = admission(2, 1, 5);
+    admission.acquire(request("10.0.0.1", "alice"));
+
+    ConnectionLimitExceededException ex =
+        assertThrows(
+            ConnectionLimitExceededException.class,
+            () -> admission.acquire(request("10.0.0.2", "alice")));
+    assertEquals("user", ex.getLimit());
+    assertEquals(1, admission.active());
+    assertDoesNotThrow(() -> admission.acquire(request("10.0.0.1", null)));
+  }
+
+  @Test
+  void acquire_perUserLimit_shouldIgnoreAnonymousRequests() {
+    AdmissionControl admission = admission(-1, 0, -1);
+    assertDoesNotThrow(() -> admission.acquire(request("10.0.0.1", null)));
+    assertThrows(
+        ConnectionLimitExceededException.class,
+        () -> admission.acquire(request("10.0.0.1", "alice")));
+  }
+
+  @Test
+  void rejection_shouldCarryJitteredRetryAfter() {
+    AdmissionControl admission = admission(0, -1, -1);
+    ConnectionLimitExceededException ex =
+        assertThrows(ConnectionLimitExceededException.class, () -> admission.acquire(null));
+
+    assertTrue(ex.getRetryAfter().compareTo(Duration.ofSeconds(2)) >= 0);
+    assertTrue(ex.getRetryAfter().compareTo(Duration.ofSeconds(4)) <= 0);
+    long header = Long.parseLong(ex.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    assertTrue(header >= 2 && header <= 4);
+  }
+
+  @Test
+  void acquire_concurrently_shouldNeverExceedLimit() throws Exception {
+    AdmissionControl admission = admission(50, -1, 3);
+    List<Runnable> slots = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(1);
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      List<Future<Runnable>> futures = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+        String ip = "10.0.0." + (i % 40);
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  try {
+                    return admission.acquire(request(ip, null));
+                  } catch (ConnectionLimitExceededException ex) {
+                    return null;
+                  }
+                }));
+      }
+      start.countDown();
+      for (var future : futures) {
+        if (future.get() != null) {
+          slots.add(future.get());
+        }
+      }
+    }
+
+    // A request rejected per IP briefly holds a global slot, so fewer than 50 may get through.
+    assertTrue(slots.size() > 0 && slots.size() <= 50);
+    assertEquals(slots.size(), admission.active());
+    assertEquals(500 - slots.size(), admission.rejected());
+    slots.forEach(Runnable::run);
+    assertEquals(0, admission.active());
+  }
+
+  private static AdmissionControl admission(int max, int maxPerUser, int maxPerIp) {
+    return new AdmissionControl(
+        new DatastarProperties.Connections(max, maxPerUser, maxPerIp, Duration.ofSeconds(2)));
+  }
+
+  private static MockHttpServletRequest request(String ip, String user) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/sse");
+    request.setRemoteAddr(ip);
+    if (user != null) {
+      request.setUserPrincipal(() -> user);
+    }
+    return request;
+  }
+}
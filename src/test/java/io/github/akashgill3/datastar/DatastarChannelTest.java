@@ -0,0 +1,119 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import io.github.akashgill3.datastar.events.ElementPatchMode;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+class DatastarChannelTest {
+
+  private DatastarSseEmitter emitter;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    emitter = spy(new DatastarSseEmitter(new DatastarProperties(false)));
+    doNothing().when((ResponseBodyEmitter) emitter).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void channelEvents_shouldBeWrittenThroughTheEmitter() throws IOException {
+    DatastarChannel chat = emitter.openChannel("chat");
+
+    chat.patchElements("<div id=\"chat\">hi</div>").patchSignals("{\"unread\":1}");
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq("event: datastar-patch-elements\ndata: elements <div id=\"chat\">hi</div>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq("event: datastar-patch-signals\ndata: signals {\"unread\":1}\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    assertSame(emitter, chat.getEmitter());
+    assertSame(chat, emitter.getChannel("chat"));
+  }
+
+  @Test
+  void rateLimit_shouldCoalesceOnlyTheLimitedChannel() throws IOException {
+    DatastarChannel prices = emitter.openChannel("prices").rateLimit(0.001, 1);
+    DatastarChannel alerts = emitter.openChannel("alerts");
+
+    prices.patchElements("<div id=\"price\">1</div>");
+    prices.patchElements("<div id=\"price\">2</div>");
+    prices.patchElements("<div id=\"price\">3</div>");
+    alerts.patchElements("<div id=\"alert\">a</div>");
+    alerts.patchElements("<div id=\"alert\">b</div>");
+
+    verify((ResponseBodyEmitter) emitter, times(3)).send(any(), any(MediaType.class));
+    assertEquals(1, prices.getSuppressedEventCount());
+    assertEquals(0, alerts.getSuppressedEventCount());
+    assertEquals(0, emitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void close_shouldWriteCoalescedEventsAndLeaveTheEmitterOpen() throws IOException {
+    DatastarChannel log = emitter.openChannel("log").rateLimit(0.001, 1);
+    AtomicInteger closed = new AtomicInteger();
+    log.onClose(closed::incrementAndGet);
+    log.patchSignals("{\"sent\":true}");
+    log.patchElements("<li>1</li>", o -> o.selector("#log").mode(ElementPatchMode.Append));
+
+    log.close();
+    log.close();
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq("event: datastar-patch-elements\ndata: selector #log\ndata: mode append\n"
+                + "data: elements <li>1</li>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    assertEquals(1, closed.get());
+    assertFalse(log.isOpen());
+    assertNull(emitter.getChannel("log"));
+    assertThrows(IllegalStateException.class, () -> log.patchElements("<div id=\"a\"></div>"));
+    assertFalse(emitter.isCleanedUp());
+    emitter.patchElements("<div id=\"a\"></div>");
+    assertTrue(emitter.openChannel("log").isOpen());
+  }
+
+  @Test
+  void emitterCompletion_shouldCloseEveryChannelOnce() {
+    DatastarChannel first = emitter.openChannel("first");
+    DatastarChannel second = emitter.openChannel("second");
+    AtomicInteger closed = new AtomicInteger();
+    first.onClose(closed::incrementAndGet);
+    second.onClose(closed::incrementAndGet);
+
+    emitter.complete();
+    first.close();
+
+    assertEquals(2, closed.get());
+    assertFalse(first.isOpen());
+    assertFalse(second.isOpen());
+    assertNull(emitter.getChannel("first"));
+  }
+
+  @Test
+  void openChannel_afterCleanup_shouldReturnAClosedChannel() {
+    emitter.complete();
+    AtomicInteger closed = new AtomicInteger();
+
+    DatastarChannel late = emitter.openChannel("late").onClose(closed::incrementAndGet);
+
+    assertFalse(late.isOpen());
+    assertEquals(1, closed.get());
+  }
+
+  @Test
+  void openChannel_withOpenName_shouldThrow() {
+    emitter.openChannel("chat");
+
+    assertThrows(IllegalStateException.class, () -> emitter.openChannel("chat"));
+  }
+}
@@ -0,0 +1,33 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class DatastarMeterBinderTest {
+
+  @Test
+  void bindTo_shouldPublishEmitterStatistics() {
+    Datastar datastar =
+        new Datastar(
+            DatastarProperties.builder()
+                .connections(new DatastarProperties.Connections(1, -1, -1, null))
+                .build());
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    new DatastarMeterBinder(datastar).bindTo(registry);
+
+    datastar.createEmitter();
+    assertThrows(ConnectionLimitExceededException.class, datastar::createEmitter);
+
+    assertEquals(1.0, registry.get("datastar.emitters.active").gauge().value());
+    assertEquals(1.0, registry.get("datastar.emitters.rejected").functionCounter().count());
+    assertEquals(0.0, registry.get("datastar.emitters.idle.closed").functionCounter().count());
+    assertEquals(0.0, registry.get("datastar.events.suppressed").functionCounter().count());
+    assertEquals(0.0, registry.get("datastar.events.oversized").functionCounter().count());
+    assertEquals(
+        60.0, registry.get("datastar.emitters.timeout").timeGauge().value(TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,69 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.generate.ClassNameGenerator;
+import org.springframework.aot.generate.DefaultGenerationContext;
+import org.springframework.aot.generate.InMemoryGeneratedFiles;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeHint;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.context.aot.ApplicationContextAotGenerator;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.javapoet.ClassName;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+class DatastarSignalsAotProcessorTest {
+
+  @Test
+  void processAheadOfTime_shouldRegisterBindingHintsForSignalTypes() {
+    RuntimeHints hints = processAheadOfTime(SearchController.class);
+
+    assertTrue(RuntimeHintsPredicates.reflection().onType(SearchSignals.class).test(hints));
+    assertTrue(RuntimeHintsPredicates.reflection().onType(Filter.class).test(hints));
+    assertFalse(RuntimeHintsPredicates.reflection().onType(Unrelated.class).test(hints));
+  }
+
+  @Test
+  void processAheadOfTime_shouldRegisterLibraryHints() {
+    RuntimeHints hints = processAheadOfTime(SearchController.class);
+
+    assertTrue(hasField(hints, EncodedFrame.class, "refCount"));
+    assertTrue(hasField(hints, DatastarSseEmitter.class, "writableActions"));
+    assertTrue(hasField(hints, OnceActions.class, "actions"));
+    assertTrue(
+        RuntimeHintsPredicates.reflection().onType(WindowedList.Viewport.class).test(hints));
+  }
+
+  private static RuntimeHints processAheadOfTime(Class<?> beanClass) {
+    GenericApplicationContext context = new GenericApplicationContext();
+    context.registerBean(beanClass);
+    DefaultGenerationContext generationContext =
+        new DefaultGenerationContext(
+            new ClassNameGenerator(ClassName.get(DatastarSignalsAotProcessorTest.class)),
+            new InMemoryGeneratedFiles());
+    new ApplicationContextAotGenerator().processAheadOfTime(context, generationContext);
+    return generationContext.getRuntimeHints();
+  }
+
+  private static boolean hasField(RuntimeHints hints, Class<?> type, String field) {
+    TypeHint hint = hints.reflection().getTypeHint(type);
+    return hint != null && hint.fields().anyMatch(f -> f.getName().equals(field));
+  }
+
+  @RestController
+  static class SearchController {
+
+    @PostMapping("/search")
+    void search(@DatastarSignals SearchSignals signals, Unrelated unrelated) {}
+  }
+
+  record SearchSignals(String query, List<Filter> filters) {}
+
+  record Filter(String field, String value) {}
+
+  record Unrelated(String value) {}
+}
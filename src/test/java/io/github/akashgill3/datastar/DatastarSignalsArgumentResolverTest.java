@@ -0,0 +1,163 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+
+class DatastarSignalsArgumentResolverTest {
+
+  private Datastar datastar;
+  private DatastarSignalsArgumentResolver resolver;
+
+  @BeforeEach
+  void setUp() {
+    datastar = spy(new Datastar(new DatastarProperties(false)));
+    resolver = new DatastarSignalsArgumentResolver(datastar);
+  }
+
+  @Test
+  void supportsParameter_shouldOnlyAcceptAnnotatedParameters() throws Exception {
+    assertTrue(resolver.supportsParameter(parameter("handle", 0)));
+    assertFalse(resolver.supportsParameter(parameter("handle", 1)));
+  }
+
+  @Test
+  void resolveArgument_postRequest_shouldBindBody() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"value\":\"test\"}".getBytes());
+
+    Object result =
+        resolver.resolveArgument(
+            parameter("handle", 0), null, new ServletWebRequest(request), null);
+
+    assertEquals(new TestSignals("test"), result);
+  }
+
+  @Test
+  void resolveArgument_getRequest_shouldBindDatastarParam() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test");
+    request.setParameter(Consts.DATASTAR_KEY, "{\"value\":\"query\"}");
+
+    Object result =
+        resolver.resolveArgument(
+            parameter("handle", 0), null, new ServletWebRequest(request), null);
+
+    assertEquals(new TestSignals("query"), result);
+  }
+
+  @Test
+  void resolveArgument_genericParameter_shouldBindGenericType() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"items\":[\"a\",\"b\"]}".getBytes());
+
+    Object result =
+        resolver.resolveArgument(
+            parameter("generic", 0), null, new ServletWebRequest(request), null);
+
+    assertEquals(Map.of("items", List.of("a", "b")), result);
+  }
+
+  @Test
+  void prepare_shouldResolveReaderOnceAheadOfRequests() throws Exception {
+    Method method =
+        TestController.class.getDeclaredMethod("handle", TestSignals.class, String.class);
+    HandlerMethod handlerMethod = new HandlerMethod(new TestController(), method);
+    resolver.prepare(handlerMethod);
+    verify(datastar, times(1)).signalReader(any());
+
+    MethodParameter parameter = handlerMethod.getMethodParameters()[0];
+    for (int i = 0; i < 3; i++) {
+      MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+      request.setContent("{\"value\":\"test\"}".getBytes());
+      resolver.resolveArgument(parameter, null, new ServletWebRequest(request), null);
+    }
+
+    verify(datastar, times(1)).signalReader(any());
+  }
+
+  @Test
+  void resolveArgument_oversizedPayload_shouldBeRejected() throws Exception {
+    Datastar limited =
+        new Datastar(
+            DatastarProperties.builder()
+                .signals(new DatastarProperties.Signals(DataSize.ofBytes(4)))
+                .build());
+    DatastarSignalsArgumentResolver limitedResolver = new DatastarSignalsArgumentResolver(limited);
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"value\":\"test\"}".getBytes());
+
+    assertThrows(
+        SignalsTooLargeException.class,
+        () ->
+            limitedResolver.resolveArgument(
+                parameter("handle", 0), null, new ServletWebRequest(request), null));
+  }
+
+  @Test
+  void resolveArgument_withValidatedParameter_shouldRejectInvalidSignals() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"value\":\"\"}".getBytes());
+    ServletWebRequest webRequest = new ServletWebRequest(request);
+    WebDataBinderFactory binderFactory = mock(WebDataBinderFactory.class);
+    when(binderFactory.createBinder(eq(webRequest), any(), anyString()))
+        .thenAnswer(
+            invocation -> {
+              WebDataBinder binder = new WebDataBinder(invocation.getArgument(1));
+              binder.setValidator(new NonBlankValueValidator());
+              return binder;
+            });
+
+    assertThrows(
+        MethodArgumentNotValidException.class,
+        () -> resolver.resolveArgument(parameter("validated", 0), null, webRequest, binderFactory));
+  }
+
+  private static MethodParameter parameter(String methodName, int index) {
+    for (Method method : TestController.class.getDeclaredMethods()) {
+      if (method.getName().equals(methodName)) {
+        return new MethodParameter(method, index);
+      }
+    }
+    throw new IllegalArgumentException(methodName);
+  }
+
+  record TestSignals(String value) {}
+
+  static class TestController {
+    void handle(@DatastarSignals TestSignals signals, String other) {}
+
+    void generic(@DatastarSignals Map<String, List<String>> signals) {}
+
+    void validated(@DatastarSignals @Validated TestSignals signals) {}
+  }
+
+  static class NonBlankValueValidator implements org.springframework.validation.Validator {
+    @Override
+    public boolean supports(Class<?> clazz) {
+      return TestSignals.class.equals(clazz);
+    }
+
+    @Override
+    public void validate(Object target, org.springframework.validation.Errors errors) {
+      if (((TestSignals) target).value().isBlank()) {
+        errors.reject("blank", "value must not be blank");
+      }
+    }
+  }
+}
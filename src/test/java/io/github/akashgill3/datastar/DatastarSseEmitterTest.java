@@ -3,18 +3,34 @@ package io.github.akashgill3.datastar;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import io.github.akashgill3.datastar.DatastarSseEmitter.ElementPatch;
 import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties.Limits.OversizedPolicy;
 import io.github.akashgill3.datastar.events.ElementPatchMode;
 import io.github.akashgill3.datastar.events.Namespace;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
 
 @ExtendWith(MockitoExtension.class)
 class DatastarSseEmitterTest {
@@ -51,6 +67,24 @@ class DatastarSseEmitterTest {
     assertEquals(-1L, emitter.getTimeout());
   }
 
+  @Test
+  void constructor_withEqualProperties_shouldShareDefaultContext() {
+    EmitterContext context = EmitterContext.defaults(new DatastarProperties(false));
+
+    assertSame(context, EmitterContext.defaults(new DatastarProperties(false)));
+    assertSame(context, EmitterContext.defaults(null));
+    assertNotSame(context, EmitterContext.defaults(new DatastarProperties(true)));
+  }
+
+  @Test
+  void constructor_withOtherProperties_shouldNotKeepEarlierDefaultContexts() {
+    EmitterContext context = EmitterContext.defaults(new DatastarProperties(false));
+    EmitterContext other = EmitterContext.defaults(new DatastarProperties(true));
+
+    assertSame(other, EmitterContext.defaults(new DatastarProperties(true)));
+    assertNotSame(context, EmitterContext.defaults(new DatastarProperties(false)));
+  }
+
   @Test
   void patchElements_shouldSendCorrectSseWireFormat_withDefaults() throws IOException {
     DatastarSseEmitter spyEmitter = spy(emitter);
@@ -140,6 +174,99 @@ class DatastarSseEmitterTest {
     verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
   }
 
+  @Test
+  void patchElements_withChunkSizeInner_shouldAppendTheRestToTheSelector() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchElements(
+        "<li>1</li><li>2</li><li>3</li>",
+        o -> o.selector("#list").mode(ElementPatchMode.Inner).eventId("e1").chunkSize(20));
+
+    InOrder order = inOrder(spyEmitter);
+    order
+        .verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                id: e1
+                data: selector #list
+                data: mode inner
+                data: elements <li>1</li><li>2</li>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+    order
+        .verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                data: selector #list
+                data: mode append
+                data: elements <li>3</li>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+    verify((ResponseBodyEmitter) spyEmitter, times(2)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void patchElements_withChunkSizeOuter_shouldAppendTheRestIntoTheRoot() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchElements(
+        "<ul id=\"list\"><li>1</li><li>2</li><li>3</li></ul>", o -> o.chunkSize(20));
+
+    InOrder order = inOrder(spyEmitter);
+    order
+        .verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                data: elements <ul id="list"><li>1</li><li>2</li></ul>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+    order
+        .verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                data: selector #list
+                data: mode append
+                data: elements <li>3</li>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void patchElements_withChunkSizeAndOtherMode_shouldSendWhole() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchElements(
+        "<li>1</li><li>2</li>",
+        o -> o.selector("#first").mode(ElementPatchMode.Before).chunkSize(10));
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                data: selector #first
+                data: mode before
+                data: elements <li>1</li><li>2</li>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
   @Test
   void patchSignals_shouldSendCorrectSseWireFormat_withDefaults() throws IOException {
     DatastarSseEmitter spyEmitter = spy(emitter);
@@ -205,6 +332,214 @@ class DatastarSseEmitterTest {
         .send(eq("event: datastar-patch-signals\n\n"), eq(MediaType.TEXT_PLAIN));
   }
 
+  @Test
+  void patchSignals_withObject_shouldSerializeCompactJsonIntoSingleDataLine() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchSignals(new TestSignals("value", 2));
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-signals
+                data: signals {"name":"value","count":2}
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void patchSignals_withMap_shouldSerializeAndApplyOptions() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchSignals(
+        (Object) Map.of("user", Map.of("loggedIn", true)),
+        opts -> opts.eventId("s1").onlyIfMissing(true));
+
+    String expected =
+        """
+            event: datastar-patch-signals
+            id: s1
+            data: onlyIfMissing true
+            data: signals {"user":{"loggedIn":true}}
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void patchSignals_withStringAsObject_shouldBeTreatedAsJson() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchSignals((Object) "{\"a\":1}");
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-signals
+                data: signals {"a":1}
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void patchSignals_withObject_shouldIgnoreIndentationOfProvidedMapper() throws IOException {
+    JsonMapper indenting = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
+    DatastarSseEmitter spyEmitter =
+        spy(
+            new DatastarSseEmitter(
+                new EmitterContext(new DatastarProperties(false), new SignalWriters(indenting)),
+                60_000L));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchSignals(new TestSignals("value", 2));
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-signals
+                data: signals {"name":"value","count":2}
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void patchHtml_shouldWriteEscapedElementsIntoTheFrame() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchHtml(
+        html -> html.open("div").attr("id", "greeting").text("Hi <Tom>").close().raw("\n<hr>"),
+        opts -> opts.selector("#main").mode(ElementPatchMode.Inner));
+
+    String expected =
+        """
+            event: datastar-patch-elements
+            data: selector #main
+            data: mode inner
+            data: elements <div id="greeting">Hi &lt;Tom&gt;</div>
+            data: elements <hr>
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void patchHtml_withNothingWritten_shouldOmitElementsLine() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchHtml(html -> {}, opts -> opts.selector("#gone").mode(ElementPatchMode.Remove));
+
+    String expected =
+        """
+            event: datastar-patch-elements
+            data: selector #gone
+            data: mode remove
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void patchHtml_whileRateLimited_shouldCoalesceByElementId() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.patchHtml(html -> html.open("div").attr("id", "a").text(1));
+    spyEmitter.patchHtml(html -> html.open("div").attr("id", "a").text(2));
+    spyEmitter.complete();
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq("event: datastar-patch-elements\ndata: elements <div id=\"a\">2</div>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    assertEquals(1, spyEmitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void pooledBuffers_shouldSendFramesAsEncodedWrites() throws IOException {
+    DatastarProperties properties =
+        DatastarProperties.builder().buffers(new DatastarProperties.Buffers(true, null)).build();
+    DatastarSseEmitter spyEmitter = spy(new DatastarSseEmitter(properties));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchSignals("{\"a\":1}");
+
+    ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+    verify((ResponseBodyEmitter) spyEmitter).send(sent.capture(), eq(MediaType.TEXT_PLAIN));
+    EncodedFrame frame = ((EncodedFrame.Write) sent.getValue()).frame();
+    assertTrue(frame.isDirect());
+    assertEquals("event: datastar-patch-signals\ndata: signals {\"a\":1}\n\n", decode(frame));
+  }
+
+  @Test
+  void send_encodedFrame_shouldHoldAReferenceUntilWritten() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    EncodedFrame frame =
+        new Datastar(new DatastarProperties(false))
+            .encodeElements("<div id=\"a\">1</div>", options -> {});
+
+    spyEmitter.send(frame).send(frame);
+
+    assertEquals(3, frame.refCount());
+    ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+    verify((ResponseBodyEmitter) spyEmitter, times(2))
+        .send(sent.capture(), eq(MediaType.TEXT_PLAIN));
+    sent.getAllValues().forEach(write -> ((EncodedFrame.Write) write).release());
+    assertEquals(1, frame.refCount());
+    assertEquals(
+        "event: datastar-patch-elements\ndata: elements <div id=\"a\">1</div>\n\n",
+        decode(frame));
+  }
+
+  @Test
+  void send_encodedFrame_whileRateLimited_shouldCoalesceTheEvent() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+    Datastar datastar = new Datastar(new DatastarProperties(false));
+    EncodedFrame first = datastar.encodeSignals("{\"a\":1}", options -> {});
+    EncodedFrame second = datastar.encodeSignals("{\"b\":2}", options -> {});
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.send(first).send(second);
+    spyEmitter.complete();
+
+    assertEquals(1, first.refCount());
+    assertEquals(1, second.refCount());
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq("event: datastar-patch-signals\ndata: signals {\"a\":1,\"b\":2}\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void send_releasedFrame_shouldThrow() {
+    EncodedFrame frame =
+        new Datastar(new DatastarProperties(false)).encodeSignals("{}", options -> {});
+    frame.release();
+
+    assertThrows(IllegalStateException.class, () -> emitter.send(frame));
+  }
+
+  private static String decode(EncodedFrame frame) throws IOException {
+    java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+    frame.writeTo(out);
+    return out.toString(java.nio.charset.StandardCharsets.UTF_8);
+  }
+
   @Test
   void executeScript_shouldSendPatchElementsAppendToBody_withAutoRemoveByDefault()
       throws IOException {
@@ -373,6 +708,99 @@ class DatastarSseEmitterTest {
     verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
   }
 
+  @Test
+  void executeCompiledScript_shouldWriteTheFrameOfTheDynamicHelper() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    CompiledScript toLogin = Datastar.compileRedirect("/login");
+
+    spyEmitter.executeCompiledScript(toLogin);
+    spyEmitter.executeCompiledScript(toLogin);
+    spyEmitter.redirect("/login");
+
+    String expected =
+        "event: datastar-patch-elements\n"
+            + "data: selector body\n"
+            + "data: mode append\n"
+            + "data: elements <script data-effect=\"el.remove()\">"
+            + "setTimeout(() => window.location.href = \"/login\")"
+            + "</script>\n\n";
+    assertEquals(expected, toLogin.frame());
+    verify((ResponseBodyEmitter) spyEmitter, times(3))
+        .send(eq(expected), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void executeCompiledScript_withOptionsAndMultilineScript_shouldMatchDynamicFormat()
+      throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    String script = "const a = 1;\n\nconsole.log(a);";
+
+    spyEmitter.executeCompiledScript(
+        Datastar.compileScript(
+            script,
+            opts -> opts.eventId("s1").retryDuration(1000L).autoRemove(false).attribute("defer")));
+
+    String expected =
+        """
+            event: datastar-patch-elements
+            id: s1
+            data: selector body
+            data: mode append
+            data: elements <script defer>const a = 1;
+            data: elements console.log(a);</script>
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void executeCompiledScript_whileRateLimited_shouldCoalesceWithOtherScripts() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.executeCompiledScript(Datastar.compileConsoleLog("a"));
+    spyEmitter.consoleLog("b");
+    spyEmitter.complete();
+
+    String expected =
+        """
+            event: datastar-patch-elements
+            data: selector body
+            data: mode append
+            data: elements <script data-effect="el.remove()">console.log("a")</script>
+            data: elements <script data-effect="el.remove()">console.log("b")</script>
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void consoleLog_withScriptEndTag_shouldEscapeItInsteadOfRejecting() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.consoleLog("</script>\u2028done");
+
+    String expected =
+        "event: datastar-patch-elements\n"
+            + "data: selector body\n"
+            + "data: mode append\n"
+            + "data: elements <script data-effect=\"el.remove()\">"
+            + "console.log(\"\\u003C/script>\\u2028done\")"
+            + "</script>\n\n";
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void compileScript_withScriptTag_shouldThrowException() {
+    assertThrows(
+        IllegalArgumentException.class, () -> Datastar.compileScript("console.log('</script>');"));
+  }
+
   @Test
   void extendResponse_shouldSetCorrectHeaders() {
     when(mockResponse.getHeaders()).thenReturn(new org.springframework.http.HttpHeaders());
@@ -449,4 +877,649 @@ class DatastarSseEmitterTest {
             """;
     verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
   }
+
+  @Test
+  void rateLimit_shouldKeepLatestReplacingPatchPerSelector() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchElements("<div id=\"a\">1</div>");
+    spyEmitter.patchElements("<div id=\"a\">2</div>");
+    spyEmitter.patchElements("<div id=\"a\">3</div>");
+    verify((ResponseBodyEmitter) spyEmitter, times(1)).send(any(), any(MediaType.class));
+
+    spyEmitter.complete();
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq("event: datastar-patch-elements\ndata: elements <div id=\"a\">3</div>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    assertEquals(1, spyEmitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void rateLimit_shouldConcatenateAdjacentAppendsAndMergeAdjacentSignalsIntoOneWrite() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.patchElements("<li>1</li>", o -> o.selector("#log").mode(ElementPatchMode.Append));
+    spyEmitter.patchElements("<li>2</li>", o -> o.selector("#log").mode(ElementPatchMode.Append));
+    spyEmitter.patchSignals("{\"b\":{\"c\":1}}");
+    spyEmitter.patchSignals("{\"b\":{\"d\":2}}");
+    spyEmitter.complete();
+
+    String expected =
+        """
+            event: datastar-patch-elements
+            data: selector #log
+            data: mode append
+            data: elements <li>1</li>
+            data: elements <li>2</li>
+
+            event: datastar-patch-signals
+            data: signals {"b":{"c":1,"d":2}}
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+    verify((ResponseBodyEmitter) spyEmitter, times(2)).send(any(), any(MediaType.class));
+    assertEquals(2, spyEmitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void rateLimit_shouldOnlyMergeAdjacentPatchesAndKeepSendOrder() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.patchElements("<div id=\"a\">1</div>");
+    spyEmitter.patchElements("<div id=\"b\">1</div>");
+    spyEmitter.patchElements("<div id=\"a\">2</div>");
+    spyEmitter.complete();
+
+    String expected =
+        """
+            event: datastar-patch-elements
+            data: elements <div id="a">1</div>
+
+            event: datastar-patch-elements
+            data: elements <div id="b">1</div>
+
+            event: datastar-patch-elements
+            data: elements <div id="a">2</div>
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+    assertEquals(0, spyEmitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void rateLimit_replacingPatch_shouldKeepPendingAppendAndRemovePatches() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.patchElements("<li>1</li>", o -> o.selector("#log").mode(ElementPatchMode.Append));
+    spyEmitter.patchElements("", o -> o.selector("#log").mode(ElementPatchMode.Remove));
+    spyEmitter.patchElements("<ul id=\"log\"></ul>");
+    spyEmitter.complete();
+
+    String expected =
+        """
+            event: datastar-patch-elements
+            data: selector #log
+            data: mode append
+            data: elements <li>1</li>
+
+            event: datastar-patch-elements
+            data: selector #log
+            data: mode remove
+
+            event: datastar-patch-elements
+            data: elements <ul id="log"></ul>
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+    assertEquals(0, spyEmitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void rateLimit_shouldNotMergePatchesOfDifferentElementIds() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.patchElements("<div id=\"a\">1</div><div id=\"b\">1</div>");
+    spyEmitter.patchElements("<div id=\"a\">2</div>");
+    spyEmitter.patchElements("<p>no id</p>");
+    spyEmitter.patchElements("<p>no id either</p>");
+    spyEmitter.complete();
+
+    ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+    verify((ResponseBodyEmitter) spyEmitter, times(2))
+        .send(sent.capture(), eq(MediaType.TEXT_PLAIN));
+    String frame = (String) sent.getAllValues().get(1);
+    assertTrue(frame.contains("<div id=\"b\">1</div>"));
+    assertTrue(frame.contains("<p>no id</p>"));
+    assertTrue(frame.contains("<p>no id either</p>"));
+    assertEquals(0, spyEmitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void rateLimit_shouldMergePrependsWithLatestFirst() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.patchElements("<li>1</li>", o -> o.selector("#log").mode(ElementPatchMode.Prepend));
+    spyEmitter.patchElements("<li>2</li>", o -> o.selector("#log").mode(ElementPatchMode.Prepend));
+    spyEmitter.complete();
+
+    String expected =
+        """
+            event: datastar-patch-elements
+            data: selector #log
+            data: mode prepend
+            data: elements <li>2</li>
+            data: elements <li>1</li>
+
+            """;
+    verify((ResponseBodyEmitter) spyEmitter).send(eq(expected), eq(MediaType.TEXT_PLAIN));
+    assertEquals(1, spyEmitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void rateLimit_shouldWriteCoalescedScriptsBeforeCoalescedPatches() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    spyEmitter.patchSignals("{\"sent\":true}");
+    spyEmitter.patchElements("<li>1</li>", o -> o.selector("#log").mode(ElementPatchMode.Append));
+    spyEmitter.redirect("/next");
+    spyEmitter.complete();
+
+    String script =
+        "event: datastar-patch-elements\n"
+            + "data: selector body\n"
+            + "data: mode append\n"
+            + "data: elements <script data-effect=\"el.remove()\">"
+            + "setTimeout(() => window.location.href = \"/next\")"
+            + "</script>\n\n";
+    String patch =
+        """
+            event: datastar-patch-elements
+            data: selector #log
+            data: mode append
+            data: elements <li>1</li>
+
+            """;
+    InOrder inOrder = inOrder(spyEmitter);
+    inOrder.verify((ResponseBodyEmitter) spyEmitter).send(eq(script), eq(MediaType.TEXT_PLAIN));
+    inOrder.verify((ResponseBodyEmitter) spyEmitter).send(eq(patch), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void rateLimit_shouldWriteCoalescedEventsOnNextToken() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(20, 1);
+
+    spyEmitter.patchElements("<div id=\"a\">1</div>");
+    spyEmitter.patchElements("<div id=\"a\">2</div>");
+
+    verify((ResponseBodyEmitter) spyEmitter, timeout(2000))
+        .send(
+            eq("event: datastar-patch-elements\ndata: elements <div id=\"a\">2</div>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void rateLimit_disabling_shouldWritePendingEvents() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+    spyEmitter.patchElements("<div id=\"a\">1</div>");
+    spyEmitter.patchElements("<div id=\"b\">2</div>");
+
+    spyEmitter.rateLimit(0, 0);
+
+    verify((ResponseBodyEmitter) spyEmitter, times(2)).send(any(), any(MediaType.class));
+    assertEquals(0, spyEmitter.getSuppressedEventCount());
+  }
+
+  @Test
+  void rateLimit_fromProperties_shouldApplyToNewEmitters() throws IOException {
+    DatastarProperties properties =
+        DatastarProperties.builder().rateLimit(new DatastarProperties.RateLimit(0.001, 1)).build();
+    DatastarSseEmitter spyEmitter = spy(new DatastarSseEmitter(properties));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchElements("<div id=\"a\">1</div>");
+    spyEmitter.patchElements("<div id=\"a\">2</div>");
+
+    verify((ResponseBodyEmitter) spyEmitter, times(1)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_shouldRejectOversizedEventsBeforeWriting() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(10, OversizedPolicy.REJECT));
+
+    EventTooLargeException ex =
+        assertThrows(
+            EventTooLargeException.class, () -> spyEmitter.patchElements("<li>1</li><li>2</li>"));
+
+    assertEquals(20, ex.getSize());
+    assertEquals(10, ex.getMaxSize());
+    verify((ResponseBodyEmitter) spyEmitter, never()).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_shouldRejectABatchOverBudgetAsAWhole() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(15, OversizedPolicy.REJECT));
+    List<ElementPatch> patches =
+        List.of(
+            new ElementPatch("<li>1</li>", o -> o.selector("#list").mode(ElementPatchMode.Append)),
+            new ElementPatch("<li>2</li>", o -> o.selector("#list").mode(ElementPatchMode.Append)));
+
+    EventTooLargeException ex =
+        assertThrows(EventTooLargeException.class, () -> spyEmitter.patchElements(null, patches));
+
+    assertEquals(20, ex.getSize());
+    verify((ResponseBodyEmitter) spyEmitter, never()).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_whileRateLimited_shouldTakeOneTokenForATruncatedPatch() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(10, OversizedPolicy.TRUNCATE));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 2);
+
+    spyEmitter.patchElements(
+        "<li>1</li><li>2</li>", o -> o.selector("#list").mode(ElementPatchMode.Inner));
+    spyEmitter.patchElements("<li>3</li>", o -> o.selector("#list").mode(ElementPatchMode.Append));
+
+    verify((ResponseBodyEmitter) spyEmitter, times(2)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_whileRateLimited_shouldNotTakeATokenForARejectedPatch() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(10, OversizedPolicy.REJECT));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.rateLimit(0.001, 1);
+
+    assertThrows(
+        EventTooLargeException.class, () -> spyEmitter.patchElements("<li>1</li><li>2</li>"));
+    spyEmitter.patchElements("<li>1</li>");
+
+    verify((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_shouldRejectOversizedSignalObjectsBeforeWriting() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(10, OversizedPolicy.REJECT));
+
+    EventTooLargeException ex =
+        assertThrows(
+            EventTooLargeException.class,
+            () -> spyEmitter.patchSignals((Object) Map.of("message", "too long")));
+
+    assertEquals(22, ex.getSize());
+    verify((ResponseBodyEmitter) spyEmitter, never()).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_withTruncatePolicy_shouldApplyToHtmlPatches() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(10, OversizedPolicy.TRUNCATE));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchHtml(
+        html -> html.open("li").text("1").close().open("li").text("2").close(),
+        o -> o.selector("#list").mode(ElementPatchMode.Inner));
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                data: selector #list
+                data: mode inner
+                data: elements <li>1</li>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void limits_shouldRejectEncodedFramesOverBudget() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(20, OversizedPolicy.REJECT));
+    EncodedFrame frame = DatastarSseEmitter.encodeSignals(null, "{\"a\":1}", options -> {});
+
+    EventTooLargeException ex =
+        assertThrows(EventTooLargeException.class, () -> spyEmitter.send(frame));
+
+    assertEquals(frame.size(), ex.getSize());
+    assertEquals(1, frame.refCount());
+    verify((ResponseBodyEmitter) spyEmitter, never()).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_shouldMeasureUtf8Bytes() {
+    DatastarSseEmitter limited = limitedEmitter(8, OversizedPolicy.REJECT);
+
+    EventTooLargeException ex =
+        assertThrows(
+            EventTooLargeException.class,
+            () -> limited.patchSignals("\"\u00e9\u00e9\u00e9\u00e9\""));
+
+    assertEquals(10, ex.getSize());
+  }
+
+  @Test
+  void limits_withChunkPolicy_shouldSendOversizedElementsInChunks() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(20, OversizedPolicy.CHUNK));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchElements(
+        "<li>1</li><li>2</li><li>3</li>", o -> o.selector("#list").mode(ElementPatchMode.Inner));
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                data: selector #list
+                data: mode inner
+                data: elements <li>1</li><li>2</li>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                data: selector #list
+                data: mode append
+                data: elements <li>3</li>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void limits_withChunkPolicy_shouldRejectASingleElementOverBudget() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(20, OversizedPolicy.CHUNK));
+    String elements = "<div id=\"r\">" + "x".repeat(200) + "</div>";
+
+    EventTooLargeException ex =
+        assertThrows(EventTooLargeException.class, () -> spyEmitter.patchElements(elements));
+
+    assertEquals(elements.length(), ex.getSize());
+    verify((ResponseBodyEmitter) spyEmitter, never()).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_withChunkPolicy_shouldRejectWhenAnyChunkIsOverBudget() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(20, OversizedPolicy.CHUNK));
+
+    assertThrows(
+        EventTooLargeException.class,
+        () ->
+            spyEmitter.patchElements(
+                "<li>1</li><li>" + "x".repeat(30) + "</li>",
+                o -> o.selector("#list").mode(ElementPatchMode.Inner)));
+
+    verify((ResponseBodyEmitter) spyEmitter, never()).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void limits_withTruncatePolicy_shouldSendLeadingElementsThatFit() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(limitedEmitter(30, OversizedPolicy.TRUNCATE));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.patchElements("<ul id=\"list\"><li>1</li><li>2</li></ul>");
+
+    verify((ResponseBodyEmitter) spyEmitter)
+        .send(
+            eq(
+                """
+                event: datastar-patch-elements
+                data: elements <ul id="list"><li>1</li></ul>
+
+                """),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void limits_withChunkPolicy_shouldStillRejectOversizedScripts() {
+    DatastarSseEmitter limited = limitedEmitter(10, OversizedPolicy.CHUNK);
+
+    assertThrows(
+        EventTooLargeException.class, () -> limited.executeScript("console.log('too long')"));
+  }
+
+  @Test
+  void closeWithRetry_shouldSendRetryHintAndComplete() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+
+    spyEmitter.closeWithRetry(5_000L);
+
+    verify((ResponseBodyEmitter) spyEmitter).send(eq("retry: 5000\n\n"), eq(MediaType.TEXT_PLAIN));
+    verify(spyEmitter).complete();
+  }
+
+  @Test
+  void lastWriteNanos_shouldAdvanceOnWrite() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    long created = spyEmitter.lastWriteNanos();
+
+    spyEmitter.patchElements("<div>Hello</div>");
+
+    assertTrue(spyEmitter.lastWriteNanos() >= created);
+  }
+
+  @Test
+  void onCleanup_shouldRunOnceOnComplete() {
+    int[] runs = {0};
+    emitter.onCleanup(() -> runs[0]++);
+
+    emitter.complete();
+    emitter.completeWithError(new IOException("late"));
+
+    assertEquals(1, runs[0]);
+    assertTrue(emitter.isCleanedUp());
+  }
+
+  @Test
+  void onCleanup_afterCleanup_shouldRunImmediately() {
+    emitter.completeWithError(new IOException("Broken pipe"));
+    int[] runs = {0};
+
+    emitter.onCleanup(() -> runs[0]++);
+
+    assertEquals(1, runs[0]);
+  }
+
+  @Test
+  void onCleanup_failingAction_shouldNotSkipOthers() {
+    int[] runs = {0};
+    emitter.onCleanup(
+        () -> {
+          throw new IllegalStateException("boom");
+        });
+    emitter.onCleanup(() -> runs[0]++);
+
+    emitter.complete();
+
+    assertEquals(1, runs[0]);
+  }
+
+  @Test
+  void send_whenClientGone_shouldCleanUp() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doThrow(new IOException("Broken pipe"))
+        .when((ResponseBodyEmitter) spyEmitter)
+        .send(any(), any(MediaType.class));
+
+    assertThrows(IOException.class, () -> spyEmitter.patchElements("<div>Hello</div>"));
+
+    assertTrue(spyEmitter.isCleanedUp());
+  }
+
+  @Test
+  void probe_beforeBound_shouldNotWrite() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+
+    spyEmitter.probe(0);
+
+    verify((ResponseBodyEmitter) spyEmitter, never()).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void probe_whenQuiet_shouldWriteComment() throws IOException {
+    when(mockResponse.getHeaders()).thenReturn(new HttpHeaders());
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.extendResponse(mockResponse);
+
+    spyEmitter.probe(0);
+    spyEmitter.probe(Long.MAX_VALUE);
+
+    verify((ResponseBodyEmitter) spyEmitter, times(1)).send(eq(":\n\n"), eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void probe_whenClientGone_shouldCleanUp() throws IOException {
+    when(mockResponse.getHeaders()).thenReturn(new HttpHeaders());
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doThrow(new IOException("Broken pipe"))
+        .when((ResponseBodyEmitter) spyEmitter)
+        .send(any(), any(MediaType.class));
+    spyEmitter.extendResponse(mockResponse);
+
+    spyEmitter.probe(0);
+
+    assertTrue(spyEmitter.isCleanedUp());
+  }
+
+  @Test
+  void nonBlockingEngine_shouldQueueFramesOnTheWriterOnceBound() throws IOException {
+    DatastarProperties.Writes writes =
+        new DatastarProperties.Writes(DatastarProperties.Writes.Engine.NON_BLOCKING, null, null);
+    DatastarProperties properties = DatastarProperties.builder().writes(writes).build();
+    DatastarSseEmitter spyEmitter = spy(new DatastarSseEmitter(properties));
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    spyEmitter.extendResponse(new ServletServerHttpResponse(new MockHttpServletResponse()));
+
+    spyEmitter.patchSignals("{\"a\":1}");
+
+    ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+    verify((ResponseBodyEmitter) spyEmitter).send(sent.capture(), eq(MediaType.TEXT_PLAIN));
+    NonBlockingWriter writer = assertInstanceOf(NonBlockingWriter.class, sent.getValue());
+    assertEquals(
+        "event: datastar-patch-signals\ndata: signals {\"a\":1}\n\n".length(),
+        writer.queuedBytes());
+  }
+
+  @Test
+  void isWritable_whenIdle_shouldBeTrueWithNothingQueued() {
+    assertTrue(emitter.isWritable());
+    assertEquals(0, emitter.getQueuedBytes());
+  }
+
+  @Test
+  void isWritable_whileBlockingWriteInProgress_shouldBeFalse() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    AtomicInteger queuedDuringWrite = new AtomicInteger(-1);
+    AtomicInteger ranDuringWrite = new AtomicInteger();
+    AtomicInteger ran = new AtomicInteger();
+    doAnswer(
+            invocation -> {
+              assertFalse(spyEmitter.isWritable());
+              queuedDuringWrite.set((int) spyEmitter.getQueuedBytes());
+              spyEmitter.onWritable(ran::incrementAndGet);
+              ranDuringWrite.set(ran.get());
+              return null;
+            })
+        .when((ResponseBodyEmitter) spyEmitter)
+        .send(any(), any(MediaType.class));
+
+    spyEmitter.patchSignals("{\"a\":1}");
+
+    assertEquals(
+        "event: datastar-patch-signals\ndata: signals {\"a\":1}\n\n".length(),
+        queuedDuringWrite.get());
+    assertEquals(0, ranDuringWrite.get());
+    assertEquals(1, ran.get());
+    assertTrue(spyEmitter.isWritable());
+  }
+
+  @Test
+  void onWritable_whenWritable_shouldRunRightAwayAndOnlyOnce() throws IOException {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    doNothing().when((ResponseBodyEmitter) spyEmitter).send(any(), any(MediaType.class));
+    AtomicInteger ran = new AtomicInteger();
+
+    spyEmitter.onWritable(ran::incrementAndGet);
+    spyEmitter.patchSignals("{\"a\":1}");
+
+    assertEquals(1, ran.get());
+  }
+
+  @Test
+  void awaitWritable_onTimeout_shouldRemoveItsAction() throws Exception {
+    DatastarSseEmitter spyEmitter = spy(emitter);
+    Field actions = DatastarSseEmitter.class.getDeclaredField("writableActions");
+    actions.setAccessible(true);
+    AtomicInteger pendingDuringWrite = new AtomicInteger(-1);
+    AtomicInteger ran = new AtomicInteger();
+    doAnswer(
+            invocation -> {
+              for (int i = 0; i < 100; i++) {
+                assertFalse(spyEmitter.awaitWritable(Duration.ofNanos(1)));
+              }
+              spyEmitter.onWritable(ran::incrementAndGet);
+              pendingDuringWrite.set(((Queue<?>) actions.get(spyEmitter)).size());
+              return null;
+            })
+        .when((ResponseBodyEmitter) spyEmitter)
+        .send(any(), any(MediaType.class));
+
+    spyEmitter.patchSignals("{\"a\":1}");
+
+    assertEquals(1, pendingDuringWrite.get());
+    assertEquals(1, ran.get());
+    assertTrue(((Queue<?>) actions.get(spyEmitter)).isEmpty());
+  }
+
+  @Test
+  void awaitWritable_afterCompletion_shouldReturnFalseRightAway() throws InterruptedException {
+    AtomicInteger ran = new AtomicInteger();
+    emitter.complete();
+
+    assertFalse(emitter.isWritable());
+    assertFalse(emitter.awaitWritable(Duration.ofMinutes(1)));
+    emitter.onWritable(ran::incrementAndGet);
+    assertEquals(1, ran.get());
+  }
+
+  record TestSignals(String name, int count) {}
+
+  private static DatastarSseEmitter limitedEmitter(long maxEventSize, OversizedPolicy policy) {
+    return new DatastarSseEmitter(
+        DatastarProperties.builder()
+            .limits(
+                new DatastarProperties.Limits(
+                    DataSize.ofBytes(maxEventSize), DataSize.ofBytes(-1), policy))
+            .build());
+  }
 }
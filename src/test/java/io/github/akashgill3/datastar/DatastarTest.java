@@ -3,9 +3,16 @@ package io.github.akashgill3.datastar;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import io.github.akashgill3.datastar.ResponseBodyEmitterTestSupport.Client;
+import io.github.akashgill3.datastar.ResponseBodyEmitterTestSupport.Connection;
 import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,8 +20,17 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.DelegatingServletInputStream;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import tools.jackson.core.exc.StreamReadException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.exc.UnrecognizedPropertyException;
+import tools.jackson.databind.json.JsonMapper;
 
 @ExtendWith(MockitoExtension.class)
 class DatastarTest {
@@ -32,6 +48,20 @@ class DatastarTest {
   void createEmitter_shouldCreateEmitter() {
     DatastarSseEmitter emitter = datastar.createEmitter();
     assertNotNull(emitter);
+    assertEquals(60_000L, emitter.getTimeout());
+  }
+
+  @Test
+  void createEmitter_shouldUseConfiguredTimeout() {
+    Datastar configured =
+        new Datastar(
+            DatastarProperties.builder()
+                .emitters(
+                    new DatastarProperties.Emitters(Duration.ofMinutes(5), null, null, null, null))
+                .build());
+
+    assertEquals(300_000L, configured.createEmitter().getTimeout());
+    assertEquals(300_000L, configured.getEmitterTimeout());
   }
 
   @ParameterizedTest(name = "timeout={0}")
@@ -42,6 +72,160 @@ class DatastarTest {
     assertEquals(timeout, emitter.getTimeout());
   }
 
+  @Test
+  void createEmitter_overConnectionLimit_shouldRejectUntilEmitterCompletes() {
+    Datastar limited =
+        new Datastar(
+            DatastarProperties.builder()
+                .connections(new DatastarProperties.Connections(1, -1, -1, null))
+                .build());
+    DatastarSseEmitter emitter = limited.createEmitter();
+
+    assertThrows(ConnectionLimitExceededException.class, limited::createEmitter);
+    assertEquals(1, limited.getActiveEmitterCount());
+    assertEquals(1, limited.getRejectedEmitterCount());
+
+    emitter.complete();
+
+    assertEquals(0, limited.getActiveEmitterCount());
+    assertNotNull(limited.createEmitter(30_000L));
+  }
+
+  @Test
+  void createEmitter_completedWithError_shouldReleaseSlot() {
+    Datastar limited =
+        new Datastar(
+            DatastarProperties.builder()
+                .connections(new DatastarProperties.Connections(1, -1, -1, null))
+                .build());
+    limited.createEmitter().completeWithError(new IOException("Broken pipe"));
+
+    assertEquals(0, limited.getActiveEmitterCount());
+  }
+
+  @Test
+  void createEmitter_withPerIpLimit_shouldUseCurrentRequest() {
+    Datastar limited =
+        new Datastar(
+            DatastarProperties.builder()
+                .connections(new DatastarProperties.Connections(-1, -1, 1, null))
+                .build());
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/sse");
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    try {
+      limited.createEmitter();
+      assertThrows(ConnectionLimitExceededException.class, limited::createEmitter);
+
+      request.setRemoteAddr("10.0.0.2");
+      assertNotNull(limited.createEmitter());
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  @Test
+  void createEmitter_neverReturnedFromHandler_shouldReleaseSlotWhenRequestEnds() {
+    Datastar limited =
+        new Datastar(
+            DatastarProperties.builder()
+                .connections(new DatastarProperties.Connections(1, -1, -1, null))
+                .build());
+    ServletRequestAttributes attrs =
+        new ServletRequestAttributes(new MockHttpServletRequest("GET", "/sse"));
+    RequestContextHolder.setRequestAttributes(attrs);
+    try {
+      DatastarSseEmitter emitter = limited.createEmitter();
+      assertEquals(1, limited.getActiveEmitterCount());
+
+      attrs.requestCompleted();
+
+      assertEquals(0, limited.getActiveEmitterCount());
+      assertTrue(emitter.isCleanedUp());
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  @Test
+  void createEmitter_returnedFromHandler_shouldKeepSlotWhenRequestEnds() throws IOException {
+    Datastar limited =
+        new Datastar(
+            DatastarProperties.builder()
+                .connections(new DatastarProperties.Connections(1, -1, -1, null))
+                .build());
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/sse");
+    ServletRequestAttributes attrs = new ServletRequestAttributes(request);
+    RequestContextHolder.setRequestAttributes(attrs);
+    try {
+      DatastarSseEmitter emitter = limited.createEmitter();
+      ResponseBodyEmitterTestSupport.bind(emitter, Client.READING);
+      request.setAsyncStarted(true);
+
+      attrs.requestCompleted();
+
+      assertEquals(1, limited.getActiveEmitterCount());
+      assertFalse(emitter.isCleanedUp());
+      emitter.complete();
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  @Test
+  void shutdown_shouldFlushAndCloseEmittersWithRandomizedRetry() throws IOException {
+    Datastar draining =
+        new Datastar(
+            DatastarProperties.builder()
+                .rateLimit(new DatastarProperties.RateLimit(0.001, 1))
+                .shutdown(
+                    new DatastarProperties.Shutdown(Duration.ofSeconds(5), Duration.ofSeconds(8)))
+                .build());
+    List<Connection> connections = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      DatastarSseEmitter emitter = draining.createEmitter();
+      connections.add(ResponseBodyEmitterTestSupport.bind(emitter, Client.READING));
+      emitter.patchElements("<div id=\"a\">1</div>");
+      emitter.patchElements("<div id=\"a\">2</div>");
+    }
+
+    assertEquals(20, draining.shutdown());
+
+    assertEquals(0, draining.getActiveEmitterCount());
+    for (Connection connection : connections) {
+      List<Object> written = connection.written();
+      assertEquals(3, written.size());
+      assertEquals(
+          "event: datastar-patch-elements\ndata: elements <div id=\"a\">2</div>\n\n",
+          written.get(1));
+      String retry = (String) written.get(2);
+      assertTrue(retry.matches("retry: \\d+\n\n"), retry);
+      long millis = Long.parseLong(retry.substring(7, retry.length() - 2));
+      assertTrue(millis >= 0 && millis <= 8_000, retry);
+    }
+  }
+
+  @Test
+  void shutdown_withStalledClient_shouldReturnAfterTimeout() throws IOException {
+    Datastar draining =
+        new Datastar(
+            DatastarProperties.builder()
+                .shutdown(new DatastarProperties.Shutdown(Duration.ofMillis(200), Duration.ZERO))
+                .build());
+    DatastarSseEmitter reading = draining.createEmitter();
+    ResponseBodyEmitterTestSupport.bind(reading, Client.READING);
+    DatastarSseEmitter stalled = draining.createEmitter();
+    Connection stalledConnection = ResponseBodyEmitterTestSupport.bind(stalled, Client.STALLED);
+
+    long start = System.nanoTime();
+    int closed = draining.shutdown();
+
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+    assertEquals(1, closed);
+    assertTrue(reading.isCleanedUp());
+    assertFalse(stalled.isCleanedUp());
+    stalledConnection.resume();
+  }
+
   @Test
   void readSignals_getRequestWithNoDatastarParam_shouldReturnEmptyObject() throws IOException {
     when(mockRequest.getMethod()).thenReturn("GET");
@@ -68,7 +252,7 @@ class DatastarTest {
   void readSignals_getRequestWithDatastarParam_shouldParseJson() throws IOException {
     String jsonPayload = "{\"value\":\"test\"}";
     when(mockRequest.getMethod()).thenReturn("GET");
-    when(mockRequest.getParameter(Consts.DATASTAR_KEY)).thenReturn("%7B%22value%22%3A%22test%22%7D");
+    when(mockRequest.getParameter(Consts.DATASTAR_KEY)).thenReturn(jsonPayload);
 
     TestSignals result = datastar.readSignals(mockRequest, TestSignals.class);
     
@@ -76,6 +260,91 @@ class DatastarTest {
     assertEquals("test", result.value());
   }
 
+  @Test
+  void readSignals_getRequestWithPercentAndPlus_shouldNotDecodeTwice() throws IOException {
+    // The container has already decoded the parameter; decoding again would corrupt it.
+    when(mockRequest.getMethod()).thenReturn("GET");
+    when(mockRequest.getParameter(Consts.DATASTAR_KEY)).thenReturn("{\"value\":\"100%25 a+b\"}");
+
+    TestSignals result = datastar.readSignals(mockRequest, TestSignals.class);
+
+    assertEquals("100%25 a+b", result.value());
+  }
+
+  @Test
+  void readSignals_getRequestExceedingMaxSize_shouldFailBeforeParsing() {
+    Datastar limited = limitedDatastar(8);
+    when(mockRequest.getMethod()).thenReturn("GET");
+    when(mockRequest.getParameter(Consts.DATASTAR_KEY)).thenReturn("{\"value\":\"test\"}");
+
+    SignalsTooLargeException ex =
+        assertThrows(
+            SignalsTooLargeException.class,
+            () -> limited.readSignals(mockRequest, TestSignals.class));
+    assertEquals(8, ex.getMaxSize());
+  }
+
+  @Test
+  void readSignals_postRequestWithLargeContentLength_shouldFailWithoutReadingBody()
+      throws IOException {
+    Datastar limited = limitedDatastar(8);
+    when(mockRequest.getMethod()).thenReturn("POST");
+    when(mockRequest.getContentLengthLong()).thenReturn(1024L);
+
+    assertThrows(
+        SignalsTooLargeException.class, () -> limited.readSignals(mockRequest, TestSignals.class));
+    verify(mockRequest, never()).getInputStream();
+  }
+
+  @Test
+  void readSignals_postRequestWithUnknownLength_shouldFailOnceLimitIsExceeded()
+      throws IOException {
+    Datastar limited = limitedDatastar(8);
+    when(mockRequest.getMethod()).thenReturn("POST");
+    when(mockRequest.getContentLengthLong()).thenReturn(-1L);
+    when(mockRequest.getInputStream())
+        .thenReturn(
+            new DelegatingServletInputStream(
+                new ByteArrayInputStream("{\"value\":\"a long value\"}".getBytes())));
+
+    assertThrows(
+        SignalsTooLargeException.class, () -> limited.readSignals(mockRequest, TestSignals.class));
+  }
+
+  @Test
+  void readSignal_postRequestWithUnknownLength_shouldFailOnceLimitIsExceeded()
+      throws IOException {
+    Datastar limited = limitedDatastar(8);
+    when(mockRequest.getMethod()).thenReturn("POST");
+    when(mockRequest.getContentLengthLong()).thenReturn(-1L);
+    when(mockRequest.getInputStream())
+        .thenReturn(
+            new DelegatingServletInputStream(
+                new ByteArrayInputStream("{\"other\":1,\"value\":\"x\"}".getBytes())));
+
+    assertThrows(
+        SignalsTooLargeException.class,
+        () -> limited.readSignal(mockRequest, "/value", String.class));
+  }
+
+  @Test
+  void readSignals_postRequestWithinMaxSize_shouldParseJson() throws IOException {
+    Datastar limited = limitedDatastar(64);
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"value\":\"test\"}".getBytes());
+
+    assertEquals("test", limited.readSignals(request, TestSignals.class).value());
+  }
+
+  @Test
+  void readSignals_withNegativeMaxSize_shouldNotLimit() throws IOException {
+    Datastar unlimited = limitedDatastar(-1);
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent(("{\"value\":\"" + "x".repeat(4096) + "\"}").getBytes());
+
+    assertEquals(4096, unlimited.readSignals(request, TestSignals.class).value().length());
+  }
+
   @Test
   void readSignals_postRequest_shouldParseJsonFromBody() throws IOException {
     String jsonPayload = "{\"value\":\"test\"}";
@@ -99,6 +368,72 @@ class DatastarTest {
     });
   }
 
+  @Test
+  void readSignals_withTypeReference_shouldParseGenericTarget() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"items\":[\"a\",\"b\"]}".getBytes());
+
+    Map<String, List<String>> result =
+        datastar.readSignals(request, new TypeReference<Map<String, List<String>>>() {});
+
+    assertEquals(List.of("a", "b"), result.get("items"));
+  }
+
+  @Test
+  void readSignals_shouldUseProvidedObjectMapper() {
+    JsonMapper strictMapper =
+        JsonMapper.builder().enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).build();
+    Datastar strictDatastar = new Datastar(new DatastarProperties(false), strictMapper);
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"value\":\"test\",\"unknown\":1}".getBytes());
+
+    assertThrows(
+        UnrecognizedPropertyException.class,
+        () -> strictDatastar.readSignals(request, TestSignals.class));
+  }
+
+  @Test
+  void readSignal_postRequest_shouldReadValueAtPath() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"form\":{\"email\":\"a@b.c\"},\"rows\":[1,2,3]}".getBytes());
+
+    assertEquals("a@b.c", datastar.readSignal(request, "/form/email", String.class));
+  }
+
+  @Test
+  void readSignal_missingPath_shouldReturnNull() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"form\":{}}".getBytes());
+
+    assertNull(datastar.readSignal(request, "/form/email", String.class));
+  }
+
+  @Test
+  void readSignal_getRequest_shouldReadValueFromDatastarParam() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test");
+    request.setParameter(Consts.DATASTAR_KEY, "{\"count\":5}");
+
+    assertEquals(5, datastar.readSignal(request, "/count", Integer.class));
+  }
+
+  @Test
+  void readSignals_withPaths_shouldReturnFoundValues() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+    request.setContent("{\"a\":1,\"b\":{\"c\":\"x\"}}".getBytes());
+
+    Map<String, JsonNode> result = datastar.readSignals(request, List.of("/b/c", "/a", "/z"));
+
+    assertEquals(2, result.size());
+    assertEquals("x", result.get("/b/c").asString());
+    assertEquals(1, result.get("/a").asInt());
+  }
+
+  @Test
+  void signalReader_shouldBeCachedPerTargetType() {
+    assertSame(datastar.signalReader(TestSignals.class), datastar.signalReader(TestSignals.class));
+    assertNotSame(datastar.signalReader(TestSignals.class), datastar.signalReader(String.class));
+  }
+
   @Test
   void constructor_withNullProperties_shouldWork() {
     // The constructor doesn't throw NPE, it accepts null properties
@@ -106,5 +441,12 @@ class DatastarTest {
     assertNotNull(datastar);
   }
 
+  private static Datastar limitedDatastar(long maxSizeBytes) {
+    return new Datastar(
+        DatastarProperties.builder()
+            .signals(new DatastarProperties.Signals(DataSize.ofBytes(maxSizeBytes)))
+            .build());
+  }
+
   record TestSignals(String value) {}
 }
@@ -0,0 +1,66 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ElementChunksTest {
+
+  @Test
+  void next_shouldFitAsManyTopLevelElementsAsTheChunkSizeAllows() {
+    assertEquals(
+        List.of("<li>1</li><li>2</li>", "<li>3</li>"),
+        chunks("<li>1</li><li>2</li><li>3</li>", 20));
+  }
+
+  @Test
+  void next_shouldNeverCutInsideAnElement() {
+    assertEquals(
+        List.of("<div><p>a</p><p>b</p></div>", "<hr><br/>", "<!-- <x> -->", "<p>c</p>"),
+        chunks("<div><p>a</p><p>b</p></div><hr><br/><!-- <x> --><p>c</p>", 10));
+  }
+
+  @Test
+  void next_shouldSkipMarkupInRawTextAndAttributeValues() {
+    assertEquals(
+        List.of("<script>if (a<b) x='</div>';</script>", "<p>x</p>"),
+        chunks("<script>if (a<b) x='</div>';</script><p>x</p>", 5));
+    assertEquals(
+        List.of("<p title=\"a>b\">x</p>", "<p>y</p>"),
+        chunks("<p title=\"a>b\">x</p><p>y</p>", 15));
+  }
+
+  @Test
+  void next_shouldKeepTextWithThePrecedingNode() {
+    assertEquals(List.of("text ", "<b>x</b> more"), chunks("text <b>x</b> more", 3));
+  }
+
+  @Test
+  void splitRoot_shouldReturnStartTagContentAndEndTag() {
+    assertArrayEquals(
+        new String[] {"<ul id=\"l\">", "<li>1</li>", "</ul>"},
+        ElementChunks.splitRoot("  <ul id=\"l\"><li>1</li></ul>\n"));
+    assertArrayEquals(
+        new String[] {"<div>", "<div>a</div>", "</div>"},
+        ElementChunks.splitRoot("<div><div>a</div></div>"));
+  }
+
+  @Test
+  void splitRoot_withoutASingleRoot_shouldReturnNull() {
+    assertNull(ElementChunks.splitRoot("<div>a</div><div>b</div>"));
+    assertNull(ElementChunks.splitRoot("<ul><li>1</li></ul><ul></ul>"));
+    assertNull(ElementChunks.splitRoot("<br>"));
+    assertNull(ElementChunks.splitRoot("text"));
+  }
+
+  private static List<String> chunks(String html, int chunkSize) {
+    ElementChunks chunks = new ElementChunks(html, chunkSize);
+    List<String> result = new ArrayList<>();
+    while (chunks.hasNext()) {
+      result.add(chunks.next());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,75 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.akashgill3.datastar.ResponseBodyEmitterTestSupport.Client;
+import io.github.akashgill3.datastar.ResponseBodyEmitterTestSupport.Connection;
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+
+/** Opens and kills streams in every way a stream can end and checks nothing is left behind. */
+class EmitterCleanupLeakTest {
+
+  private static final int STREAMS = 100_000;
+  private static final int CONCURRENT = 1_000;
+
+  @Test
+  void openAndKillStreams_shouldReleaseEveryResource() throws IOException {
+    // Admission is capped at one batch, so a single leaked slot fails the next batch.
+    Datastar datastar =
+        new Datastar(
+            DatastarProperties.builder()
+                .connections(new DatastarProperties.Connections(CONCURRENT, -1, -1, null))
+                .build());
+    LongAdder cleanedUp = new LongAdder();
+
+    for (int batch = 0; batch < STREAMS / CONCURRENT; batch++) {
+      List<DatastarSseEmitter> emitters = new ArrayList<>(CONCURRENT);
+      List<Connection> connections = new ArrayList<>(CONCURRENT);
+      for (int i = 0; i < CONCURRENT; i++) {
+        DatastarSseEmitter emitter = datastar.createEmitter();
+        emitter.onCleanup(cleanedUp::increment);
+        emitters.add(emitter);
+        Client client = i % 4 == 2 ? Client.GONE : Client.READING;
+        connections.add(ResponseBodyEmitterTestSupport.bind(emitter, client));
+      }
+      assertEquals(CONCURRENT, datastar.getActiveEmitterCount());
+
+      for (int i = 0; i < CONCURRENT; i++) {
+        DatastarSseEmitter emitter = emitters.get(i);
+        Connection connection = connections.get(i);
+        switch (i % 4) {
+          case 0 -> connection.timeout();
+          case 1 -> connection.error(new IOException("Connection reset"));
+          case 2 -> assertThrows(IOException.class, () -> emitter.patchElements("<div></div>"));
+          default -> emitter.complete();
+        }
+        assertTrue(emitter.isCleanedUp());
+      }
+      assertEquals(0, datastar.getActiveEmitterCount());
+    }
+
+    assertEquals(STREAMS, cleanedUp.sum());
+    assertEquals(0, datastar.getRejectedEmitterCount());
+  }
+
+  @Test
+  void cleanup_triggeredRepeatedly_shouldRunOnce() throws IOException {
+    Datastar datastar = new Datastar(new DatastarProperties(false));
+    DatastarSseEmitter emitter = datastar.createEmitter();
+    LongAdder cleanedUp = new LongAdder();
+    emitter.onCleanup(cleanedUp::increment);
+    Connection connection = ResponseBodyEmitterTestSupport.bind(emitter, Client.READING);
+
+    connection.error(new IOException("Connection reset"));
+    connection.timeout();
+    emitter.complete();
+
+    assertEquals(1, cleanedUp.sum());
+    assertEquals(0, datastar.getActiveEmitterCount());
+  }
+}
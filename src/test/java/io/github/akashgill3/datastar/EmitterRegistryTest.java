@@ -0,0 +1,130 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class EmitterRegistryTest {
+
+  @Test
+  void timeoutMillis_withoutMinTimeout_shouldBeFixed() {
+    EmitterRegistry registry =
+        new EmitterRegistry(properties(-1, Duration.ofSeconds(60), null, Duration.ZERO), () -> 1.0);
+
+    assertEquals(60_000L, registry.timeoutMillis());
+  }
+
+  @Test
+  void timeoutMillis_shouldShrinkWithHeapPressure() {
+    double[] heap = {0.3};
+    EmitterRegistry registry =
+        new EmitterRegistry(
+            properties(-1, Duration.ofSeconds(100), Duration.ofSeconds(20), Duration.ZERO),
+            () -> heap[0]);
+
+    assertEquals(100_000L, registry.timeoutMillis());
+    heap[0] = 0.7;
+    assertEquals(60_000L, registry.timeoutMillis());
+    heap[0] = 0.95;
+    assertEquals(20_000L, registry.timeoutMillis());
+  }
+
+  @Test
+  void timeoutMillis_shouldShrinkWithConnectionPressure() {
+    EmitterRegistry registry =
+        new EmitterRegistry(
+            properties(4, Duration.ofSeconds(100), Duration.ofSeconds(20), Duration.ZERO),
+            () -> 0.0);
+
+    registry.register(new DatastarSseEmitter(new DatastarProperties(false)));
+    registry.register(new DatastarSseEmitter(new DatastarProperties(false)));
+
+    assertEquals(60_000L, registry.timeoutMillis());
+  }
+
+  @Test
+  void sweep_shouldCloseOnlyIdleEmitters() {
+    EmitterRegistry registry =
+        new EmitterRegistry(
+            properties(-1, Duration.ofSeconds(60), null, Duration.ofMinutes(1)), () -> 0.0);
+    DatastarSseEmitter idle = spy(new DatastarSseEmitter(new DatastarProperties(false)));
+    DatastarSseEmitter active = spy(new DatastarSseEmitter(new DatastarProperties(false)));
+    doReturn(System.nanoTime() - Duration.ofMinutes(2).toNanos()).when(idle).lastWriteNanos();
+    doNothing().when(idle).closeWithRetry(anyLong());
+    registry.register(idle);
+    registry.register(active);
+
+    registry.sweep();
+
+    verify(idle, timeout(1000)).closeWithRetry(5_000L);
+    verify(active, never()).closeWithRetry(anyLong());
+    assertEquals(1, registry.idleClosed());
+    assertEquals(1, registry.size());
+    registry.stop();
+  }
+
+  @Test
+  void sweep_shouldProbeQuietEmitters() {
+    EmitterRegistry registry =
+        new EmitterRegistry(
+            DatastarProperties.builder()
+                .emitters(
+                    new DatastarProperties.Emitters(null, null, null, null, Duration.ofSeconds(15)))
+                .build(),
+            () -> 0.0);
+    DatastarSseEmitter quiet = spy(new DatastarSseEmitter(new DatastarProperties(false)));
+    DatastarSseEmitter busy = spy(new DatastarSseEmitter(new DatastarProperties(false)));
+    doReturn(System.nanoTime() - Duration.ofSeconds(20).toNanos()).when(quiet).lastWriteNanos();
+    registry.register(quiet);
+    registry.register(busy);
+
+    registry.sweep();
+
+    verify(quiet, timeout(1000)).probe(Duration.ofSeconds(15).toNanos());
+    verify(busy, never()).probe(anyLong());
+    assertEquals(2, registry.size());
+    registry.stop();
+  }
+
+  @Test
+  void sweep_shouldNotProbeEmittersProbedWithinTheInterval() {
+    EmitterRegistry registry =
+        new EmitterRegistry(
+            DatastarProperties.builder()
+                .emitters(
+                    new DatastarProperties.Emitters(null, null, null, null, Duration.ofSeconds(15)))
+                .build(),
+            () -> 0.0);
+    DatastarSseEmitter probed = spy(new DatastarSseEmitter(new DatastarProperties(false)));
+    doReturn(System.nanoTime() - Duration.ofSeconds(20).toNanos()).when(probed).lastWriteNanos();
+    doReturn(System.nanoTime() - Duration.ofSeconds(5).toNanos()).when(probed).lastProbeNanos();
+    registry.register(probed);
+
+    registry.sweep();
+
+    verify(probed, after(200).never()).probe(anyLong());
+    registry.stop();
+  }
+
+  @Test
+  void unregister_shouldRemoveEmitter() {
+    EmitterRegistry registry = new EmitterRegistry(new DatastarProperties(false), () -> 0.0);
+    DatastarSseEmitter emitter = new DatastarSseEmitter(new DatastarProperties(false));
+    registry.register(emitter);
+
+    registry.unregister(emitter);
+
+    assertEquals(0, registry.size());
+  }
+
+  private static DatastarProperties properties(
+      int maxConnections, Duration timeout, Duration minTimeout, Duration idleTimeout) {
+    return DatastarProperties.builder()
+        .connections(new DatastarProperties.Connections(maxConnections, -1, -1, null))
+        .emitters(new DatastarProperties.Emitters(timeout, minTimeout, idleTimeout, null, null))
+        .build();
+  }
+}
@@ -0,0 +1,87 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+class EncodedFrameTest {
+
+  private final FramePool pool = new FramePool(1 << 20);
+
+  @Test
+  void release_shouldReturnBufferOnlyAfterLastReference() {
+    EncodedFrame frame = pool.encode("frame", null);
+    frame.retain().retain();
+    assertEquals(3, frame.refCount());
+
+    assertFalse(frame.release());
+    assertFalse(frame.release());
+    assertEquals(0, pool.idle());
+    assertTrue(frame.release());
+
+    assertEquals(1, pool.idle());
+  }
+
+  @Test
+  void retainOrRelease_afterLastRelease_shouldThrow() {
+    EncodedFrame frame = pool.encode("frame", null);
+    frame.release();
+
+    assertThrows(IllegalStateException.class, frame::retain);
+    assertThrows(IllegalStateException.class, frame::release);
+  }
+
+  @Test
+  void writeTo_shouldNotConsumeTheFrame() throws IOException {
+    EncodedFrame frame = pool.encode("data: signals {}\n\n", null);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    frame.writeTo(out);
+    frame.writeTo(out);
+
+    assertEquals("data: signals {}\n\ndata: signals {}\n\n", out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void write_release_shouldBeIdempotent() {
+    EncodedFrame frame = pool.encode("frame", null).retain();
+    EncodedFrame.Write write = new EncodedFrame.Write(frame);
+
+    write.release();
+    write.release();
+
+    assertEquals(1, frame.refCount());
+  }
+
+  @Test
+  void converter_shouldWriteFrameAndReleaseTheWrite() throws IOException {
+    EncodedFrameHttpMessageConverter converter = new EncodedFrameHttpMessageConverter();
+    EncodedFrame frame = pool.encode("event: datastar-patch-signals\n\n", null);
+    MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+    assertTrue(converter.canWrite(EncodedFrame.Write.class, MediaType.TEXT_PLAIN));
+    assertFalse(converter.canWrite(String.class, MediaType.TEXT_PLAIN));
+    converter.write(new EncodedFrame.Write(frame), MediaType.TEXT_PLAIN, output);
+
+    assertEquals("event: datastar-patch-signals\n\n", output.getBodyAsString());
+    assertEquals(0, frame.refCount());
+    assertEquals(1, pool.idle());
+  }
+
+  @Test
+  void converter_shouldOnlyAttachNonBlockingWritersToServletStreams() {
+    EncodedFrameHttpMessageConverter converter = new EncodedFrameHttpMessageConverter();
+    NonBlockingWriter writer = new NonBlockingWriter(ex -> {}, () -> {}, 1024, 512);
+
+    assertTrue(converter.canWrite(NonBlockingWriter.class, MediaType.TEXT_PLAIN));
+    assertThrows(
+        HttpMessageNotWritableException.class,
+        () -> converter.write(writer, MediaType.TEXT_PLAIN, new MockHttpOutputMessage()));
+  }
+}
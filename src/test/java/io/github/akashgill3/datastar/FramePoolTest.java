@@ -0,0 +1,83 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class FramePoolTest {
+
+  private final FramePool pool = new FramePool(1 << 20);
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "",
+        "data: elements <p>plain ascii</p>\n\n",
+        "café € 中文",
+        "emoji 😀 pair",
+        "lone \uD83D high and \uDE00 low surrogate"
+      })
+  void encode_shouldMatchStringGetBytes(String text) throws IOException {
+    EncodedFrame frame = pool.encode(text, null);
+
+    assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), bytes(frame));
+    assertEquals(text.getBytes(StandardCharsets.UTF_8).length, frame.size());
+  }
+
+  @Test
+  void encode_shouldUseDirectBufferAndReuseItOnceReleased() {
+    EncodedFrame first = pool.encode("event: datastar-patch-signals\n\n", null);
+    assertTrue(first.isDirect());
+    assertEquals(1, pool.allocated());
+
+    assertTrue(first.release());
+    assertEquals(1, pool.idle());
+    EncodedFrame second = pool.encode("event: datastar-patch-elements\n\n", null);
+
+    assertEquals(1, pool.allocated());
+    assertEquals(1, pool.reused());
+    assertEquals(0, pool.idle());
+    second.release();
+  }
+
+  @Test
+  void encode_largerThanLargestClass_shouldUseUnpooledHeapBuffer() {
+    EncodedFrame frame = pool.encode("x".repeat((1 << 16) + 1), null);
+
+    assertFalse(frame.isDirect());
+    frame.release();
+    assertEquals(0, pool.idle());
+    assertEquals(0, pool.allocated());
+  }
+
+  @Test
+  void release_beyondMaxPooled_shouldDropBuffers() {
+    FramePool small = new FramePool(4 * 1024);
+    EncodedFrame a = small.encode("a", null);
+    EncodedFrame b = small.encode("b", null);
+
+    a.release();
+    b.release();
+
+    assertEquals(1, small.idle());
+  }
+
+  @Test
+  void encodeUnpooled_shouldUseHeapBuffer() throws IOException {
+    EncodedFrame frame = FramePool.encodeUnpooled("é", null);
+
+    assertFalse(frame.isDirect());
+    assertArrayEquals(new byte[] {(byte) 0xC3, (byte) 0xA9}, bytes(frame));
+  }
+
+  private static byte[] bytes(EncodedFrame frame) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    frame.writeTo(out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,189 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+class HtmlTest {
+
+  private static String render(Consumer<Html> html) {
+    StringBuilder sb = new StringBuilder();
+    Html builder = new Html(sb, false);
+    html.accept(builder);
+    builder.finish();
+    return sb.toString();
+  }
+
+  private static String renderFramed(Consumer<Html> html) {
+    StringBuilder sb = new StringBuilder("data: elements ");
+    Html builder = new Html(sb, true);
+    html.accept(builder);
+    builder.finish();
+    return sb.toString();
+  }
+
+  @Test
+  void shouldWriteNestedElementsWithAttributes() {
+    String html =
+        render(
+            h ->
+                h.open("ul")
+                    .attr("id", "todos")
+                    .open("li")
+                    .attr("class", "done")
+                    .attr("data-on:click", "@post('/toggle/1')")
+                    .text("Milk")
+                    .close()
+                    .element("li", "Eggs")
+                    .close());
+
+    assertEquals(
+        "<ul id=\"todos\"><li class=\"done\" data-on:click=\"@post('/toggle/1')\">Milk</li>"
+            + "<li>Eggs</li></ul>",
+        html);
+  }
+
+  @Test
+  void text_shouldEscapeMarkupButNotQuotes() {
+    assertEquals(
+        "<p>&lt;b&gt;Tom &amp; \"Jerry\"&lt;/b&gt;</p>",
+        render(h -> h.element("p", "<b>Tom & \"Jerry\"</b>")));
+  }
+
+  @Test
+  void attr_shouldEscapeQuotesAndOmitNullValues() {
+    assertEquals(
+        "<a title=\"say &quot;hi&quot; &amp; &lt;go&gt;\">x</a>",
+        render(h -> h.open("a").attr("title", "say \"hi\" & <go>").attr("href", null).text("x")));
+  }
+
+  @Test
+  void attr_withBooleanAndNumber_shouldWriteThemUnquotedOrQuoted() {
+    assertEquals(
+        "<input type=\"checkbox\" checked tabindex=\"3\">",
+        render(
+            h ->
+                h.open("input")
+                    .attr("type", "checkbox")
+                    .attr("checked", true)
+                    .attr("disabled", false)
+                    .attr("tabindex", 3)
+                    .close()));
+  }
+
+  @Test
+  void voidElements_shouldNotGetEndTag() {
+    assertEquals("<p>a<br>b</p>", render(h -> h.open("p").text("a").open("br").close().text("b")));
+  }
+
+  @Test
+  void voidElements_inUpperCase_shouldNotGetEndTag() {
+    assertEquals("<p>a<BR>b</p>", render(h -> h.open("p").text("a").open("BR").close().text("b")));
+  }
+
+  @Test
+  void finish_shouldCloseOpenElements() {
+    assertEquals("<div><span>1</span></div>", render(h -> h.open("div").open("span").text(1)));
+  }
+
+  @Test
+  void text_shouldNotBreakTheDataLine() {
+    assertEquals(
+        "data: elements <pre>a&#10;b&#13;&#10;c</pre>",
+        renderFramed(h -> h.element("pre", "a\nb\r\nc")));
+  }
+
+  @Test
+  void raw_shouldStartANewDataLinePerLineBreak() {
+    assertEquals(
+        "data: elements <div>\ndata: elements   <b>trusted</b>\ndata: elements </div>",
+        renderFramed(h -> h.raw("<div>\r\n  <b>trusted</b>\n</div>")));
+  }
+
+  @Test
+  void raw_withLoneCarriageReturn_shouldStartANewDataLine() {
+    assertEquals(
+        "data: elements <p>a</p>\ndata: elements <p>b</p>\ndata: elements \n"
+            + "data: elements <p>c</p>",
+        renderFramed(h -> h.raw("<p>a</p>\r<p>b</p>\r\r\n<p>c</p>")));
+  }
+
+  @Test
+  void attr_withScriptUrl_shouldBeReplaced() {
+    assertEquals(
+        "<a href=\"about:invalid\"><img SRC=\"about:invalid\"></a>",
+        render(
+            h ->
+                h.open("a")
+                    .attr("href", " Java\tScript:alert(1)")
+                    .open("img")
+                    .attr("SRC", "data:text/html,x")));
+  }
+
+  @Test
+  void attr_withRelativeOrWebUrl_shouldBeKept() {
+    assertEquals(
+        "<a href=\"/todos?q=a:b\" title=\"javascript:x\">"
+            + "<a href=\"HTTPS://example.com\"><a href=\"mailto:ada@example.com\"></a></a></a>",
+        render(
+            h ->
+                h.open("a")
+                    .attr("href", "/todos?q=a:b")
+                    .attr("title", "javascript:x")
+                    .open("a")
+                    .attr("href", "HTTPS://example.com")
+                    .open("a")
+                    .attr("href", "mailto:ada@example.com")));
+  }
+
+  @Test
+  void attr_withScriptOrCss_shouldThrow() {
+    assertThrows(
+        IllegalArgumentException.class, () -> render(h -> h.open("a").attr("onclick", "x()")));
+    assertThrows(
+        IllegalArgumentException.class, () -> render(h -> h.open("img").attr("OnError", "x()")));
+    assertThrows(
+        IllegalArgumentException.class, () -> render(h -> h.open("p").attr("style", "color:red")));
+    assertThrows(
+        IllegalArgumentException.class, () -> render(h -> h.open("iframe").attr("srcdoc", "<p>")));
+  }
+
+  @Test
+  void trustedAttr_shouldWriteScriptOrCssEscaped() {
+    assertEquals(
+        "<button onclick=\"say(&quot;hi&quot;)\" style=\"color:red\"></button>",
+        render(
+            h ->
+                h.open("button")
+                    .trustedAttr("onclick", "say(\"hi\")")
+                    .trustedAttr("style", "color:red")
+                    .trustedAttr("title", null)));
+  }
+
+  @Test
+  void text_insideScriptOrStyle_shouldThrow() {
+    assertThrows(IllegalStateException.class, () -> render(h -> h.open("script").text("x")));
+    assertThrows(IllegalStateException.class, () -> render(h -> h.open("STYLE").text("x")));
+    assertEquals(
+        "<script>let a = 1 < 2;</script>", render(h -> h.open("script").raw("let a = 1 < 2;")));
+  }
+
+  @Test
+  void attr_afterContent_shouldThrow() {
+    assertThrows(
+        IllegalStateException.class, () -> render(h -> h.open("p").text("x").attr("id", "a")));
+  }
+
+  @Test
+  void close_withoutOpenElement_shouldThrow() {
+    assertThrows(IllegalStateException.class, () -> render(Html::close));
+  }
+
+  @Test
+  void invalidNames_shouldBeRejected() {
+    assertThrows(IllegalArgumentException.class, () -> render(h -> h.open("div onclick=x")));
+    assertThrows(IllegalArgumentException.class, () -> render(h -> h.open("p").attr("a\"b", "")));
+    assertThrows(IllegalArgumentException.class, () -> render(h -> h.open("")));
+  }
+}
@@ -0,0 +1,75 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class JsStringsTest {
+
+  @Test
+  void appendQuoted_withNull_shouldAppendNullLiteral() {
+    assertEquals("null", quote(null));
+  }
+
+  @Test
+  void appendQuoted_withSafeString_shouldOnlyAddQuotes() {
+    assertEquals("\"User 42 signed in\"", quote("User 42 signed in"));
+    assertEquals("\"\"", quote(""));
+  }
+
+  @Test
+  void appendQuoted_shouldEscapeQuotesBackslashesAndNamedControls() {
+    assertEquals(
+        "\"a\\\"b\\\\c\\nd\\re\\tf\\bg\\fh\"", quote("a\"b\\c\nd\re\tf\bg\fh"));
+  }
+
+  @Test
+  void appendQuoted_shouldEscapeOtherControlCharactersAsUnicode() {
+    assertEquals("\"\\u0000\\u001F\\u007F\"", quote("\u0000\u001f\u007f"));
+  }
+
+  @Test
+  void appendQuoted_shouldEscapeLineAndParagraphSeparators() {
+    assertEquals("\"a\\u2028b\\u2029c\"", quote("a\u2028b\u2029c"));
+  }
+
+  @Test
+  void appendQuoted_shouldNotLetScriptElementBeClosedOrCommented() {
+    String quoted = quote("</script><script>alert(1)</script><!--");
+
+    assertFalse(quoted.toLowerCase().contains("</script"));
+    assertFalse(quoted.contains("<!--"));
+    assertEquals(
+        "\"\\u003C/script>\\u003Cscript>alert(1)\\u003C/script>\\u003C!--\"", quoted);
+  }
+
+  @Test
+  void appendQuoted_shouldKeepSurrogatePairsAndEscapeUnpairedSurrogates() {
+    assertEquals("\"\uD83D\uDE00\"", quote("\uD83D\uDE00"));
+    assertEquals("\"\\uD83Dx\\uDE00\"", quote("\uD83Dx\uDE00"));
+    assertEquals("\"a\\uD83D\"", quote("a\uD83D"));
+  }
+
+  @Test
+  void appendQuoted_shouldAppendToExistingContent() {
+    StringBuilder sb = new StringBuilder("console.log(");
+
+    JsStrings.appendQuoted(sb, "x\"y").append(')');
+
+    assertEquals("console.log(\"x\\\"y\")", sb.toString());
+  }
+
+  @Test
+  void needsEscaping_shouldOnlyBeFalseForStringsQuotedAsIs() {
+    assertFalse(JsStrings.needsEscaping("User 42 signed in"));
+    assertFalse(JsStrings.needsEscaping(""));
+    assertTrue(JsStrings.needsEscaping("a\"b"));
+    assertTrue(JsStrings.needsEscaping("a<b"));
+    assertTrue(JsStrings.needsEscaping("line\n"));
+    assertTrue(JsStrings.needsEscaping("\uD83D\uDE00"));
+  }
+
+  private static String quote(String value) {
+    return JsStrings.appendQuoted(new StringBuilder(), value).toString();
+  }
+}
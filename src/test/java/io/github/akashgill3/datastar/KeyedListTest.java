@@ -0,0 +1,198 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+class KeyedListTest {
+
+  private final KeyedList<Row> list =
+      new KeyedList<>(
+          "#rows", Row::id, row -> "<li id=\"" + row.id() + "\">" + row.text() + "</li>");
+
+  private DatastarSseEmitter emitter;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    emitter = spy(new DatastarSseEmitter(new DatastarProperties(false)));
+    doNothing().when((ResponseBodyEmitter) emitter).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void firstUpdate_shouldReplaceTheContainerContent() throws IOException {
+    assertEquals(1, list.update(emitter, rows("a", "b")));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #rows\n"
+                    + "data: mode inner\n"
+                    + "data: elements <li id=\"a\">a</li>\n"
+                    + "data: elements <li id=\"b\">b</li>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void update_shouldSendOnlyChangedRows() throws IOException {
+    list.update(emitter, rows("a", "b", "c"));
+
+    assertEquals(0, list.update(emitter, rows("a", "b", "c")));
+    assertEquals(1, list.update(emitter, List.of(row("a"), new Row("b", "B"), row("c"))));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #b\n"
+                    + "data: elements <li id=\"b\">B</li>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    verify((ResponseBodyEmitter) emitter, times(2)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void update_shouldRemoveAndInsertInOneWrite() throws IOException {
+    list.update(emitter, rows("a", "b", "c"));
+
+    assertEquals(3, list.update(emitter, rows("x", "a", "c", "y", "z")));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #b\n"
+                    + "data: mode remove\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #a\n"
+                    + "data: mode before\n"
+                    + "data: elements <li id=\"x\">x</li>\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #c\n"
+                    + "data: mode after\n"
+                    + "data: elements <li id=\"y\">y</li>\n"
+                    + "data: elements <li id=\"z\">z</li>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    verify((ResponseBodyEmitter) emitter, times(2)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void update_shouldMoveOnlyTheRowsOutOfOrder() throws IOException {
+    list.update(emitter, rows("a", "b", "c", "d"));
+
+    assertEquals(2, list.update(emitter, rows("a", "d", "b", "c")));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #d\n"
+                    + "data: mode remove\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #a\n"
+                    + "data: mode after\n"
+                    + "data: elements <li id=\"d\">d</li>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void update_fromEmptyList_shouldAppendToTheContainer() throws IOException {
+    list.update(emitter, rows("a"));
+
+    list.update(emitter, rows("b"));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #a\n"
+                    + "data: mode remove\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #rows\n"
+                    + "data: mode append\n"
+                    + "data: elements <li id=\"b\">b</li>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void reset_shouldSendTheWholeListAgain() throws IOException {
+    list.update(emitter, rows("a"));
+    list.reset();
+
+    list.update(emitter, rows("a"));
+
+    verify((ResponseBodyEmitter) emitter, times(2))
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #rows\n"
+                    + "data: mode inner\n"
+                    + "data: elements <li id=\"a\">a</li>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void update_whileRateLimited_shouldKeepEveryMoveInOrder() throws IOException {
+    list.update(emitter, rows("a", "b", "c", "d"));
+    emitter.rateLimit(0.001, 1);
+    emitter.patchSignals("{\"sent\":true}");
+
+    list.update(emitter, rows("a", "d", "b", "c"));
+    list.update(emitter, rows("d", "a", "b", "c"));
+    list.update(emitter, rows("d", "a", "b", "c", "e", "f"));
+    emitter.complete();
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #d\n"
+                    + "data: mode remove\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #a\n"
+                    + "data: mode after\n"
+                    + "data: elements <li id=\"d\">d</li>\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #d\n"
+                    + "data: mode remove\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #a\n"
+                    + "data: mode before\n"
+                    + "data: elements <li id=\"d\">d</li>\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #c\n"
+                    + "data: mode after\n"
+                    + "data: elements <li id=\"e\">e</li>\n"
+                    + "data: elements <li id=\"f\">f</li>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void update_withDuplicateIds_shouldThrow() {
+    assertThrows(IllegalArgumentException.class, () -> list.update(emitter, rows("a", "a")));
+  }
+
+  @Test
+  void stableRows_shouldKeepALongestIncreasingRun() {
+    boolean[] stable = KeyedList.stableRows(new int[] {3, 0, -1, 1, 2});
+
+    assertArrayEquals(new boolean[] {false, true, false, true, true}, stable);
+  }
+
+  private static List<Row> rows(String... ids) {
+    return Arrays.stream(ids).map(KeyedListTest::row).toList();
+  }
+
+  private static Row row(String id) {
+    return new Row(id, id);
+  }
+
+  private record Row(String id, String text) {}
+}
@@ -0,0 +1,226 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.akashgill3.datastar.events.EventPriority;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NonBlockingWriterTest {
+
+  private final List<Throwable> failures = new ArrayList<>();
+  private final AtomicInteger writableAgain = new AtomicInteger();
+  private final NonBlockingWriter writer =
+      new NonBlockingWriter(failures::add, writableAgain::incrementAndGet, 16, 8);
+  private final AsyncOutputStream out = new AsyncOutputStream();
+
+  @Test
+  void enqueue_beforeAttach_shouldWriteOnceTheStreamIsReady() throws IOException {
+    EncodedFrame first = frame("data: 1\n\n");
+    EncodedFrame second = frame("data: 2\n\n");
+    writer.enqueue(first);
+    writer.enqueue(second);
+    assertEquals(18, writer.queuedBytes());
+
+    writer.attach(out);
+    assertSame(writer, out.listener);
+    assertEquals("", out.written());
+
+    writer.onWritePossible();
+
+    assertEquals("data: 1\n\ndata: 2\n\n", out.written());
+    assertEquals(0, writer.queuedBytes());
+    assertEquals(0, first.refCount());
+    assertEquals(0, second.refCount());
+  }
+
+  @Test
+  void enqueue_whenStreamNotReady_shouldReturnAndKeepTheRestQueued() throws IOException {
+    attached();
+    out.budget = 4;
+
+    writer.enqueue(frame("data: 1\n\n"));
+    writer.enqueue(frame("data: 2\n\n"));
+
+    assertEquals("data", out.written());
+    assertEquals(14, writer.queuedBytes());
+
+    out.budget = Integer.MAX_VALUE;
+    writer.onWritePossible();
+
+    assertEquals("data: 1\n\ndata: 2\n\n", out.written());
+    assertEquals(0, writer.queuedBytes());
+    assertTrue(out.flushes > 0);
+  }
+
+  @Test
+  void enqueue_whileAwaitingWritable_shouldNotTouchTheStream() throws IOException {
+    attached();
+    out.budget = 0;
+    writer.enqueue(frame("data: 1\n\n"));
+    int checks = out.readyChecks;
+
+    writer.enqueue(frame("data: 2\n\n"));
+
+    assertEquals(checks, out.readyChecks);
+    assertEquals(18, writer.queuedBytes());
+  }
+
+  @Test
+  void highPriorityFrame_shouldOvertakeQueuedFramesButNotOneHalfWritten() throws IOException {
+    attached();
+    out.budget = 4;
+    writer.enqueue(frame("data: 1\n\n"));
+    writer.enqueue(frame("data: 2\n\n"));
+
+    writer.enqueue(FramePool.encodeUnpooled("data: !\n\n", null, EventPriority.HIGH));
+    out.budget = Integer.MAX_VALUE;
+    writer.onWritePossible();
+
+    assertEquals("data: 1\n\ndata: !\n\ndata: 2\n\n", out.written());
+    assertEquals(0, writer.queuedBytes());
+  }
+
+  @Test
+  void isWritable_shouldFollowTheWaterMarks() throws IOException {
+    attached();
+    out.budget = 0;
+
+    writer.enqueue(frame("data: 1\n\n"));
+    assertTrue(writer.isWritable());
+    writer.enqueue(frame("data: 2\n\n"));
+    assertFalse(writer.isWritable());
+
+    out.budget = 10;
+    writer.onWritePossible();
+    assertTrue(writer.isWritable());
+    assertEquals(8, writer.queuedBytes());
+    assertEquals(1, writableAgain.get());
+
+    out.budget = Integer.MAX_VALUE;
+    writer.onWritePossible();
+    assertEquals(1, writableAgain.get());
+  }
+
+  @Test
+  void close_shouldRunOnceTheQueueIsWritten() throws IOException {
+    attached();
+    out.budget = 0;
+    writer.enqueue(frame("data: 1\n\n"));
+    AtomicInteger completed = new AtomicInteger();
+
+    writer.close(completed::incrementAndGet);
+    writer.close(completed::incrementAndGet);
+    assertEquals(0, completed.get());
+    assertThrows(IOException.class, () -> writer.enqueue(frame("late")));
+
+    out.budget = Integer.MAX_VALUE;
+    writer.onWritePossible();
+
+    assertEquals(1, completed.get());
+    assertEquals("data: 1\n\n", out.written());
+  }
+
+  @Test
+  void close_afterDiscard_shouldRunRightAway() {
+    AtomicInteger completed = new AtomicInteger();
+    writer.discard();
+
+    writer.close(completed::incrementAndGet);
+
+    assertEquals(1, completed.get());
+  }
+
+  @Test
+  void writeFailure_shouldReleaseTheQueueAndReportOnce() throws IOException {
+    attached();
+    out.failure = new IOException("Broken pipe");
+    EncodedFrame frame = frame("data: 1\n\n");
+
+    assertThrows(IOException.class, () -> writer.enqueue(frame));
+    writer.onError(new IOException("Connection reset"));
+    EncodedFrame late = frame("data: 2\n\n");
+    assertThrows(IOException.class, () -> writer.enqueue(late));
+
+    assertEquals(List.of(out.failure), failures);
+    assertEquals(0, frame.refCount());
+    assertEquals(0, late.refCount());
+    assertEquals(0, writer.queuedBytes());
+  }
+
+  @Test
+  void discard_shouldReleaseQueuedFrames() throws IOException {
+    EncodedFrame frame = frame("data: 1\n\n");
+    writer.enqueue(frame);
+
+    writer.discard();
+
+    assertEquals(0, frame.refCount());
+    assertEquals(0, writer.queuedBytes());
+  }
+
+  private void attached() throws IOException {
+    writer.attach(out);
+    writer.onWritePossible();
+  }
+
+  private static EncodedFrame frame(String text) {
+    return FramePool.encodeUnpooled(text, null);
+  }
+
+  /** Accepts {@code budget} bytes, then reports not ready until the test raises the budget. */
+  private static final class AsyncOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private WriteListener listener;
+    private int budget = Integer.MAX_VALUE;
+    private IOException failure;
+    private int readyChecks;
+    private int flushes;
+
+    @Override
+    public boolean isReady() {
+      readyChecks++;
+      return budget > 0;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      this.listener = writeListener;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(ByteBuffer.wrap(new byte[] {(byte) b}));
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+      if (failure != null) {
+        throw failure;
+      }
+      int length = Math.min(budget, buffer.remaining());
+      byte[] chunk = new byte[length];
+      buffer.get(chunk);
+      bytes.write(chunk);
+      budget -= length;
+    }
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+
+    String written() {
+      return bytes.toString(StandardCharsets.UTF_8);
+    }
+  }
+}
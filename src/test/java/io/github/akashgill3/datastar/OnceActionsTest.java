@@ -0,0 +1,56 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class OnceActionsTest {
+
+  private final OnceActions actions = new OnceActions("test");
+
+  @Test
+  void take_shouldRunActionsInOrderOnlyOnce() {
+    List<String> runs = new ArrayList<>();
+    actions.add(() -> runs.add("a"));
+    actions.add(() -> runs.add("b"));
+
+    Runnable taken = actions.take();
+    assertTrue(actions.hasRun());
+    assertNull(actions.take());
+    taken.run();
+
+    assertEquals(List.of("a", "b"), runs);
+  }
+
+  @Test
+  void take_withoutActions_shouldReturnNoOp() {
+    assertNotNull(actions.take());
+    assertNull(actions.take());
+  }
+
+  @Test
+  void add_afterTake_shouldRunImmediately() {
+    List<String> runs = new ArrayList<>();
+    actions.take();
+
+    actions.add(() -> runs.add("late"));
+
+    assertEquals(List.of("late"), runs);
+  }
+
+  @Test
+  void failingAction_shouldNotStopTheOthers() {
+    List<String> runs = new ArrayList<>();
+    actions.add(
+        () -> {
+          throw new IllegalStateException("boom");
+        });
+    actions.add(() -> runs.add("b"));
+
+    actions.take().run();
+
+    assertEquals(List.of("b"), runs);
+  }
+}
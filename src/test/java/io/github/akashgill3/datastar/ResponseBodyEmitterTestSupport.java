@@ -0,0 +1,159 @@
+package io.github.akashgill3.datastar;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * Binds a {@link ResponseBodyEmitter} to a simulated connection, standing in for the return value
+ * handler and the servlet container's async callbacks.
+ *
+ * <p>{@code ResponseBodyEmitter.Handler} and {@code initialize} are package-private, so the
+ * connection is bound through a proxy of that interface, reflectively.
+ */
+public final class ResponseBodyEmitterTestSupport {
+
+  private static final Class<?> HANDLER_TYPE;
+  private static final Method INITIALIZE;
+
+  static {
+    try {
+      HANDLER_TYPE = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+      INITIALIZE = ResponseBodyEmitter.class.getDeclaredMethod("initialize", HANDLER_TYPE);
+      INITIALIZE.setAccessible(true);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private ResponseBodyEmitterTestSupport() {}
+
+  /** How the simulated client behaves. */
+  public enum Client {
+    /** Reads everything written. */
+    READING,
+    /** Has disconnected, writes fail. */
+    GONE,
+    /** Has stopped reading, writes block until {@link Connection#resume()}. */
+    STALLED
+  }
+
+  /**
+   * Bind {@code emitter} to a new simulated connection.
+   *
+   * @param emitter the emitter, as returned from a handler
+   * @param client how the client behaves
+   * @return the connection
+   */
+  public static Connection bind(ResponseBodyEmitter emitter, Client client) throws IOException {
+    Connection connection = new Connection(client);
+    Object handler =
+        Proxy.newProxyInstance(
+            HANDLER_TYPE.getClassLoader(),
+            new Class<?>[] {HANDLER_TYPE},
+            (proxy, method, args) -> connection.handle(proxy, method, args));
+    try {
+      INITIALIZE.invoke(emitter, handler);
+    } catch (InvocationTargetException ex) {
+      if (ex.getCause() instanceof IOException io) {
+        throw io;
+      }
+      throw new IllegalStateException(ex.getCause());
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException(ex);
+    }
+    return connection;
+  }
+
+  /** A simulated connection firing the callbacks the container would. */
+  public static final class Connection {
+
+    private final Client client;
+    private final CountDownLatch resumed = new CountDownLatch(1);
+    private final List<Object> written = new CopyOnWriteArrayList<>();
+    private Runnable timeoutCallback = () -> {};
+    private Consumer<Throwable> errorCallback = ex -> {};
+    private Runnable completionCallback = () -> {};
+
+    Connection(Client client) {
+      this.client = client;
+    }
+
+    /** Time out the request, as the container does once the async timeout elapses. */
+    public void timeout() {
+      timeoutCallback.run();
+      completionCallback.run();
+    }
+
+    /** Fail the request, as the container does when the connection is reset. */
+    public void error(Throwable ex) {
+      errorCallback.accept(ex);
+      completionCallback.run();
+    }
+
+    /** Let a stalled client read again. */
+    public void resume() {
+      resumed.countDown();
+    }
+
+    /** Returns the data written so far. */
+    public List<Object> written() {
+      return written;
+    }
+
+    /** Implements {@code ResponseBodyEmitter.Handler} for the proxy. */
+    @SuppressWarnings("unchecked")
+    private Object handle(Object proxy, Method method, Object[] args) throws IOException {
+      switch (method.getName()) {
+        case "send" -> {
+          if (args.length == 2) {
+            write(args[0]);
+          } else {
+            for (ResponseBodyEmitter.DataWithMediaType item :
+                (Set<ResponseBodyEmitter.DataWithMediaType>) args[0]) {
+              write(item.getData());
+            }
+          }
+        }
+        case "complete", "completeWithError" -> completionCallback.run();
+        case "onTimeout" -> timeoutCallback = (Runnable) args[0];
+        case "onError" -> errorCallback = (Consumer<Throwable>) args[0];
+        case "onCompletion" -> completionCallback = (Runnable) args[0];
+        case "hashCode" -> {
+          return System.identityHashCode(proxy);
+        }
+        case "equals" -> {
+          return proxy == args[0];
+        }
+        case "toString" -> {
+          return "Connection[" + client + "]";
+        }
+        default -> throw new UnsupportedOperationException(method.toString());
+      }
+      return null;
+    }
+
+    private void write(Object data) throws IOException {
+      switch (client) {
+        case GONE -> throw new IOException("Broken pipe");
+        case STALLED -> {
+          try {
+            resumed.await();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while stalled", ex);
+          }
+        }
+        case READING -> {}
+      }
+      written.add(data);
+    }
+  }
+}
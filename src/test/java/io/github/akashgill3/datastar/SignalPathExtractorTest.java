@@ -0,0 +1,80 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.JsonParser;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+class SignalPathExtractorTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private Map<String, JsonNode> extract(String json, String... paths) {
+    JsonParser parser = mapper.createParser(json);
+    return SignalPathExtractor.extract(mapper, parser, List.of(paths));
+  }
+
+  @Test
+  void extract_shouldResolveNestedProperty() {
+    Map<String, JsonNode> result =
+        extract("{\"form\":{\"name\":\"a\",\"email\":\"a@b.c\"},\"other\":1}", "/form/email");
+
+    assertEquals("a@b.c", result.get("/form/email").asString());
+  }
+
+  @Test
+  void extract_shouldResolveMultiplePathsInRequestOrder() {
+    Map<String, JsonNode> result =
+        extract("{\"a\":1,\"b\":{\"c\":[10,20,30]}}", "/b/c/1", "/a");
+
+    assertEquals(List.of("/b/c/1", "/a"), List.copyOf(result.keySet()));
+    assertEquals(20, result.get("/b/c/1").asInt());
+    assertEquals(1, result.get("/a").asInt());
+  }
+
+  @Test
+  void extract_shouldReturnWholeSubtree() {
+    Map<String, JsonNode> result = extract("{\"form\":{\"x\":1,\"y\":[true]}}", "/form");
+
+    assertEquals(1, result.get("/form").get("x").asInt());
+    assertTrue(result.get("/form").get("y").get(0).asBoolean());
+  }
+
+  @Test
+  void extract_shouldResolveOverlappingPaths() {
+    Map<String, JsonNode> result = extract("{\"form\":{\"x\":1}}", "/form", "/form/x");
+
+    assertEquals(2, result.size());
+    assertEquals(1, result.get("/form/x").asInt());
+  }
+
+  @Test
+  void extract_shouldOmitMissingPaths() {
+    Map<String, JsonNode> result = extract("{\"a\":1}", "/a", "/missing", "/a/deeper");
+
+    assertEquals(1, result.size());
+    assertTrue(result.containsKey("/a"));
+  }
+
+  @Test
+  void extract_shouldStopParsingOnceAllPathsAreFound() {
+    // Everything after "a" is malformed; extraction must not get that far.
+    Map<String, JsonNode> result = extract("{\"a\":1,\"b\":{oops", "/a");
+
+    assertEquals(1, result.get("/a").asInt());
+  }
+
+  @Test
+  void extract_withEmptyPayload_shouldReturnEmptyMap() {
+    assertTrue(extract("", "/a").isEmpty());
+  }
+
+  @Test
+  void extract_withInvalidPointer_shouldThrowIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class, () -> extract("{}", "no-leading-slash"));
+  }
+}
@@ -0,0 +1,62 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  @Test
+  void tryAcquire_shouldAllowBurstThenLimit() {
+    TokenBucket bucket = new TokenBucket(10, 3, nanos::get);
+
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+  }
+
+  @Test
+  void tryAcquire_shouldRefillOverTime() {
+    TokenBucket bucket = new TokenBucket(10, 1, nanos::get);
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+
+    nanos.addAndGet(100_000_000L);
+
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+  }
+
+  @Test
+  void tryAcquire_shouldNotExceedBurstAfterLongIdle() {
+    TokenBucket bucket = new TokenBucket(10, 2, nanos::get);
+    nanos.addAndGet(60_000_000_000L);
+
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+  }
+
+  @Test
+  void nanosUntilAvailable_shouldReportTimeToNextToken() {
+    TokenBucket bucket = new TokenBucket(10, 1, nanos::get);
+    assertEquals(0, bucket.nanosUntilAvailable());
+
+    bucket.tryAcquire();
+    assertEquals(100_000_000L, bucket.nanosUntilAvailable());
+
+    nanos.addAndGet(40_000_000L);
+    assertEquals(60_000_000L, bucket.nanosUntilAvailable(), 1);
+  }
+
+  @Test
+  void constructor_withInvalidArguments_shouldThrow() {
+    assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new TokenBucket(-1, 1));
+    assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+  }
+}
@@ -0,0 +1,176 @@
+package io.github.akashgill3.datastar;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.github.akashgill3.datastar.WindowedList.Viewport;
+import io.github.akashgill3.datastar.autoconfigure.DatastarProperties;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+class WindowedListTest {
+
+  private final List<String> loads = new ArrayList<>();
+
+  private final RowSource<Integer> source =
+      (offset, limit) -> {
+        loads.add(offset + "+" + limit);
+        return IntStream.range(offset, Math.min(offset + limit, 100)).boxed().toList();
+      };
+
+  private final WindowedList<Integer> list =
+      new WindowedList<>(
+          "#rows", source, row -> "r" + row, row -> "<p id=\"r" + row + "\"></p>", 4);
+
+  private DatastarSseEmitter emitter;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    emitter = spy(new DatastarSseEmitter(new DatastarProperties(false)));
+    doNothing().when((ResponseBodyEmitter) emitter).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void firstUpdate_shouldReplaceTheContainerWithTheWindow() throws IOException {
+    assertEquals(1, list.update(emitter, new Viewport(0, 2)));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #rows\n"
+                    + "data: mode inner\n"
+                    + "data: elements <p id=\"r0\"></p>\n"
+                    + "data: elements <p id=\"r1\"></p>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void scrollingDown_shouldRemoveRowsAboveAndAppendRowsBelow() throws IOException {
+    list.update(emitter, new Viewport(0, 3));
+
+    assertEquals(2, list.update(emitter, new Viewport(1, 3)));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #r0\n"
+                    + "data: mode remove\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #rows\n"
+                    + "data: mode append\n"
+                    + "data: elements <p id=\"r3\"></p>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    assertEquals(List.of("0+3", "3+1"), loads);
+  }
+
+  @Test
+  void scrollingUp_shouldPrependRowsAboveAndRemoveRowsBelow() throws IOException {
+    list.update(emitter, new Viewport(5, 2));
+
+    assertEquals(2, list.update(emitter, new Viewport(4, 2)));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #r6\n"
+                    + "data: mode remove\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #rows\n"
+                    + "data: mode prepend\n"
+                    + "data: elements <p id=\"r4\"></p>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+
+  @Test
+  void jump_shouldReplaceTheWindow() throws IOException {
+    list.update(emitter, new Viewport(0, 2));
+
+    assertEquals(1, list.update(emitter, new Viewport(50, 2)));
+
+    assertEquals(List.of("0+2", "50+2"), loads);
+    verify((ResponseBodyEmitter) emitter, times(2)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void sameWindow_shouldSendNothing() throws IOException {
+    list.update(emitter, new Viewport(0, 2));
+
+    assertEquals(0, list.update(emitter, new Viewport(0, 2)));
+
+    verify((ResponseBodyEmitter) emitter, times(1)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void update_shouldCapTheLimitAndClampTheOffset() throws IOException {
+    list.update(emitter, new Viewport(-5, 1_000));
+
+    assertEquals(List.of("0+4"), loads);
+  }
+
+  @Test
+  void windowPastTheEnd_shouldLoadRowsAppearingLater() throws IOException {
+    list.update(emitter, new Viewport(98, 4));
+
+    list.update(emitter, new Viewport(98, 4));
+
+    assertEquals(List.of("98+4", "100+2"), loads);
+    verify((ResponseBodyEmitter) emitter, times(1)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void jumpPastTheEnd_shouldRemoveTheRowsShown() throws IOException {
+    list.update(emitter, new Viewport(0, 2));
+
+    assertEquals(2, list.update(emitter, new Viewport(200, 2)));
+    assertEquals(0, list.update(emitter, new Viewport(200, 2)));
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #r0\n"
+                    + "data: mode remove\n\n"
+                    + "event: datastar-patch-elements\n"
+                    + "data: selector #r1\n"
+                    + "data: mode remove\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+    verify((ResponseBodyEmitter) emitter, times(2)).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void firstUpdatePastTheEnd_shouldSendNothing() throws IOException {
+    assertEquals(0, list.update(emitter, new Viewport(200, 2)));
+
+    verify((ResponseBodyEmitter) emitter, never()).send(any(), any(MediaType.class));
+  }
+
+  @Test
+  void scrollingUpTwiceWhileRateLimited_shouldPrependRowsInOrder() throws IOException {
+    list.update(emitter, new Viewport(10, 2));
+    emitter.rateLimit(0.001, 1);
+    emitter.patchSignals("{\"sent\":true}");
+
+    list.update(emitter, new Viewport(9, 3));
+    list.update(emitter, new Viewport(8, 4));
+    emitter.complete();
+
+    verify((ResponseBodyEmitter) emitter)
+        .send(
+            eq(
+                "event: datastar-patch-elements\n"
+                    + "data: selector #rows\n"
+                    + "data: mode prepend\n"
+                    + "data: elements <p id=\"r8\"></p>\n"
+                    + "data: elements <p id=\"r9\"></p>\n\n"),
+            eq(MediaType.TEXT_PLAIN));
+  }
+}
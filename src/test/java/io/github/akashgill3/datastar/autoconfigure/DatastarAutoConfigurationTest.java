@@ -4,14 +4,32 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import io.github.akashgill3.datastar.Datastar;
+import io.github.akashgill3.datastar.DatastarMeterBinder;
+import io.github.akashgill3.datastar.DatastarSignalsArgumentResolver;
+import io.github.akashgill3.datastar.DatastarSseEmitter;
+import io.github.akashgill3.datastar.EncodedFrameHttpMessageConverter;
+import io.github.akashgill3.datastar.ResponseBodyEmitterTestSupport;
+import io.github.akashgill3.datastar.ResponseBodyEmitterTestSupport.Client;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.http.converter.HttpMessageConverters;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import tools.jackson.databind.PropertyNamingStrategies;
+import tools.jackson.databind.json.JsonMapper;
 
 @ExtendWith(MockitoExtension.class)
 class DatastarAutoConfigurationTest {
@@ -45,6 +63,34 @@ class DatastarAutoConfigurationTest {
         });
   }
 
+  @Test
+  void autoConfiguration_shouldCreateDatastarBeanWithApplicationJsonMapper() {
+    contextRunner
+        .withBean(JsonMapper.class, () -> JsonMapper.builder()
+            .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+            .build())
+        .run(context -> {
+          Datastar datastar = context.getBean(Datastar.class);
+          MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+          request.setContent("{\"first_name\":\"Ada\"}".getBytes());
+
+          // Snake case only binds if the application's naming strategy is applied
+          assertEquals("Ada", datastar.readSignals(request, NamedSignals.class).firstName());
+        });
+  }
+
+  @Test
+  void autoConfiguration_shouldFallBackToDefaultMapperWithoutApplicationJsonMapper() {
+    contextRunner
+        .run(context -> {
+          Datastar datastar = context.getBean(Datastar.class);
+          MockHttpServletRequest request = new MockHttpServletRequest("POST", "/test");
+          request.setContent("{\"firstName\":\"Ada\"}".getBytes());
+
+          assertEquals("Ada", datastar.readSignals(request, NamedSignals.class).firstName());
+        });
+  }
+
   @Test
   void autoConfiguration_shouldNotCreateBeanWhenCustomBeanExists() {
     contextRunner
@@ -64,6 +110,7 @@ class DatastarAutoConfigurationTest {
           DatastarProperties properties = context.getBean(DatastarProperties.class);
           assertNotNull(properties);
           assertFalse(properties.enableLogging());
+          assertEquals(DataSize.ofMegabytes(1), properties.signals().maxSize());
         });
   }
 
@@ -77,6 +124,125 @@ class DatastarAutoConfigurationTest {
         });
   }
 
+  @Test
+  void datastarProperties_shouldBindSignalsMaxSize() {
+    contextRunner
+        .withPropertyValues("datastar.signals.max-size=2KB")
+        .run(context -> {
+          DatastarProperties properties = context.getBean(DatastarProperties.class);
+          assertEquals(DataSize.ofKilobytes(2), properties.signals().maxSize());
+        });
+  }
+
+  @Test
+  void datastarProperties_shouldBindRateLimitConnectionsAndEmitters() {
+    contextRunner
+        .withPropertyValues(
+            "datastar.rate-limit.events-per-second=30",
+            "datastar.connections.max=100",
+            "datastar.connections.max-per-ip=5",
+            "datastar.connections.retry-after=10s",
+            "datastar.emitters.timeout=5m",
+            "datastar.emitters.min-timeout=30s",
+            "datastar.emitters.idle-timeout=2m")
+        .run(context -> {
+          DatastarProperties properties = context.getBean(DatastarProperties.class);
+          assertEquals(30, properties.rateLimit().eventsPerSecond());
+          assertEquals(100, properties.connections().max());
+          assertEquals(-1, properties.connections().maxPerUser());
+          assertEquals(5, properties.connections().maxPerIp());
+          assertEquals(Duration.ofSeconds(10), properties.connections().retryAfter());
+          assertEquals(Duration.ofMinutes(5), properties.emitters().timeout());
+          assertEquals(Duration.ofSeconds(30), properties.emitters().minTimeout());
+          assertEquals(Duration.ofMinutes(2), properties.emitters().idleTimeout());
+        });
+  }
+
+  @Test
+  void contextClose_shouldCloseOpenEmitters() {
+    AtomicBoolean closed = new AtomicBoolean();
+    contextRunner.run(context -> {
+      assertNotNull(context.getBean(DatastarShutdownLifecycle.class));
+      DatastarSseEmitter emitter = context.getBean(Datastar.class).createEmitter();
+      emitter.onCleanup(() -> closed.set(true));
+      ResponseBodyEmitterTestSupport.bind(emitter, Client.READING);
+      assertFalse(closed.get());
+    });
+
+    assertTrue(closed.get());
+  }
+
+  @Test
+  void autoConfiguration_withMicrometer_shouldRegisterMeterBinder() {
+    contextRunner.run(context -> assertNotNull(context.getBean(DatastarMeterBinder.class)));
+  }
+
+  @Test
+  void autoConfiguration_inServletWebApplication_shouldRegisterSignalsArgumentResolver() {
+    new WebApplicationContextRunner()
+        .withUserConfiguration(DatastarAutoConfiguration.class)
+        .run(context -> {
+          assertNotNull(context.getBean(DatastarSignalsArgumentResolver.class));
+          assertFalse(context.getBeansOfType(WebMvcConfigurer.class).isEmpty());
+        });
+  }
+
+  @Test
+  void autoConfiguration_inServletWebApplication_shouldRegisterEncodedFrameConverterFirst() {
+    new WebApplicationContextRunner()
+        .withUserConfiguration(DatastarAutoConfiguration.class)
+        .run(context -> {
+          HttpMessageConverters.ServerBuilder builder =
+              HttpMessageConverters.forServer()
+                  .withStringConverter(new StringHttpMessageConverter());
+          context
+              .getBeansOfType(WebMvcConfigurer.class)
+              .values()
+              .forEach(configurer -> configurer.configureMessageConverters(builder));
+          assertInstanceOf(
+              EncodedFrameHttpMessageConverter.class, builder.build().iterator().next());
+        });
+  }
+
+  @Test
+  void datastarProperties_shouldBindBuffers() {
+    contextRunner
+        .withPropertyValues("datastar.buffers.pooled=true", "datastar.buffers.max-pooled=8MB")
+        .run(context -> {
+          DatastarProperties properties = context.getBean(DatastarProperties.class);
+          assertTrue(properties.buffers().pooled());
+          assertEquals(DataSize.ofMegabytes(8), properties.buffers().maxPooled());
+        });
+  }
+
+  @Test
+  void datastarProperties_shouldBindWriteEngine() {
+    contextRunner
+        .withPropertyValues("datastar.writes.engine=non-blocking")
+        .run(context -> assertEquals(
+            DatastarProperties.Writes.Engine.NON_BLOCKING,
+            context.getBean(DatastarProperties.class).writes().engine()));
+  }
+
+  @Test
+  void autoConfiguration_outsideWebApplication_shouldNotRegisterSignalsArgumentResolver() {
+    contextRunner
+        .run(context -> assertTrue(
+            context.getBeansOfType(DatastarSignalsArgumentResolver.class).isEmpty()));
+  }
+
+  @Test
+  void runtimeHints_shouldRegisterBindingOfProperties() {
+    RuntimeHints hints = new RuntimeHints();
+
+    new DatastarAutoConfiguration.DatastarAutoConfigurationRuntimeHints()
+        .registerHints(hints, getClass().getClassLoader());
+
+    assertTrue(RuntimeHintsPredicates.reflection().onType(DatastarProperties.class).test(hints));
+    assertTrue(
+        RuntimeHintsPredicates.reflection().onType(DatastarProperties.Limits.class).test(hints));
+  }
+
   @Configuration
   static class CustomDatastarConfiguration {
     @Bean
@@ -91,4 +257,6 @@ class DatastarAutoConfigurationTest {
       super(new DatastarProperties(false));
     }
   }
+
+  record NamedSignals(String firstName) {}
 }
@@ -2,9 +2,11 @@ package io.github.akashgill3.datastar.autoconfigure;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.Duration;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.util.unit.DataSize;
 
 class DatastarPropertiesTest {
 
@@ -15,8 +17,8 @@ class DatastarPropertiesTest {
   }
 
   @Test
-  void constructor_withCustomValues_shouldWorkCorrectly() {
-    DatastarProperties properties = new DatastarProperties(true);
+  void builder_withCustomValues_shouldWorkCorrectly() {
+    DatastarProperties properties = DatastarProperties.builder().enableLogging(true).build();
     assertTrue(properties.enableLogging());
   }
 
@@ -27,6 +29,147 @@ class DatastarPropertiesTest {
     assertEquals(enableLogging, properties.enableLogging());
   }
 
+  @Test
+  void signals_shouldDefaultToOneMegabyteMaxSize() {
+    DatastarProperties properties = new DatastarProperties(false);
+    assertEquals(DataSize.ofMegabytes(1), properties.signals().maxSize());
+  }
+
+  @Test
+  void builder_withNullSignals_shouldUseDefaults() {
+    DatastarProperties properties =
+        DatastarProperties.builder().enableLogging(true).signals(null).build();
+    assertNotNull(properties.signals());
+    assertEquals(DataSize.ofMegabytes(1), properties.signals().maxSize());
+  }
+
+  @Test
+  void builder_withCustomSignals_shouldKeepValues() {
+    DatastarProperties properties =
+        DatastarProperties.builder()
+            .signals(new DatastarProperties.Signals(DataSize.ofKilobytes(4)))
+            .build();
+    assertEquals(DataSize.ofKilobytes(4), properties.signals().maxSize());
+  }
+
+  @Test
+  void rateLimit_shouldBeDisabledByDefault() {
+    DatastarProperties properties = new DatastarProperties(false);
+    assertFalse(properties.rateLimit().enabled());
+  }
+
+  @Test
+  void rateLimit_effectiveBurst_shouldDefaultToRoundedUpRate() {
+    assertEquals(3, new DatastarProperties.RateLimit(2.5, 0).effectiveBurst());
+    assertEquals(1, new DatastarProperties.RateLimit(0.2, 0).effectiveBurst());
+    assertEquals(7, new DatastarProperties.RateLimit(2.5, 7).effectiveBurst());
+  }
+
+  @Test
+  void rateLimit_withNegativeValues_shouldThrow() {
+    assertThrows(IllegalArgumentException.class, () -> new DatastarProperties.RateLimit(-1, 0));
+    assertThrows(IllegalArgumentException.class, () -> new DatastarProperties.RateLimit(1, -1));
+  }
+
+  @Test
+  void connections_shouldBeUnlimitedByDefault() {
+    DatastarProperties.Connections connections = new DatastarProperties(false).connections();
+    assertFalse(connections.enabled());
+    assertEquals(-1, connections.max());
+    assertEquals(Duration.ofSeconds(5), connections.retryAfter());
+  }
+
+  @Test
+  void connections_withInvalidLimit_shouldThrow() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new DatastarProperties.Connections(-2, -1, -1, null));
+  }
+
+  @Test
+  void emitters_minTimeout_shouldDefaultToTimeout() {
+    DatastarProperties.Emitters emitters =
+        new DatastarProperties.Emitters(Duration.ofMinutes(2), null, null, null, null);
+    assertEquals(Duration.ofMinutes(2), emitters.minTimeout());
+    assertFalse(emitters.adaptive());
+    assertEquals(Duration.ZERO, emitters.idleTimeout());
+  }
+
+  @Test
+  void emitters_withMinTimeoutAboveTimeout_shouldThrow() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new DatastarProperties.Emitters(
+                Duration.ofSeconds(10), Duration.ofSeconds(20), null, null, null));
+  }
+
+  @Test
+  void shutdown_shouldHaveDefaults() {
+    DatastarProperties.Shutdown shutdown = new DatastarProperties(false).shutdown();
+    assertEquals(Duration.ofSeconds(10), shutdown.timeout());
+    assertEquals(Duration.ofSeconds(10), shutdown.reconnectWindow());
+  }
+
+  @Test
+  void buffers_shouldNotBePooledByDefault() {
+    DatastarProperties properties = new DatastarProperties(false);
+    assertFalse(properties.buffers().pooled());
+    assertEquals(DataSize.ofMegabytes(32), properties.buffers().maxPooled());
+  }
+
+  @Test
+  void buffers_withNegativeMaxPooled_shouldThrow() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new DatastarProperties.Buffers(true, DataSize.ofBytes(-1)));
+  }
+
+  @Test
+  void writes_shouldDefaultToBlockingEngine() {
+    DatastarProperties properties = new DatastarProperties(false);
+    assertEquals(DatastarProperties.Writes.Engine.BLOCKING, properties.writes().engine());
+    assertEquals(DataSize.ofKilobytes(64), properties.writes().highWaterMark());
+    assertEquals(DataSize.ofKilobytes(32), properties.writes().lowWaterMark());
+  }
+
+  @Test
+  void writes_withLowWaterMarkAboveHighWaterMark_shouldThrow() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new DatastarProperties.Writes(
+                null, DataSize.ofKilobytes(16), DataSize.ofKilobytes(32)));
+  }
+
+  @Test
+  void limits_shouldBeDisabledByDefault() {
+    DatastarProperties properties = new DatastarProperties(false);
+    assertFalse(properties.limits().enabled());
+    assertTrue(properties.limits().maxEventSize().isNegative());
+    assertTrue(properties.limits().maxEmitterSize().isNegative());
+    assertEquals(DatastarProperties.Limits.OversizedPolicy.REJECT, properties.limits().policy());
+  }
+
+  @Test
+  void limits_withNegativeSizes_shouldBeDisabled() {
+    DatastarProperties.Limits limits =
+        new DatastarProperties.Limits(DataSize.ofBytes(-1), DataSize.ofBytes(-1), null);
+    assertFalse(limits.enabled());
+  }
+
+  @Test
+  void builder_shouldSetOnlyTheGivenGroups() {
+    DatastarProperties.Connections connections =
+        new DatastarProperties.Connections(10, -1, -1, null);
+    DatastarProperties properties =
+        DatastarProperties.builder().enableLogging(true).connections(connections).build();
+
+    assertTrue(properties.enableLogging());
+    assertEquals(connections, properties.connections());
+    assertEquals(new DatastarProperties(true).signals(), properties.signals());
+  }
+
   @Test
   void toString_shouldContainPropertyValues() {
     DatastarProperties properties = new DatastarProperties(false);
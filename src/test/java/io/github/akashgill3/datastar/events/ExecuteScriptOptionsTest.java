@@ -25,6 +25,7 @@ class ExecuteScriptOptionsTest {
     assertNull(options.getRetryDuration());
     assertEquals(Consts.DEFAULT_EXECUTE_AUTO_REMOVE, options.getAutoRemove());
     assertTrue(options.getAttributes().isEmpty());
+    assertEquals(EventPriority.HIGH, options.getPriority());
   }
 
   @Test
@@ -41,6 +42,13 @@ class ExecuteScriptOptionsTest {
     assertEquals(2000L, options.getRetryDuration());
   }
 
+  @Test
+  void priority_shouldUpdateValue() {
+    ExecuteScriptOptions result = options.priority(EventPriority.NORMAL);
+    assertSame(options, result);
+    assertEquals(EventPriority.NORMAL, options.getPriority());
+  }
+
   @ParameterizedTest
   @ValueSource(booleans = {true, false})
   void autoRemove_shouldUpdateValue(boolean autoRemove) {
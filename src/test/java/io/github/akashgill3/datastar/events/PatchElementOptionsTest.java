@@ -28,6 +28,15 @@ class PatchElementOptionsTest {
     assertEquals(Consts.DEFAULT_ELEMENT_PATCH_MODE, options.getMode());
     assertEquals(Consts.DEFAULT_ELEMENTS_USE_VIEW_TRANSITIONS, options.isUseViewTransition());
     assertEquals(Consts.DEFAULT_NAMESPACE, options.getNamespace());
+    assertEquals(EventPriority.NORMAL, options.getPriority());
+  }
+
+  @ParameterizedTest
+  @EnumSource(EventPriority.class)
+  void priority_shouldUpdateValue(EventPriority priority) {
+    PatchElementOptions result = options.priority(priority);
+    assertSame(options, result);
+    assertEquals(priority, options.getPriority());
   }
 
   @Test
@@ -134,6 +143,21 @@ class PatchElementOptionsTest {
     assertEquals("", options.getEventId());
   }
 
+  @Test
+  void chunkSize_shouldDefaultToZeroAndUpdateValue() {
+    assertEquals(0, options.getChunkSize());
+
+    PatchElementOptions result = options.chunkSize(4096);
+
+    assertSame(options, result);
+    assertEquals(4096, options.getChunkSize());
+  }
+
+  @Test
+  void chunkSize_withNegativeValue_shouldThrow() {
+    assertThrows(IllegalArgumentException.class, () -> options.chunkSize(-1));
+  }
+
   @Test
   void multipleChanges_shouldWorkCorrectly() {
     // Make multiple changes
@@ -22,6 +22,14 @@ class PatchSignalOptionsTest {
     assertNull(options.getEventId());
     assertEquals(Consts.DEFAULT_SSE_RETRY_DURATION_MS, options.getRetryDuration());
     assertEquals(Consts.DEFAULT_PATCH_SIGNAL_ONLY_IF_MISSING, options.isOnlyIfMissing());
+    assertEquals(EventPriority.NORMAL, options.getPriority());
+  }
+
+  @Test
+  void priority_shouldUpdateValue() {
+    PatchSignalOptions result = options.priority(EventPriority.HIGH);
+    assertSame(options, result);
+    assertEquals(EventPriority.HIGH, options.getPriority());
   }
 
   @Test